@@ -0,0 +1,43 @@
+package com.amigoscode.customerapitdd.benchmark;
+
+import com.amigoscode.customerapitdd.CustomerApiTddApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Arrays;
+
+/**
+ * Boots the application on a private in-memory H2 and the zero latency fake card charger, without a web
+ * server unless a benchmark goes through HTTP.
+ */
+public final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    public static ConfigurableApplicationContext start(String... properties) {
+        return start(WebApplicationType.NONE, properties);
+    }
+
+    /**
+     * Also starts tomcat on a random free port, see {@code local.server.port}.
+     */
+    public static ConfigurableApplicationContext startServer(String... properties) {
+        return start(WebApplicationType.SERVLET, properties);
+    }
+
+    private static ConfigurableApplicationContext start(WebApplicationType webApplicationType, String... properties) {
+        return new SpringApplicationBuilder(CustomerApiTddApplication.class)
+                .web(webApplicationType)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:benchmark-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1",
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=warn",
+                        "stripe.enabled=false",
+                        "card-charger.fake.latency-ms=0",
+                        "server.port=0")
+                // as arguments, default properties would lose to application.properties
+                .run(Arrays.stream(properties).map(property -> "--" + property).toArray(String[]::new));
+    }
+}
@@ -0,0 +1,81 @@
+package com.amigoscode.customerapitdd.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Fires all payment requests for one customer at once and reports status codes and latencies, used by
+ * reactive-load-test.sh to hold the given number of requests in flight against a running server.
+ * <pre>
+ *   java -cp ... ConcurrentPaymentLoad http://localhost:8080 &lt;customerId&gt; 10000
+ * </pre>
+ */
+public final class ConcurrentPaymentLoad {
+
+    private static final String PAYMENT = "{\"payment\":{\"amount\":10.00,\"currency\":\"USD\","
+            + "\"source\":\"card123\",\"description\":\"Donation\"}}";
+
+    private ConcurrentPaymentLoad() {
+    }
+
+    public static void main(String[] args) {
+        URI uri = URI.create(args[0] + "/api/v1/customers/" + args[1] + "/payments");
+        int requests = Integer.parseInt(args[2]);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        // http/1.1 has no multiplexing, every request in flight holds its own connection
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMinutes(1))
+                .executor(executor)
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofMinutes(5))
+                .POST(HttpRequest.BodyPublishers.ofString(PAYMENT))
+                .build();
+
+        long start = System.nanoTime();
+        long[] latencies = new long[requests];
+        List<CompletableFuture<String>> responses = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            int index = i;
+            long sent = System.nanoTime();
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .handle((response, e) -> {
+                        latencies[index] = System.nanoTime() - sent;
+                        if (e == null) {
+                            return String.valueOf(response.statusCode());
+                        }
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        return cause.getClass().getSimpleName();
+                    }));
+        }
+        Map<String, Integer> outcomes = new TreeMap<>();
+        responses.forEach(response -> outcomes.merge(response.join(), 1, Integer::sum));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        executor.shutdownNow();
+
+        Arrays.sort(latencies);
+        System.out.printf("requests %d in %d ms, outcomes %s, latency p50 %d ms p99 %d ms max %d ms%n",
+                requests, elapsedMillis, outcomes,
+                percentile(latencies, 0.50), percentile(latencies, 0.99), latencies[requests - 1] / 1_000_000);
+    }
+
+    private static long percentile(long[] sortedLatencies, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(index, 0)] / 1_000_000;
+    }
+}
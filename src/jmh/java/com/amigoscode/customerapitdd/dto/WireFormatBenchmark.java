@@ -0,0 +1,93 @@
+package com.amigoscode.customerapitdd.dto;
+
+import com.amigoscode.customerapitdd.config.CborConfig;
+import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.model.Payment;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding a payments/batch body of 100 payments as JSON and as CBOR, where UUIDs are raw
+ * bytes and amounts minor units. Scores are batches per millisecond, run with {@code -prof gc} to compare
+ * the bytes allocated per batch too.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    private static final TypeReference<List<BatchPaymentRequest>> BATCH = new TypeReference<>() {
+    };
+
+    private List<BatchPaymentRequest> batch;
+    private ObjectWriter jsonWriter;
+    private ObjectWriter cborWriter;
+    private ObjectReader jsonReader;
+    private ObjectReader cborReader;
+    private byte[] json;
+    private byte[] cbor;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            UUID customerId = UUID.randomUUID();
+            BigDecimal amount = BigDecimal.valueOf(1 + random.nextInt(1_000_000), 2);
+            batch.add(new BatchPaymentRequest(customerId,
+                    new Payment(null, customerId, amount, Currency.GBP, "card" + i, "Donation")));
+        }
+        ObjectMapper jsonObjectMapper = new Jackson2ObjectMapperBuilder().build();
+        ObjectMapper cborObjectMapper = CborConfig.cborObjectMapper(new Jackson2ObjectMapperBuilder());
+        jsonWriter = jsonObjectMapper.writerFor(BATCH);
+        cborWriter = cborObjectMapper.writerFor(BATCH);
+        jsonReader = jsonObjectMapper.readerFor(BATCH);
+        cborReader = cborObjectMapper.readerFor(BATCH);
+        json = jsonWriter.writeValueAsBytes(batch);
+        cbor = cborWriter.writeValueAsBytes(batch);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws IOException {
+        return jsonWriter.writeValueAsBytes(batch);
+    }
+
+    @Benchmark
+    public byte[] encodeCbor() throws IOException {
+        return cborWriter.writeValueAsBytes(batch);
+    }
+
+    @Benchmark
+    public List<BatchPaymentRequest> decodeJson() throws IOException {
+        return jsonReader.readValue(json);
+    }
+
+    @Benchmark
+    public List<BatchPaymentRequest> decodeCbor() throws IOException {
+        return cborReader.readValue(cbor);
+    }
+}
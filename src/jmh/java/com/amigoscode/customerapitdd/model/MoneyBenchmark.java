@@ -0,0 +1,65 @@
+package com.amigoscode.customerapitdd.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per payment work that does not touch the database: validating the amount, handing it to the
+ * charger, hashing the payment and adding it to a running total. Run with {@code -prof gc} and
+ * compare gc.alloc.rate.norm, the bytes allocated per payment.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoneyBenchmark {
+
+    private static final BigDecimal MAX_AMOUNT = new BigDecimal("10000.00");
+    private static final long MAX_MINOR_UNITS = 1_000_000;
+
+    private final UUID customerId = UUID.randomUUID();
+    private BigDecimal decimalAmount;
+    private long minorUnits;
+    private BigDecimal decimalTotal;
+    private long minorUnitsTotal;
+
+    @Setup
+    public void setUp() {
+        decimalAmount = new BigDecimal("10.50");
+        minorUnits = 1050;
+        decimalTotal = BigDecimal.ZERO;
+        minorUnitsTotal = 0;
+    }
+
+    @Benchmark
+    public void bigDecimal(Blackhole blackhole) {
+        BigDecimal amount = decimalAmount.setScale(2);
+        blackhole.consume(amount.signum() > 0 && amount.compareTo(MAX_AMOUNT) <= 0);
+        blackhole.consume(Objects.hash(42L, customerId, amount, Currency.USD, "card123", "Donation"));
+        decimalTotal = decimalTotal.add(amount);
+    }
+
+    @Benchmark
+    public void minorUnits(Blackhole blackhole) {
+        Money amount = Money.ofMinorUnits(minorUnits, Currency.USD);
+        blackhole.consume(amount.getMinorUnits() > 0 && amount.getMinorUnits() <= MAX_MINOR_UNITS);
+        blackhole.consume(new Payment(42L, customerId, amount, "card123", "Donation").hashCode());
+        minorUnitsTotal += amount.getMinorUnits();
+    }
+}
@@ -0,0 +1,76 @@
+package com.amigoscode.customerapitdd.search;
+
+import com.amigoscode.customerapitdd.dto.CustomerSearchResult;
+import com.amigoscode.customerapitdd.model.Customer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Top 20 search over a million generated customers: a name prefix, two word prefixes, a fragment from
+ * the middle of a surname and a phone number fragment. Building the index takes a while and about a
+ * gigabyte of heap, run with {@code -jvmArgs -Xmx2g} or more.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerSearchBenchmark {
+
+    private static final String[] FIRST_NAMES = {
+            "Anna", "Ali", "Ben", "Chloe", "David", "Emma", "Fatima", "George", "Hannah", "Isaac",
+            "Jack", "Joanna", "Karim", "Laura", "Mohammed", "Maria", "Noah", "Olivia", "Priya", "Sam"};
+    private static final String[] SYLLABLES = {
+            "ab", "bel", "car", "dor", "el", "fen", "gar", "ham", "ing", "jon", "kes", "lam", "mit",
+            "nor", "ol", "pen", "quin", "ros", "smi", "th", "ton", "vel", "wick", "ley", "son"};
+
+    @Param("1000000")
+    private int customers;
+
+    @Param({"ann", "maria smi", "wick", "7700 9001"})
+    private String query;
+
+    private CustomerSearchIndex index;
+
+    @Setup
+    public void setUp() {
+        index = new CustomerSearchIndex(null, 1000, false);
+        Random random = new Random(42);
+        List<Customer> batch = new ArrayList<>(10_000);
+        for (int i = 0; i < customers; i++) {
+            String surname = SYLLABLES[random.nextInt(SYLLABLES.length)]
+                    + SYLLABLES[random.nextInt(SYLLABLES.length)]
+                    + SYLLABLES[random.nextInt(SYLLABLES.length)];
+            String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]
+                    + " " + Character.toUpperCase(surname.charAt(0)) + surname.substring(1);
+            String phoneNumber = String.format("+4477%08d", random.nextInt(100_000_000));
+            batch.add(new Customer(UUID.randomUUID(), name, phoneNumber));
+            if (batch.size() == 10_000) {
+                index.addAll(batch);
+                batch.clear();
+            }
+        }
+        index.addAll(batch);
+    }
+
+    @Benchmark
+    public List<CustomerSearchResult> search() {
+        return index.search(query, 20);
+    }
+}
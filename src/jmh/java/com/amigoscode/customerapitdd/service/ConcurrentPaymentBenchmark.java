@@ -0,0 +1,107 @@
+package com.amigoscode.customerapitdd.service;
+
+import com.amigoscode.customerapitdd.benchmark.BenchmarkApplication;
+import com.amigoscode.customerapitdd.dto.CustomerRequest;
+import com.amigoscode.customerapitdd.model.Customer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of {@code IN_FLIGHT} concurrent payment requests over HTTP, five times tomcat's
+ * {@code MAX_THREADS}, against a card network answering in 50ms. Requests and charges run on platform
+ * threads versus one virtual thread each, the virtual thread run needs Java 21+. Every request has to
+ * answer 200. Run with {@code -prof gc} to compare memory at equal load.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ConcurrentPaymentBenchmark {
+
+    private static final int MAX_THREADS = 200;
+    private static final int IN_FLIGHT = 1_000;
+    private static final String PAYMENT = "{\"payment\":{\"amount\":10.00,\"currency\":\"USD\","
+            + "\"source\":\"card123\",\"description\":\"Donation\"}}";
+
+    @Param({"false", "true"})
+    public boolean virtualThreads;
+
+    private ConfigurableApplicationContext context;
+    private ExecutorService clientExecutor;
+    private HttpClient client;
+    private HttpRequest request;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.startServer(
+                "app.virtual-threads.enabled=" + virtualThreads,
+                "server.tomcat.max-threads=" + MAX_THREADS,
+                "spring.mvc.async.request-timeout=60000",
+                "card-charger.fake.latency-ms=50",
+                "card-charger.threads=64",
+                "card-charger.max-in-flight=" + IN_FLIGHT,
+                "card-charger.timeout-ms=60000");
+        Customer customer = new Customer(null, "Abel", "+440000000000");
+        context.getBean(CustomerService.class).registerNewCustomer(new CustomerRequest(customer));
+
+        clientExecutor = Executors.newFixedThreadPool(4);
+        // http/1.1 has no multiplexing, every request in flight holds its own connection
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(clientExecutor)
+                .build();
+        String port = context.getEnvironment().getProperty("local.server.port");
+        request = HttpRequest.newBuilder(URI.create(
+                        "http://localhost:" + port + "/api/v1/customers/" + customer.getId() + "/payments"))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofMinutes(1))
+                .POST(HttpRequest.BodyPublishers.ofString(PAYMENT))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        clientExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IN_FLIGHT)
+    public void chargeCardsConcurrently() {
+        CompletableFuture<?>[] responses = new CompletableFuture[IN_FLIGHT];
+        for (int i = 0; i < IN_FLIGHT; i++) {
+            responses[i] = client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .thenAccept(response -> {
+                        if (response.statusCode() != 200) {
+                            throw new IllegalStateException(String.format(
+                                    "payment answered [%s]", response.statusCode()));
+                        }
+                    });
+        }
+        CompletableFuture.allOf(responses).join();
+    }
+}
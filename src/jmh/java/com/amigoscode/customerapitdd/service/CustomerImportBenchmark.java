@@ -0,0 +1,92 @@
+package com.amigoscode.customerapitdd.service;
+
+import com.amigoscode.customerapitdd.benchmark.BenchmarkApplication;
+import com.amigoscode.customerapitdd.dto.CustomerImportLine;
+import com.amigoscode.customerapitdd.dto.CustomerRequest;
+import com.amigoscode.customerapitdd.model.Customer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Customers registered per millisecond, one {@link CustomerService#registerNewCustomer} call per customer
+ * against one {@link CustomerImportService#importCustomers} call per {@value #CUSTOMERS} customers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CustomerImportBenchmark {
+
+    private static final int CUSTOMERS = 5_000;
+
+    @Param({"500", "1000"})
+    public int chunkSize;
+
+    private final AtomicLong phoneNumbers = new AtomicLong();
+
+    private ConfigurableApplicationContext context;
+    private CustomerService customerService;
+    private CustomerImportService customerImportService;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start("customer.import.chunk-size=" + chunkSize);
+        customerService = context.getBean(CustomerService.class);
+        customerImportService = context.getBean(CustomerImportService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CUSTOMERS)
+    public void registerOneByOne() {
+        for (int i = 0; i < CUSTOMERS; i++) {
+            customerService.registerNewCustomer(new CustomerRequest(new Customer(null, "Abel", nextPhoneNumber())));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CUSTOMERS)
+    public long importInChunks(Blackhole blackhole) {
+        Iterator<CustomerImportLine> lines = new Iterator<>() {
+            private int line;
+
+            @Override
+            public boolean hasNext() {
+                return line < CUSTOMERS;
+            }
+
+            @Override
+            public CustomerImportLine next() {
+                return CustomerImportLine.of(++line, "Abel", nextPhoneNumber());
+            }
+        };
+        return customerImportService.importCustomers(lines, blackhole::consume);
+    }
+
+    private String nextPhoneNumber() {
+        return "+44" + (1_000_000_000L + phoneNumbers.incrementAndGet());
+    }
+}
@@ -0,0 +1,79 @@
+package com.amigoscode.customerapitdd.service;
+
+import com.amigoscode.customerapitdd.benchmark.BenchmarkApplication;
+import com.amigoscode.customerapitdd.interfaces.IdGenerator;
+import com.amigoscode.customerapitdd.model.Customer;
+import com.amigoscode.customerapitdd.repository.CustomerRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Insert rate of customers against a table pre-filled with {@code tableSize} rows keyed by the same id strategy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CustomerInsertBenchmark {
+
+    private static final int PRELOAD_CHUNK = 1_000;
+
+    @Param({"random", "time-ordered"})
+    public String idGenerator;
+
+    @Param({"10000", "100000", "500000"})
+    public int tableSize;
+
+    private final AtomicLong phoneNumbers = new AtomicLong();
+
+    private ConfigurableApplicationContext context;
+    private CustomerRepository customerRepository;
+    private IdGenerator ids;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start("customer.id-generator=" + idGenerator);
+        customerRepository = context.getBean(CustomerRepository.class);
+        ids = context.getBean(IdGenerator.class);
+
+        for (int loaded = 0; loaded < tableSize; loaded += PRELOAD_CHUNK) {
+            List<Customer> chunk = new ArrayList<>(PRELOAD_CHUNK);
+            for (int i = 0; i < PRELOAD_CHUNK; i++) {
+                chunk.add(newCustomer());
+            }
+            customerRepository.saveAll(chunk);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Customer insertCustomer() {
+        return customerRepository.save(newCustomer());
+    }
+
+    private Customer newCustomer() {
+        return new Customer(ids.generateId(), "Abel", "+44" + (1_000_000_000L + phoneNumbers.incrementAndGet()));
+    }
+}
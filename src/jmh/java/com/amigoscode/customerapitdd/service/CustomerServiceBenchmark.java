@@ -0,0 +1,89 @@
+package com.amigoscode.customerapitdd.service;
+
+import com.amigoscode.customerapitdd.benchmark.BenchmarkApplication;
+import com.amigoscode.customerapitdd.cache.CustomerCache;
+import com.amigoscode.customerapitdd.dto.CustomerRequest;
+import com.amigoscode.customerapitdd.model.Customer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CustomerServiceBenchmark {
+
+    private static final String EXISTING_PHONE_NUMBER = "+440000000000";
+
+    private final AtomicLong phoneNumbers = new AtomicLong();
+
+    private ConfigurableApplicationContext context;
+    private CustomerService customerService;
+    private CustomerCache customerCache;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        customerService = context.getBean(CustomerService.class);
+        customerCache = context.getBean(CustomerCache.class);
+        customerService.registerNewCustomer(new CustomerRequest(new Customer(null, "Abel", EXISTING_PHONE_NUMBER)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void registerNewCustomer() {
+        registerNew();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void registerNewCustomerConcurrently() {
+        registerNew();
+    }
+
+    @Benchmark
+    public void registerExistingCustomerCacheHot() {
+        registerExisting();
+    }
+
+    @Benchmark
+    public void registerExistingCustomerCacheCold() {
+        customerCache.invalidateAll();
+        registerExisting();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void registerExistingCustomerCacheHotConcurrently() {
+        registerExisting();
+    }
+
+    private void registerNew() {
+        String phoneNumber = "+44" + (1_000_000_000L + phoneNumbers.incrementAndGet());
+        customerService.registerNewCustomer(new CustomerRequest(new Customer(null, "Abel", phoneNumber)));
+    }
+
+    private void registerExisting() {
+        customerService.registerNewCustomer(new CustomerRequest(new Customer(null, "Abel", EXISTING_PHONE_NUMBER)));
+    }
+}
@@ -0,0 +1,79 @@
+package com.amigoscode.customerapitdd.service;
+
+import com.amigoscode.customerapitdd.benchmark.BenchmarkApplication;
+import com.amigoscode.customerapitdd.cache.CustomerCache;
+import com.amigoscode.customerapitdd.dto.CustomerRequest;
+import com.amigoscode.customerapitdd.dto.PaymentRequest;
+import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.model.Customer;
+import com.amigoscode.customerapitdd.model.Money;
+import com.amigoscode.customerapitdd.model.Payment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PaymentServiceBenchmark {
+
+    private static final Money AMOUNT = Money.ofMinorUnits(1000, Currency.USD);
+
+    private ConfigurableApplicationContext context;
+    private PaymentService paymentService;
+    private CustomerCache customerCache;
+    private UUID customerId;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        paymentService = context.getBean(PaymentService.class);
+        customerCache = context.getBean(CustomerCache.class);
+        Customer customer = new Customer(null, "Abel", "+440000000000");
+        context.getBean(CustomerService.class).registerNewCustomer(new CustomerRequest(customer));
+        customerId = customer.getId();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void chargeCardCacheHot() {
+        charge();
+    }
+
+    @Benchmark
+    public void chargeCardCacheCold() {
+        customerCache.invalidateAll();
+        charge();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void chargeCardCacheHotConcurrently() {
+        charge();
+    }
+
+    private void charge() {
+        Payment payment = new Payment(null, null, AMOUNT, "card123", "Donation");
+        paymentService.chargeCard(customerId, new PaymentRequest(payment));
+    }
+}
@@ -0,0 +1,104 @@
+#!/usr/bin/env bash
+# Connections, threads and memory of the servlet application against the reactive variant while
+# the given number of payment requests are in flight at once.
+#
+#   ./mvnw -Pjmh,reactive compile dependency:build-classpath -Dmdep.outputFile=target/jmh-classpath
+#   src/jmh/reactive-load-test.sh [requests]
+#
+# Both run with the same heap (HEAP, default 1g), a 100 ms fake card charger and an in-memory H2
+# behind a pool of 10 connections. The servlet application gets enough charger threads and tomcat
+# connections to hold every request, so both answer all of them and the difference is what holding
+# them costs. Needs `ulimit -n` above twice the request count, the client and the server keep one
+# socket each.
+set -euo pipefail
+
+REQUESTS=${1:-10000}
+TARGET=$(cd "$(dirname "$0")/../../target" && pwd)
+CLASSPATH="$TARGET/classes:$(cat "$TARGET/jmh-classpath")"
+JAVA_OPTS=(-Xms256m -Xmx${HEAP:-1g})
+trap 'kill $(jobs -p) 2> /dev/null || true' EXIT
+
+free_port() {
+  python3 -c 'import socket; s = socket.socket(); s.bind(("", 0)); print(s.getsockname()[1]); s.close()'
+}
+
+status_kb() {
+  awk -v key="$2:" '$1 == key { print $2 }' "/proc/$1/status" 2> /dev/null || echo 0
+}
+
+# descriptors come and go while find walks them, so it may report some as vanished
+sockets() {
+  { find "/proc/$1/fd" -lname 'socket:*' 2> /dev/null || true; } | wc -l
+}
+
+# prints "<peak sockets> <peak threads> <peak rss mb>" once the marker file disappears
+sample() {
+  local pid=$1 marker=$2 peakSockets=0 peakThreads=0 peakRss=0 value
+  while [ -e "$marker" ]; do
+    value=$(sockets "$pid"); peakSockets=$(( value > peakSockets ? value : peakSockets ))
+    value=$(status_kb "$pid" Threads); peakThreads=$(( value > peakThreads ? value : peakThreads ))
+    value=$(status_kb "$pid" VmRSS); peakRss=$(( value > peakRss ? value : peakRss ))
+    sleep 0.05
+  done
+  echo "$peakSockets $peakThreads $(( peakRss / 1024 ))"
+}
+
+# $1 name, $2 command that registers a customer on port $3 and prints its id, rest the server command
+report() {
+  local name=$1 register=$2 port log pid customerId marker samplerPid idleRss result
+  shift 2
+  port=$(free_port)
+  log=$(mktemp)
+  "$@" --server.port="$port" > "$log" 2>&1 &
+  pid=$!
+  until curl -sf -o /dev/null "http://localhost:$port/api/v1/customers/00000000-0000-0000-0000-000000000000/payments"; do
+    if ! kill -0 "$pid" 2> /dev/null; then
+      cat "$log" >&2
+      exit 1
+    fi
+    sleep 0.1
+  done
+  customerId=$($register "$port")
+  # one warm up round so both are measured with loaded classes and compiled hot paths
+  java -cp "$CLASSPATH" com.amigoscode.customerapitdd.benchmark.ConcurrentPaymentLoad \
+    "http://localhost:$port" "$customerId" 500 > /dev/null
+  idleRss=$(( $(status_kb "$pid" VmRSS) / 1024 ))
+
+  marker=$(mktemp)
+  sample "$pid" "$marker" > "$marker.peaks" &
+  samplerPid=$!
+  result=$(java -cp "$CLASSPATH" com.amigoscode.customerapitdd.benchmark.ConcurrentPaymentLoad \
+    "http://localhost:$port" "$customerId" "$REQUESTS")
+  rm "$marker"
+  wait "$samplerPid"
+  read -r sockets threads rss < "$marker.peaks"
+  printf '%-9s %s\n          peak sockets %s, peak threads %s, rss %s MB before and %s MB at peak\n' \
+    "$name" "$result" "$sockets" "$threads" "$idleRss" "$rss"
+  rm -f "$marker.peaks" "$log"
+  kill "$pid"
+  wait "$pid" 2> /dev/null || true
+}
+
+register_servlet() {
+  curl -sf -H 'Content-Type: application/x-ndjson' --data-binary '{"name":"Maria","phoneNumber":"+447700900123"}' \
+    "http://localhost:$1/api/v1/customers/import" | python3 -c 'import json, sys; print(json.load(sys.stdin)["customerId"])'
+}
+
+register_reactive() {
+  curl -sf -H 'Content-Type: application/json' -d '{"customer":{"name":"Maria","phoneNumber":"+447700900123"}}' \
+    "http://localhost:$1/api/v1/customers" | python3 -c 'import json, sys; print(json.load(sys.stdin)["id"])'
+}
+
+COMMON=(--logging.level.root=warn --stripe.enabled=false --card-charger.fake.latency-ms=100)
+
+report servlet register_servlet java "${JAVA_OPTS[@]}" -cp "$CLASSPATH" \
+  com.amigoscode.customerapitdd.CustomerApiTddApplication "${COMMON[@]}" \
+  --spring.datasource.hikari.maximum-pool-size=10 \
+  --card-charger.resilience.enabled=false \
+  --card-charger.threads="$REQUESTS" --card-charger.max-in-flight="$REQUESTS" \
+  --server.tomcat.max-connections="$REQUESTS" --server.tomcat.accept-count="$REQUESTS" \
+  --card-charger.timeout-ms=300000 --spring.mvc.async.request-timeout=300000 \
+  --payment.aggregates.rebuild-on-startup=false
+report reactive register_reactive java "${JAVA_OPTS[@]}" -cp "$CLASSPATH" \
+  com.amigoscode.customerapitdd.reactive.ReactiveCustomerApiApplication "${COMMON[@]}" \
+  --reactive.r2dbc.pool.max-size=10
@@ -0,0 +1,66 @@
+#!/usr/bin/env bash
+# Startup and first request latency of the standard boot jar against the class data sharing image.
+#
+#   ./mvnw -Pcds package -DskipTests
+#   src/jmh/startup-benchmark.sh [runs]
+#
+# Each run starts the application on a free port and polls a payment endpoint. It reports the
+# time until the first 200, which covers JVM start, context refresh and serving that request,
+# and the startup time the application logs itself.
+set -euo pipefail
+
+RUNS=${1:-5}
+TARGET=$(cd "$(dirname "$0")/../../target" && pwd)
+JAR=$(ls "$TARGET"/customer-api-tdd-*-SNAPSHOT.jar)
+CDS_JAR=$(ls "$TARGET"/customer-api-tdd-*-cds.jar)
+CDS_ARCHIVE="$TARGET/cds/app.jsa"
+CDS_CLASSPATH="$CDS_JAR:$(cat "$TARGET/cds/classpath")"
+MAIN=com.amigoscode.customerapitdd.CustomerApiTddApplication
+
+now_ms() {
+  date +%s%3N
+}
+
+free_port() {
+  python3 -c 'import socket; s = socket.socket(); s.bind(("", 0)); print(s.getsockname()[1]); s.close()'
+}
+
+# prints "<ms to first 200> <startup seconds logged by spring>"
+measure() {
+  local port log pid start
+  port=$(free_port)
+  log=$(mktemp)
+  start=$(now_ms)
+  "$@" --server.port="$port" > "$log" 2>&1 &
+  pid=$!
+  until curl -sf -o /dev/null "http://localhost:$port/api/v1/payments/totals?currency=USD"; do
+    if ! kill -0 "$pid" 2> /dev/null; then
+      cat "$log" >&2
+      exit 1
+    fi
+    sleep 0.02
+  done
+  echo "$(( $(now_ms) - start )) $(grep -o 'in [0-9.]* seconds' "$log" | head -1 | cut -d' ' -f2)"
+  kill "$pid"
+  wait "$pid" 2> /dev/null || true
+  rm -f "$log"
+}
+
+report() {
+  local name=$1
+  shift
+  local firstRequest=() started=()
+  for _ in $(seq "$RUNS"); do
+    read -r ms seconds < <(measure "$@")
+    firstRequest+=("$ms")
+    started+=("$seconds")
+  done
+  printf '%-22s first request median %6s ms   spring startup median %6s s\n' "$name" \
+    "$(printf '%s\n' "${firstRequest[@]}" | sort -n | sed -n "$(( (RUNS + 1) / 2 ))p")" \
+    "$(printf '%s\n' "${started[@]}" | sort -n | sed -n "$(( (RUNS + 1) / 2 ))p")"
+}
+
+report "boot jar" java -jar "$JAR"
+report "boot jar fast-startup" java -jar "$JAR" --spring.profiles.active=fast-startup
+report "cds fast-startup" java -XX:SharedArchiveFile="$CDS_ARCHIVE" -Xlog:cds=error -cp "$CDS_CLASSPATH" "$MAIN" \
+  --spring.profiles.active=fast-startup
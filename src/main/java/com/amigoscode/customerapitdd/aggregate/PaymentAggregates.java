@@ -0,0 +1,244 @@
+package com.amigoscode.customerapitdd.aggregate;
+
+import com.amigoscode.customerapitdd.dto.PaymentTotals;
+import com.amigoscode.customerapitdd.interfaces.PaymentStore;
+import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.model.MinorUnits;
+import com.amigoscode.customerapitdd.model.Payment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running payment totals per currency, per customer and per hour. Amounts are summed as
+ * minor units in {@link LongAdder}s so concurrent charges never contend on a lock or
+ * allocate a BigDecimal per update. Sum and count are read separately, a query racing a charge
+ * may see one of them updated before the other.
+ * <p>
+ * Memory is bounded: totals are kept for the first {@code maxCustomers} customers, those of any later
+ * customer are summed from the payment table when asked for, and only the {@code hoursRetained} hours
+ * up to the newest one recorded are kept.
+ */
+@Component
+public class PaymentAggregates implements ApplicationContextAware {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PaymentAggregates.class);
+
+    private static final long SECONDS_PER_HOUR = TimeUnit.HOURS.toSeconds(1);
+
+    private final PaymentStore paymentStore;
+    private final int pageSize;
+    private final boolean rebuildOnStartup;
+    private final int maxCustomers;
+    private final int hoursRetained;
+    private ApplicationContext applicationContext;
+
+    private final Totals[] byCurrency = newTotals();
+    private final Map<UUID, Totals[]> byCustomer = new ConcurrentHashMap<>();
+    private final Map<Long, Totals[]> byHour = new ConcurrentHashMap<>();
+    // cleared for good once byCustomer is full, from then on a customer missing from it may have payments
+    private volatile boolean everyCustomerKept = true;
+    private final AtomicLong newestHour = new AtomicLong(Long.MIN_VALUE);
+
+    public PaymentAggregates(PaymentStore paymentStore,
+                             @Value("${payment.aggregates.rebuild-page-size:1000}") int pageSize,
+                             @Value("${payment.aggregates.rebuild-on-startup:true}") boolean rebuildOnStartup,
+                             @Value("${payment.aggregates.max-customers:100000}") int maxCustomers,
+                             @Value("${payment.aggregates.hours-retained:168}") int hoursRetained) {
+        this.paymentStore = paymentStore;
+        this.pageSize = pageSize;
+        this.rebuildOnStartup = rebuildOnStartup;
+        this.maxCustomers = maxCustomers;
+        this.hoursRetained = hoursRetained;
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) {
+        this.applicationContext = applicationContext;
+    }
+
+    // the application's own context publishes this before its web server starts, so no charge is recorded
+    // while this runs. Child contexts, like a management context on its own port, refresh later and are ignored
+    @EventListener(ContextRefreshedEvent.class)
+    public void rebuildOnStartup(ContextRefreshedEvent event) {
+        if (rebuildOnStartup && event.getApplicationContext() == applicationContext) {
+            long start = System.nanoTime();
+            long payments = rebuild();
+            LOGGER.info("rebuilt payment aggregates from {} payments in {} ms",
+                    payments, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Replaces every total with one scan of the payment table in paymentId order. Charges recorded while
+     * this runs would be counted twice or lost, so it only runs on startup.
+     *
+     * @return the number of payments scanned
+     */
+    long rebuild() {
+        for (Totals totals : byCurrency) {
+            totals.reset();
+        }
+        byCustomer.clear();
+        byHour.clear();
+        everyCustomerKept = true;
+        newestHour.set(Long.MIN_VALUE);
+
+        long scanned = 0;
+        long cursor = 0;
+        List<Payment> page;
+        do {
+            page = paymentStore.selectPaymentPage(cursor, PageRequest.of(0, pageSize));
+            for (Payment payment : page) {
+                record(payment);
+            }
+            scanned += page.size();
+            if (!page.isEmpty()) {
+                cursor = page.get(page.size() - 1).getPaymentId();
+            }
+        } while (page.size() == pageSize);
+        return scanned;
+    }
+
+    public void record(Payment payment) {
+        long minorUnits = payment.getAmount();
+        int currency = payment.getCurrency().ordinal();
+        byCurrency[currency].add(minorUnits);
+        Totals[] customerTotals = customerTotalsToRecord(payment.getCustomerId());
+        if (customerTotals != null) {
+            customerTotals[currency].add(minorUnits);
+        }
+        // payments written before createdAt existed only count towards the currency and customer totals
+        if (payment.getCreatedAt() != null) {
+            Totals[] hourTotals = hourTotalsToRecord(hourOf(payment.getCreatedAt()));
+            if (hourTotals != null) {
+                hourTotals[currency].add(minorUnits);
+            }
+        }
+    }
+
+    public PaymentTotals totalFor(Currency currency) {
+        return byCurrency[currency.ordinal()].toPaymentTotals(currency);
+    }
+
+    public PaymentTotals totalFor(UUID customerId, Currency currency) {
+        Totals[] totals = byCustomer.get(customerId);
+        if (totals != null || everyCustomerKept) {
+            return toPaymentTotals(totals, currency);
+        }
+        return sumFromPaymentTable(customerId, currency);
+    }
+
+    /**
+     * @param hour any instant within the hour, it is truncated to the start of the hour. Hours older than
+     *             the retained ones answer with zero totals.
+     */
+    public PaymentTotals totalForHour(Instant hour, Currency currency) {
+        return toPaymentTotals(byHour.get(hourOf(hour)), currency);
+    }
+
+    private static long hourOf(Instant instant) {
+        return Math.floorDiv(instant.getEpochSecond(), SECONDS_PER_HOUR);
+    }
+
+    // null once the customer cannot be added, its totals are then summed from the payment table instead
+    private Totals[] customerTotalsToRecord(UUID customerId) {
+        // plain get first, computeIfAbsent only for the first payment of a customer
+        Totals[] totals = byCustomer.get(customerId);
+        if (totals != null || !everyCustomerKept) {
+            return totals;
+        }
+        // byCustomer never shrinks outside of startup, a customer turned away here is never added later
+        if (byCustomer.size() >= maxCustomers) {
+            everyCustomerKept = false;
+            return null;
+        }
+        return byCustomer.computeIfAbsent(customerId, k -> newTotals());
+    }
+
+    // null for an hour that has already dropped out of the retained ones
+    private Totals[] hourTotalsToRecord(long hour) {
+        long newest = newestHour.get();
+        if (hour > newest) {
+            newest = newestHour.accumulateAndGet(hour, Math::max);
+        }
+        long oldestRetained = newest - hoursRetained + 1;
+        if (hour < oldestRetained) {
+            return null;
+        }
+        Totals[] totals = byHour.get(hour);
+        if (totals == null) {
+            totals = byHour.computeIfAbsent(hour, k -> newTotals());
+            // a new hour is when the oldest ones fall out
+            byHour.keySet().removeIf(retained -> retained < oldestRetained);
+        }
+        return totals;
+    }
+
+    private PaymentTotals sumFromPaymentTable(UUID customerId, Currency currency) {
+        Totals totals = new Totals();
+        long cursor = 0;
+        List<Payment> page;
+        do {
+            page = paymentStore.selectPaymentPage(customerId, cursor, PageRequest.of(0, pageSize));
+            for (Payment payment : page) {
+                if (payment.getCurrency() == currency) {
+                    totals.add(payment.getAmount());
+                }
+            }
+            if (!page.isEmpty()) {
+                cursor = page.get(page.size() - 1).getPaymentId();
+            }
+        } while (page.size() == pageSize);
+        return totals.toPaymentTotals(currency);
+    }
+
+    private static PaymentTotals toPaymentTotals(Totals[] totals, Currency currency) {
+        return totals == null
+                ? new PaymentTotals(currency, MinorUnits.toBigDecimal(0), 0)
+                : totals[currency.ordinal()].toPaymentTotals(currency);
+    }
+
+    private static Totals[] newTotals() {
+        Totals[] totals = new Totals[Currency.values().length];
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] = new Totals();
+        }
+        return totals;
+    }
+
+    private static final class Totals {
+
+        private final LongAdder minorUnits = new LongAdder();
+        private final LongAdder count = new LongAdder();
+
+        void add(long amountInMinorUnits) {
+            minorUnits.add(amountInMinorUnits);
+            count.increment();
+        }
+
+        void reset() {
+            minorUnits.reset();
+            count.reset();
+        }
+
+        PaymentTotals toPaymentTotals(Currency currency) {
+            return new PaymentTotals(currency, MinorUnits.toBigDecimal(minorUnits.sum()), count.sum());
+        }
+    }
+}
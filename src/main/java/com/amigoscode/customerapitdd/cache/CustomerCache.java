@@ -0,0 +1,95 @@
+package com.amigoscode.customerapitdd.cache;
+
+import com.amigoscode.customerapitdd.dto.CustomerSummary;
+import com.amigoscode.customerapitdd.model.Customer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class CustomerCache implements MeterBinder {
+
+    private final ExpiringCache<UUID, Boolean> knownCustomerIds;
+    private final ExpiringCache<String, CustomerSummary> customersByPhoneNumber;
+
+    public CustomerCache(@Value("${customer.cache.max-size:10000}") int maxSize,
+                         @Value("${customer.cache.ttl-seconds:600}") long ttlSeconds) {
+        this.knownCustomerIds = new ExpiringCache<>(maxSize, ttlSeconds, TimeUnit.SECONDS);
+        this.customersByPhoneNumber = new ExpiringCache<>(maxSize, ttlSeconds, TimeUnit.SECONDS);
+    }
+
+    public boolean isKnownCustomer(UUID customerId) {
+        return knownCustomerIds.get(customerId).isPresent();
+    }
+
+    public void markKnownCustomer(UUID customerId) {
+        knownCustomerIds.put(customerId, Boolean.TRUE);
+    }
+
+    public Optional<CustomerSummary> getByPhoneNumber(String normalizedPhoneNumber) {
+        return customersByPhoneNumber.get(normalizedPhoneNumber);
+    }
+
+    public CustomerSummary put(Customer customer) {
+        CustomerSummary summary = new CachedCustomer(customer.getId(), customer.getName());
+        put(customer.getNormalizedPhoneNumber(), summary);
+        return summary;
+    }
+
+    public void put(String normalizedPhoneNumber, CustomerSummary customer) {
+        knownCustomerIds.put(customer.getId(), Boolean.TRUE);
+        customersByPhoneNumber.put(normalizedPhoneNumber, customer);
+    }
+
+    public void invalidate(Customer customer) {
+        if (customer.getId() != null) {
+            knownCustomerIds.invalidate(customer.getId());
+        }
+        customersByPhoneNumber.invalidate(customer.getNormalizedPhoneNumber());
+    }
+
+    public void invalidateAll() {
+        knownCustomerIds.invalidateAll();
+        customersByPhoneNumber.invalidateAll();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        knownCustomerIds.bindTo(registry, "customer.ids");
+        customersByPhoneNumber.bindTo(registry, "customer.phone.numbers");
+    }
+
+    public ExpiringCache<UUID, Boolean> customerIds() {
+        return knownCustomerIds;
+    }
+
+    public ExpiringCache<String, CustomerSummary> phoneNumbers() {
+        return customersByPhoneNumber;
+    }
+
+    private static final class CachedCustomer implements CustomerSummary {
+
+        private final UUID id;
+        private final String name;
+
+        private CachedCustomer(UUID id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        @Override
+        public UUID getId() {
+            return id;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+}
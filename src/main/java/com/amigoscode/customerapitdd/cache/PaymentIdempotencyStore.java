@@ -0,0 +1,86 @@
+package com.amigoscode.customerapitdd.cache;
+
+import com.amigoscode.customerapitdd.interfaces.PaymentStore;
+import com.amigoscode.customerapitdd.model.Payment;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the outcome of recent payments by idempotency key. Keys missing from memory fall back
+ * to the indexed idempotency key column, so a replay is answered without charging the card again.
+ * With sharded payments that column is unique per shard only, keys are scoped to a customer.
+ */
+@Component
+public class PaymentIdempotencyStore implements MeterBinder {
+
+    private final PaymentStore paymentStore;
+    private final ExpiringCache<String, Payment> recentPayments;
+    private final Set<String> inFlightKeys = ConcurrentHashMap.newKeySet();
+    // acknowledged payments not in the payment table yet, kept whatever the cache evicts until they are
+    private final ConcurrentMap<String, Payment> unwrittenPayments = new ConcurrentHashMap<>();
+
+    public PaymentIdempotencyStore(PaymentStore paymentStore,
+                                   @Value("${payment.idempotency.max-size:100000}") int maxSize,
+                                   @Value("${payment.idempotency.ttl-seconds:86400}") long ttlSeconds) {
+        this.paymentStore = paymentStore;
+        this.recentPayments = new ExpiringCache<>(maxSize, ttlSeconds, TimeUnit.SECONDS);
+    }
+
+    public Optional<Payment> findCompleted(String idempotencyKey) {
+        Optional<Payment> recent = recentPayments.get(idempotencyKey);
+        if (recent.isPresent()) {
+            return recent;
+        }
+        Payment unwritten = unwrittenPayments.get(idempotencyKey);
+        if (unwritten != null) {
+            return Optional.of(unwritten);
+        }
+        Optional<Payment> stored = paymentStore.findByIdempotencyKey(idempotencyKey);
+        stored.ifPresent(payment -> recentPayments.put(idempotencyKey, payment));
+        return stored;
+    }
+
+    /**
+     * @return false when another request holding the same key has not finished yet
+     */
+    public boolean begin(String idempotencyKey) {
+        return inFlightKeys.add(idempotencyKey);
+    }
+
+    public void complete(String idempotencyKey, Payment payment) {
+        recentPayments.put(idempotencyKey, payment);
+        inFlightKeys.remove(idempotencyKey);
+    }
+
+    public void abort(String idempotencyKey) {
+        inFlightKeys.remove(idempotencyKey);
+    }
+
+    /**
+     * Answers replays of a payment written behind the request from memory until {@link #written} is called.
+     */
+    public void holdUntilWritten(String idempotencyKey, Payment payment) {
+        unwrittenPayments.put(idempotencyKey, payment);
+    }
+
+    public void written(String idempotencyKey) {
+        unwrittenPayments.remove(idempotencyKey);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        recentPayments.bindTo(registry, "payment.idempotency");
+    }
+
+    public ExpiringCache<String, Payment> recentPayments() {
+        return recentPayments;
+    }
+}
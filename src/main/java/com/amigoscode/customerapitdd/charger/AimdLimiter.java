@@ -0,0 +1,53 @@
+package com.amigoscode.customerapitdd.charger;
+
+/**
+ * Concurrency limit that adapts to the card network: every fast call raises the limit by 1/limit,
+ * about one more slot per limit-sized round of calls, every slow or failed call cuts it by {@code backoffRatio}.
+ * Calls over the limit are rejected rather than queued.
+ */
+public class AimdLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+
+    private double limit;
+    private int inFlight;
+
+    public AimdLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio) {
+        if (minLimit <= 0 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException(String.format(
+                    "limits must satisfy 0 < min [%s] <= initial [%s] <= max [%s]", minLimit, initialLimit, maxLimit));
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.limit = initialLimit;
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        inFlight--;
+        limit = Math.min(maxLimit, limit + 1.0 / limit);
+    }
+
+    public synchronized void onDropped() {
+        inFlight--;
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
@@ -0,0 +1,84 @@
+package com.amigoscode.customerapitdd.charger;
+
+import com.amigoscode.customerapitdd.interfaces.AsyncCardCharger;
+import com.amigoscode.customerapitdd.interfaces.CardCharger;
+import com.amigoscode.customerapitdd.model.Money;
+import com.amigoscode.customerapitdd.service.CardPaymentCharge;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs a blocking {@link CardCharger} on its own executor so callers never wait on the card network.
+ * At most {@code maxInFlight} charges run at once and extra calls fail fast instead of queueing. A charge
+ * still waiting for an executor thread when the timeout elapses fails with a
+ * {@link java.util.concurrent.TimeoutException} and never reaches the card network. A charge that has
+ * started is never abandoned, since the card may be debited after any timeout here. The card network
+ * client's own timeout bounds how long it runs.
+ */
+public class BulkheadCardCharger implements AsyncCardCharger {
+
+    private final CardCharger cardCharger;
+    private final Executor executor;
+    private final Semaphore inFlight;
+    private final Duration timeout;
+
+    public BulkheadCardCharger(CardCharger cardCharger, Executor executor, int maxInFlight, Duration timeout) {
+        this.cardCharger = cardCharger;
+        this.executor = executor;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.timeout = timeout;
+    }
+
+    @Override
+    public CompletableFuture<CardPaymentCharge> chargeCard(String cardSource,
+                                                           Money amount,
+                                                           String description) {
+        if (!inFlight.tryAcquire()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("card charger is at capacity"));
+        }
+        CompletableFuture<CardPaymentCharge> charge = new CompletableFuture<>();
+        // set by whichever comes first, the charge starting or the timeout
+        AtomicBoolean decided = new AtomicBoolean();
+        try {
+            executor.execute(() -> {
+                if (!decided.compareAndSet(false, true)) {
+                    // timed out while queued, the caller has its answer and the card was never charged
+                    inFlight.release();
+                    return;
+                }
+                CardPaymentCharge result;
+                try {
+                    result = cardCharger.chargeCard(cardSource, amount, description);
+                } catch (RuntimeException e) {
+                    inFlight.release();
+                    charge.completeExceptionally(e);
+                    return;
+                }
+                // the slot is free again by the time the caller sees the result
+                inFlight.release();
+                charge.complete(result);
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            return CompletableFuture.failedFuture(new IllegalStateException("card charger is at capacity", e));
+        }
+        CompletableFuture.delayedExecutor(timeout.toMillis(), TimeUnit.MILLISECONDS).execute(() -> {
+            if (decided.compareAndSet(false, true)) {
+                charge.completeExceptionally(new TimeoutException(
+                        String.format("card charge did not start within [%s]", timeout)));
+            }
+        });
+        return charge;
+    }
+
+    public int availableSlots() {
+        return inFlight.availablePermits();
+    }
+}
@@ -0,0 +1,46 @@
+package com.amigoscode.customerapitdd.charger;
+
+import com.amigoscode.customerapitdd.interfaces.CardCharger;
+
+import java.time.Duration;
+
+/**
+ * The circuit breaker and limiter settings every card charger is decorated with. Each decorated charger
+ * gets a breaker and limiter of its own, so one degraded card network does not shed the charges routed
+ * to another.
+ */
+public class CardChargerResilience {
+
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final Duration slowCallThreshold;
+
+    public CardChargerResilience(int failureThreshold,
+                                 Duration openDuration,
+                                 int initialLimit,
+                                 int minLimit,
+                                 int maxLimit,
+                                 Duration slowCallThreshold) {
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.slowCallThreshold = slowCallThreshold;
+    }
+
+    /**
+     * @param name tags the meters of the decorated charger, the bean name of the charger it wraps
+     */
+    public ResilientCardCharger decorate(String name, CardCharger cardCharger) {
+        return new ResilientCardCharger(
+                name,
+                cardCharger,
+                new CircuitBreaker(failureThreshold, openDuration),
+                new AimdLimiter(initialLimit, minLimit, maxLimit, 0.9),
+                slowCallThreshold);
+    }
+}
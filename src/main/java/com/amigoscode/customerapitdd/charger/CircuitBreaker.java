@@ -0,0 +1,114 @@
+package com.amigoscode.customerapitdd.charger;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Opens after {@code failureThreshold} consecutive failures and rejects every call for {@code openDuration}.
+ * It then lets a single probe through (half-open): a successful probe closes the circuit, a failed one opens it again.
+ * Results of calls let through before the circuit opened are ignored until it closes again.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+
+    public enum Permission {
+        DENIED,
+        CALL,
+        PROBE
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, System::nanoTime);
+    }
+
+    CircuitBreaker(int failureThreshold, Duration openDuration, LongSupplier nanoClock) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException(String.format("failure threshold [%s] must be positive", failureThreshold));
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * @return whether the call may go ahead, and if so whether it is the half-open probe. A permitted call must
+     * then be reported through exactly one of {@link #onSuccess(Permission)}, {@link #onFailure(Permission)}
+     * or {@link #onAbandoned(Permission)}
+     */
+    public synchronized Permission tryAcquirePermission() {
+        if (state == State.OPEN && nanoClock.getAsLong() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+        }
+        switch (state) {
+            case CLOSED:
+                return Permission.CALL;
+            case HALF_OPEN:
+                if (probeInFlight) {
+                    return Permission.DENIED;
+                }
+                probeInFlight = true;
+                return Permission.PROBE;
+            default:
+                return Permission.DENIED;
+        }
+    }
+
+    /**
+     * Only the probe closes the circuit. A call let through while it was still closed may finish after it
+     * opened, its success says nothing about the card network now.
+     */
+    public synchronized void onSuccess(Permission permission) {
+        if (permission == Permission.PROBE) {
+            probeInFlight = false;
+            if (state == State.HALF_OPEN) {
+                consecutiveFailures = 0;
+                state = State.CLOSED;
+            }
+        } else if (state == State.CLOSED) {
+            consecutiveFailures = 0;
+        }
+    }
+
+    public synchronized void onFailure(Permission permission) {
+        if (permission == Permission.PROBE) {
+            probeInFlight = false;
+            if (state == State.HALF_OPEN) {
+                open();
+            }
+        } else if (state == State.CLOSED && ++consecutiveFailures >= failureThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * The permitted call never reached the card network, it neither closes nor opens the circuit.
+     */
+    public synchronized void onAbandoned(Permission permission) {
+        if (permission == Permission.PROBE) {
+            probeInFlight = false;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = nanoClock.getAsLong();
+    }
+}
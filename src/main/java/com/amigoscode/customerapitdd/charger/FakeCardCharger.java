@@ -0,0 +1,35 @@
+package com.amigoscode.customerapitdd.charger;
+
+import com.amigoscode.customerapitdd.interfaces.CardCharger;
+import com.amigoscode.customerapitdd.model.Money;
+import com.amigoscode.customerapitdd.service.CardPaymentCharge;
+
+import java.time.Duration;
+
+/**
+ * Local stand-in for the card network. Every charge is debited after a fixed latency,
+ * which makes it usable to measure throughput without a real processor.
+ */
+public class FakeCardCharger implements CardCharger {
+
+    private final Duration latency;
+
+    public FakeCardCharger(Duration latency) {
+        this.latency = latency;
+    }
+
+    @Override
+    public CardPaymentCharge chargeCard(String cardSource,
+                                        Money amount,
+                                        String description) {
+        if (!latency.isZero()) {
+            try {
+                Thread.sleep(latency.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("card charge interrupted", e);
+            }
+        }
+        return new CardPaymentCharge(true);
+    }
+}
@@ -0,0 +1,109 @@
+package com.amigoscode.customerapitdd.charger;
+
+import com.amigoscode.customerapitdd.interfaces.CardCharger;
+import com.amigoscode.customerapitdd.model.Money;
+import com.amigoscode.customerapitdd.service.CardPaymentCharge;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sheds card charges while the card network is degraded instead of letting callers wait out its latency.
+ * A {@link CircuitBreaker} stops calling it after repeated failures and an {@link AimdLimiter} bounds how
+ * many charges may be in flight. A call slower than {@code slowCallThreshold} counts as a failure for both.
+ * Its meters are tagged with the name of the card charger it decorates.
+ */
+public class ResilientCardCharger implements CardCharger, MeterBinder {
+
+    private final String name;
+    private final CardCharger cardCharger;
+    private final CircuitBreaker circuitBreaker;
+    private final AimdLimiter limiter;
+    private final long slowCallNanos;
+
+    private final LongAdder rejectedByCircuit = new LongAdder();
+    private final LongAdder rejectedByLimit = new LongAdder();
+
+    public ResilientCardCharger(String name,
+                                CardCharger cardCharger,
+                                CircuitBreaker circuitBreaker,
+                                AimdLimiter limiter,
+                                Duration slowCallThreshold) {
+        this.name = name;
+        this.cardCharger = cardCharger;
+        this.circuitBreaker = circuitBreaker;
+        this.limiter = limiter;
+        this.slowCallNanos = slowCallThreshold.toNanos();
+    }
+
+    @Override
+    public CardPaymentCharge chargeCard(String cardSource, Money amount, String description) {
+        CircuitBreaker.Permission permission = circuitBreaker.tryAcquirePermission();
+        if (permission == CircuitBreaker.Permission.DENIED) {
+            rejectedByCircuit.increment();
+            throw new IllegalStateException("card charger circuit is open");
+        }
+        if (!limiter.tryAcquire()) {
+            circuitBreaker.onAbandoned(permission);
+            rejectedByLimit.increment();
+            throw new IllegalStateException("card charger is at capacity");
+        }
+
+        long start = System.nanoTime();
+        CardPaymentCharge charge;
+        try {
+            charge = cardCharger.chargeCard(cardSource, amount, description);
+        } catch (RuntimeException e) {
+            limiter.onDropped();
+            circuitBreaker.onFailure(permission);
+            throw e;
+        }
+        // a declined card is an answer from a healthy network, only slowness counts against it
+        if (System.nanoTime() - start > slowCallNanos) {
+            limiter.onDropped();
+            circuitBreaker.onFailure(permission);
+        } else {
+            limiter.onSuccess();
+            circuitBreaker.onSuccess(permission);
+        }
+        return charge;
+    }
+
+    public CircuitBreaker.State circuitState() {
+        return circuitBreaker.getState();
+    }
+
+    public int concurrencyLimit() {
+        return limiter.getLimit();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("card.charger.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .description("Circuit breaker state, 0 closed, 1 half-open, 2 open")
+                .tag("charger", name)
+                .register(registry);
+        Gauge.builder("card.charger.concurrency.limit", limiter, AimdLimiter::getLimit)
+                .description("Current adaptive limit on concurrent card charges")
+                .tag("charger", name)
+                .register(registry);
+        Gauge.builder("card.charger.in.flight", limiter, AimdLimiter::getInFlight)
+                .description("Card charges currently in flight")
+                .tag("charger", name)
+                .register(registry);
+        registerRejections(registry, "circuit_open", rejectedByCircuit);
+        registerRejections(registry, "limit", rejectedByLimit);
+    }
+
+    private void registerRejections(MeterRegistry registry, String reason, LongAdder rejections) {
+        FunctionCounter.builder("card.charger.rejected", rejections, LongAdder::sum)
+                .description("Card charges shed without calling the card network")
+                .tag("charger", name)
+                .tag("reason", reason)
+                .register(registry);
+    }
+}
@@ -0,0 +1,84 @@
+package com.amigoscode.customerapitdd.config;
+
+import com.amigoscode.customerapitdd.charger.BulkheadCardCharger;
+import com.amigoscode.customerapitdd.charger.CardChargerResilience;
+import com.amigoscode.customerapitdd.charger.FakeCardCharger;
+import com.amigoscode.customerapitdd.charger.ResilientCardCharger;
+import com.amigoscode.customerapitdd.interfaces.AsyncCardCharger;
+import com.amigoscode.customerapitdd.interfaces.CardCharger;
+import com.amigoscode.customerapitdd.policy.CurrencyPolicies;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class CardChargerConfig {
+
+    // the charger of the card network currencies without a route go to, other CardCharger beans are route targets
+    public static final String CARD_NETWORK = "cardNetwork";
+
+    @Bean
+    @Qualifier(CARD_NETWORK)
+    @ConditionalOnProperty(value = "stripe.enabled", havingValue = "false")
+    public CardCharger fakeCardCharger(@Value("${card-charger.fake.latency-ms:0}") long latencyMillis) {
+        return new FakeCardCharger(Duration.ofMillis(latencyMillis));
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "card-charger.resilience.enabled", havingValue = "true", matchIfMissing = true)
+    public CardChargerResilience cardChargerResilience(
+            @Value("${card-charger.circuit-breaker.failure-threshold:5}") int failureThreshold,
+            @Value("${card-charger.circuit-breaker.open-ms:10000}") long openMillis,
+            @Value("${card-charger.limit.initial:64}") int initialLimit,
+            @Value("${card-charger.limit.min:1}") int minLimit,
+            @Value("${card-charger.limit.max:256}") int maxLimit,
+            @Value("${card-charger.slow-call-ms:2000}") long slowCallMillis) {
+        return new CardChargerResilience(failureThreshold, Duration.ofMillis(openMillis),
+                initialLimit, minLimit, maxLimit, Duration.ofMillis(slowCallMillis));
+    }
+
+    // the card network charger decorated, primary so it is the default of the currency policy
+    @Bean
+    @Primary
+    @ConditionalOnProperty(value = "card-charger.resilience.enabled", havingValue = "true", matchIfMissing = true)
+    public ResilientCardCharger resilientCardCharger(@Qualifier(CARD_NETWORK) CardCharger cardCharger,
+                                                     CardChargerResilience cardChargerResilience) {
+        return cardChargerResilience.decorate(CARD_NETWORK, cardCharger);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService cardChargerExecutor(@Value("${card-charger.threads:64}") int threads,
+                                               @Value("${app.virtual-threads.enabled:false}") boolean virtualThreads) {
+        // with virtual threads the in-flight limit of the bulkhead is the only bound on concurrent charges
+        if (virtualThreads) {
+            return VirtualThreads.newVirtualThreadPerTaskExecutor();
+        }
+        return Executors.newFixedThreadPool(threads);
+    }
+
+    // batches call the card chargers directly, so they get threads of their own instead of those the bulkhead bounds
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService batchCardChargerExecutor(@Value("${card-charger.batch-threads:16}") int threads) {
+        return Executors.newFixedThreadPool(threads);
+    }
+
+    // charges go out through the card charger the currency policy routes their currency to
+    @Bean
+    public AsyncCardCharger asyncCardCharger(CurrencyPolicies currencyPolicies,
+                                             @Qualifier("cardChargerExecutor") ExecutorService cardChargerExecutor,
+                                             @Value("${card-charger.max-in-flight:64}") int maxInFlight,
+                                             @Value("${card-charger.timeout-ms:5000}") long timeoutMillis) {
+        CardCharger routingCardCharger = (cardSource, amount, description) -> currencyPolicies.current()
+                .cardChargerFor(amount.getCurrency())
+                .chargeCard(cardSource, amount, description);
+        return new BulkheadCardCharger(
+                routingCardCharger, cardChargerExecutor, maxInFlight, Duration.ofMillis(timeoutMillis));
+    }
+}
@@ -0,0 +1,38 @@
+package com.amigoscode.customerapitdd.config;
+
+import com.amigoscode.customerapitdd.model.MinorUnits;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.cfg.ContextAttributes;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Lets clients send and accept application/cbor instead of JSON, chosen by Content-Type and Accept.
+ * The DTOs and responses are the same, but UUIDs travel as 16 raw bytes and payment amounts as their minor
+ * units, so neither is parsed from text. The reactive variant registers the same mapper as a codec.
+ */
+@Configuration
+public class CborConfig {
+
+    /**
+     * @param builder Boot's builder, so the mapper has the modules and settings of the JSON one
+     */
+    public static ObjectMapper cborObjectMapper(Jackson2ObjectMapperBuilder builder) {
+        ObjectMapper objectMapper = builder.createXmlMapper(false).factory(new CBORFactory()).build();
+        ContextAttributes attributes = ContextAttributes.getEmpty().withSharedAttribute(MinorUnits.AS_MINOR_UNITS, true);
+        objectMapper.setConfig(objectMapper.getSerializationConfig().with(attributes));
+        objectMapper.setConfig(objectMapper.getDeserializationConfig().with(attributes));
+        return objectMapper;
+    }
+
+    // listed ahead of the converter Spring MVC adds on its own, whose mapper would write amounts as decimals
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(cborObjectMapper(builder));
+    }
+}
@@ -0,0 +1,53 @@
+package com.amigoscode.customerapitdd.config;
+
+import com.amigoscode.customerapitdd.charger.CardChargerResilience;
+import com.amigoscode.customerapitdd.charger.ResilientCardCharger;
+import com.amigoscode.customerapitdd.interfaces.CardCharger;
+import com.amigoscode.customerapitdd.policy.CurrencyPolicies;
+import com.amigoscode.customerapitdd.policy.CurrencyPolicyLoader;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+@Configuration
+@EnableScheduling
+public class CurrencyPolicyConfig {
+
+    @Bean
+    public CurrencyPolicyLoader currencyPolicyLoader(Environment environment,
+                                                     Map<String, CardCharger> cardChargers,
+                                                     @Qualifier(CardChargerConfig.CARD_NETWORK) CardCharger cardNetworkCharger,
+                                                     ObjectProvider<ResilientCardCharger> resilientCardCharger,
+                                                     ObjectProvider<CardChargerResilience> cardChargerResilience,
+                                                     ObjectProvider<MeterRegistry> meterRegistry,
+                                                     @Value("${currency-policy.file:}") String file) {
+        // routed card chargers get a circuit breaker, limiter and meters of their own, like the card network's
+        CardChargerResilience resilience = cardChargerResilience.getIfAvailable();
+        BiFunction<String, CardCharger, CardCharger> routeDecorator = (beanName, cardCharger) -> {
+            if (resilience == null) {
+                return cardCharger;
+            }
+            ResilientCardCharger decorated = resilience.decorate(beanName, cardCharger);
+            meterRegistry.ifAvailable(decorated::bindTo);
+            return decorated;
+        };
+        CardCharger defaultCardCharger = resilientCardCharger.getIfAvailable();
+        return new CurrencyPolicyLoader(environment, cardChargers,
+                defaultCardCharger != null ? defaultCardCharger : cardNetworkCharger, routeDecorator,
+                file.isEmpty() ? null : Path.of(file));
+    }
+
+    @Bean
+    public CurrencyPolicies currencyPolicies(CurrencyPolicyLoader currencyPolicyLoader) {
+        return currencyPolicyLoader.getCurrencyPolicies();
+    }
+}
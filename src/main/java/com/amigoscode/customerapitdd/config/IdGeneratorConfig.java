@@ -0,0 +1,24 @@
+package com.amigoscode.customerapitdd.config;
+
+import com.amigoscode.customerapitdd.id.RandomUuidGenerator;
+import com.amigoscode.customerapitdd.id.TimeOrderedUuidGenerator;
+import com.amigoscode.customerapitdd.interfaces.IdGenerator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class IdGeneratorConfig {
+
+    @Bean
+    @ConditionalOnProperty(value = "customer.id-generator", havingValue = "time-ordered", matchIfMissing = true)
+    public IdGenerator timeOrderedIdGenerator() {
+        return new TimeOrderedUuidGenerator();
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "customer.id-generator", havingValue = "random")
+    public IdGenerator randomIdGenerator() {
+        return new RandomUuidGenerator();
+    }
+}
@@ -0,0 +1,45 @@
+package com.amigoscode.customerapitdd.config;
+
+import com.amigoscode.customerapitdd.cache.PaymentIdempotencyStore;
+import com.amigoscode.customerapitdd.ledger.PaymentLedger;
+import com.amigoscode.customerapitdd.service.PaymentWriter;
+import com.amigoscode.customerapitdd.shard.PaymentIdAllocator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(value = "payment.ledger.enabled", havingValue = "true")
+public class PaymentLedgerConfig {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PaymentLedgerConfig.class);
+
+    // payments recovered from the ledger reach the table before the first request is taken
+    @Bean(destroyMethod = "close")
+    @Primary
+    public PaymentLedger paymentLedger(PaymentWriter paymentWriter,
+                                       PaymentIdempotencyStore paymentIdempotencyStore,
+                                       DataSource dataSource,
+                                       @Value("${payment.ledger.dir}") String dir,
+                                       @Value("${payment.ledger.segment-size-mb:64}") int segmentSizeMb,
+                                       @Value("${payment.ledger.flush-batch-size:500}") int flushBatchSize,
+                                       @Value("${payment.ledger.flush-interval-ms:200}") long flushIntervalMillis,
+                                       @Value("${spring.jpa.properties.payment.id.allocation_size:50}") int allocationSize) {
+        PaymentLedger paymentLedger = new PaymentLedger(Path.of(dir), segmentSizeMb * 1024 * 1024, flushBatchSize,
+                paymentWriter, paymentIdempotencyStore,
+                new PaymentIdAllocator(PaymentStoreConfig.paymentIdSequence(dataSource), allocationSize));
+        paymentLedger.open();
+        int replayed = paymentLedger.flush();
+        LOGGER.info("replayed {} payments from the ledger", replayed);
+        paymentLedger.startFlushing(Duration.ofMillis(flushIntervalMillis));
+        return paymentLedger;
+    }
+}
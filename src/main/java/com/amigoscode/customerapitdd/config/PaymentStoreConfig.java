@@ -0,0 +1,95 @@
+package com.amigoscode.customerapitdd.config;
+
+import com.amigoscode.customerapitdd.interfaces.PaymentStore;
+import com.amigoscode.customerapitdd.repository.JpaPaymentStore;
+import com.amigoscode.customerapitdd.repository.PaymentRepository;
+import com.amigoscode.customerapitdd.repository.SmsNotificationRepository;
+import com.amigoscode.customerapitdd.shard.PaymentIdAllocator;
+import com.amigoscode.customerapitdd.shard.PaymentShard;
+import com.amigoscode.customerapitdd.shard.ShardRebalancer;
+import com.amigoscode.customerapitdd.shard.ShardedPaymentStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.H2SequenceMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.PostgresSequenceMaxValueIncrementer;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+public class PaymentStoreConfig {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PaymentStoreConfig.class);
+
+    @Bean
+    @ConditionalOnProperty(value = "payment.sharding.enabled", havingValue = "false", matchIfMissing = true)
+    public PaymentStore jpaPaymentStore(PaymentRepository paymentRepository,
+                                        SmsNotificationRepository smsNotificationRepository) {
+        return new JpaPaymentStore(paymentRepository, smsNotificationRepository);
+    }
+
+    // the shard pools are not beans, a DataSource bean would switch off the application's own datasource
+    @Bean
+    @ConditionalOnProperty(value = "payment.sharding.enabled", havingValue = "true")
+    public ShardedPaymentStore shardedPaymentStore(DataSource dataSource,
+                                                   @Value("${payment.sharding.urls}") String[] urls,
+                                                   @Value("${payment.sharding.username:sa}") String username,
+                                                   @Value("${payment.sharding.password:}") String password,
+                                                   @Value("${spring.jpa.properties.payment.id.allocation_size:50}") int allocationSize,
+                                                   @Value("${customer.id-migration.enabled:false}") boolean idMigrationEnabled) {
+        if (idMigrationEnabled) {
+            throw new IllegalStateException("customer id migration does not move payments between shards");
+        }
+        List<PaymentShard> shards = new ArrayList<>(urls.length);
+        for (int i = 0; i < urls.length; i++) {
+            PaymentShard shard = new PaymentShard(i, DataSourceBuilder.create()
+                    .url(urls[i].trim())
+                    .username(username)
+                    .password(password)
+                    .build());
+            shard.createSchema();
+            shards.add(shard);
+        }
+        return new ShardedPaymentStore(shards, new PaymentIdAllocator(paymentIdSequence(dataSource), allocationSize));
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "payment.sharding.enabled", havingValue = "true")
+    public ShardRebalancer shardRebalancer(ShardedPaymentStore shardedPaymentStore,
+                                           @Value("${payment.sharding.rebalance-page-size:1000}") int pageSize) {
+        return new ShardRebalancer(shardedPaymentStore, pageSize);
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "payment.sharding.rebalance-on-startup", havingValue = "true")
+    public ApplicationRunner shardRebalanceRunner(ShardRebalancer shardRebalancer) {
+        return args -> {
+            long moved = shardRebalancer.rebalance();
+            LOGGER.info("moved {} payments to their shard", moved);
+        };
+    }
+
+    static DataFieldMaxValueIncrementer paymentIdSequence(DataSource dataSource) {
+        String url;
+        try {
+            url = (String) JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getURL);
+        } catch (MetaDataAccessException e) {
+            throw new IllegalStateException("could not read the database url", e);
+        }
+        return DatabaseDriver.fromJdbcUrl(url) == DatabaseDriver.POSTGRESQL
+                ? new PostgresSequenceMaxValueIncrementer(dataSource, "payment_id_seq")
+                : new H2SequenceMaxValueIncrementer(dataSource, "payment_id_seq");
+    }
+}
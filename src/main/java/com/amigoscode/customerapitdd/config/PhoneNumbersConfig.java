@@ -0,0 +1,17 @@
+package com.amigoscode.customerapitdd.config;
+
+import com.amigoscode.customerapitdd.model.PhoneNumbers;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Phone numbers are normalized in the entity too, outside of any bean, so the default country code is
+ * set on {@link PhoneNumbers} itself before customers are loaded or registered.
+ */
+@Configuration
+public class PhoneNumbersConfig {
+
+    public PhoneNumbersConfig(@Value("${phone-numbers.default-country-code:44}") String defaultCountryCode) {
+        PhoneNumbers.setDefaultCountryCode(defaultCountryCode);
+    }
+}
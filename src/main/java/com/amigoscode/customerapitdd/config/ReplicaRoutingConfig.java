@@ -0,0 +1,61 @@
+package com.amigoscode.customerapitdd.config;
+
+import com.amigoscode.customerapitdd.replica.ReplicaLagMonitor;
+import com.amigoscode.customerapitdd.replica.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConditionalOnProperty(value = "datasource.replicas.enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    // replaces the auto-configured datasource, the primary pool is built from the same spring.datasource properties
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties dataSourceProperties,
+                                 Environment environment,
+                                 @Value("${datasource.replicas.urls}") String[] urls,
+                                 @Value("${datasource.replicas.username:sa}") String username,
+                                 @Value("${datasource.replicas.password:}") String password,
+                                 @Value("${datasource.replicas.max-lag-ms:1000}") long maxLagMillis) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        List<DataSource> replicas = new ArrayList<>(urls.length);
+        for (String url : urls) {
+            replicas.add(DataSourceBuilder.create()
+                    .url(url.trim())
+                    .username(username)
+                    .password(password)
+                    .build());
+        }
+        // the connection is taken at the first statement, once the transaction's read-only flag is known
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replicas, maxLagMillis));
+    }
+
+    @Bean(destroyMethod = "stop")
+    public ReplicaLagMonitor replicaLagMonitor(DataSource dataSource,
+                                               @Value("${datasource.replicas.heartbeat-interval-ms:200}") long heartbeatIntervalMillis) {
+        ReplicaLagMonitor replicaLagMonitor = new ReplicaLagMonitor(
+                (ReplicaRoutingDataSource) ((LazyConnectionDataSourceProxy) dataSource).getTargetDataSource());
+        replicaLagMonitor.createHeartbeat();
+        replicaLagMonitor.start(Duration.ofMillis(heartbeatIntervalMillis));
+        return replicaLagMonitor;
+    }
+}
@@ -0,0 +1,53 @@
+package com.amigoscode.customerapitdd.config;
+
+import com.amigoscode.customerapitdd.interfaces.SmsOutbox;
+import com.amigoscode.customerapitdd.interfaces.SmsSender;
+import com.amigoscode.customerapitdd.notification.FakeSmsSender;
+import com.amigoscode.customerapitdd.notification.SmsOutboxDispatcher;
+import com.amigoscode.customerapitdd.repository.CustomerRepository;
+import com.amigoscode.customerapitdd.repository.JpaSmsOutbox;
+import com.amigoscode.customerapitdd.repository.SmsNotificationRepository;
+import com.amigoscode.customerapitdd.shard.ShardedPaymentStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(value = "sms.outbox.dispatcher.enabled", havingValue = "true", matchIfMissing = true)
+public class SmsOutboxConfig {
+
+    @Bean
+    @ConditionalOnProperty(value = "sms.provider", havingValue = "fake", matchIfMissing = true)
+    public SmsSender fakeSmsSender() {
+        return new FakeSmsSender();
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public SmsOutboxDispatcher smsOutboxDispatcher(SmsNotificationRepository smsNotificationRepository,
+                                                   ObjectProvider<ShardedPaymentStore> shardedPaymentStore,
+                                                   CustomerRepository customerRepository,
+                                                   SmsSender smsSender,
+                                                   @Value("${sms.outbox.batch-size:100}") int batchSize,
+                                                   @Value("${sms.outbox.max-attempts:5}") int maxAttempts,
+                                                   @Value("${sms.outbox.sends-per-second:20}") int sendsPerSecond,
+                                                   @Value("${sms.outbox.claim-timeout-ms:60000}") long claimTimeoutMillis) {
+        // with sharding on the payments written so far without it keep their notifications in the primary
+        List<SmsOutbox> outboxes = new ArrayList<>();
+        outboxes.add(new JpaSmsOutbox(smsNotificationRepository));
+        shardedPaymentStore.ifAvailable(store -> outboxes.addAll(store.outboxes()));
+        // sends wait out the provider rate limit on their own thread rather than on the shared scheduler
+        ExecutorService sender = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "sms-outbox-sender"));
+        return new SmsOutboxDispatcher(outboxes, customerRepository, smsSender, sender,
+                batchSize, maxAttempts, sendsPerSecond, Duration.ofMillis(claimTimeoutMillis));
+    }
+}
@@ -0,0 +1,57 @@
+package com.amigoscode.customerapitdd.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Training run for the class data sharing archive built by the cds profile: the application starts,
+ * serves one request so the classes of the first request are listed too, and exits, at which point the
+ * JVM writes the list of classes it loaded.
+ */
+@Configuration
+@ConditionalOnProperty(value = "app.exit-after-startup", havingValue = "true")
+public class StartupTrainingConfig {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupTrainingConfig.class);
+
+    // the request the startup benchmark waits for
+    static final String WARM_UP_PATH = "/api/v1/payments/totals?currency=USD";
+
+    @Bean
+    public ApplicationRunner exitAfterStartup(ConfigurableApplicationContext context) {
+        return args -> {
+            warmUp(context.getEnvironment().getProperty("local.server.port"));
+            System.exit(SpringApplication.exit(context));
+        };
+    }
+
+    private static void warmUp(String port) throws InterruptedException {
+        if (port == null) {
+            LOGGER.warn("no web server running, exiting without a warm-up request");
+            return;
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + WARM_UP_PATH))
+                .timeout(Duration.ofSeconds(30))
+                .build();
+        try {
+            HttpResponse<Void> response = HttpClient.newHttpClient()
+                    .send(request, HttpResponse.BodyHandlers.discarding());
+            LOGGER.info("warm-up request answered {}", response.statusCode());
+        } catch (IOException e) {
+            LOGGER.warn("warm-up request failed", e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.amigoscode.customerapitdd.config;
+
+import org.apache.catalina.Lifecycle;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatConnectorCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Opt-in request execution on virtual threads, enabled with {@code app.virtual-threads.enabled=true}.
+ * Tomcat hands every request to its own virtual thread, so requests blocked on JDBC or on the card
+ * network no longer hold one of the {@code server.tomcat.max-threads} platform threads.
+ * The card charger executor follows the same switch, see {@link CardChargerConfig}.
+ */
+@Configuration
+@ConditionalOnProperty(value = "app.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    // tomcat only shuts down executors it created itself, this one goes once the connector has stopped
+    @Bean
+    public TomcatConnectorCustomizer virtualThreadConnectorCustomizer() {
+        return connector -> {
+            ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+            connector.getProtocolHandler().setExecutor(executor);
+            connector.addLifecycleListener(event -> {
+                if (Lifecycle.AFTER_STOP_EVENT.equals(event.getType())) {
+                    executor.shutdown();
+                }
+            });
+        };
+    }
+}
@@ -0,0 +1,77 @@
+package com.amigoscode.customerapitdd.controller;
+
+import com.amigoscode.customerapitdd.dto.CustomerSearchResult;
+import com.amigoscode.customerapitdd.search.CustomerSearchIndex;
+import com.amigoscode.customerapitdd.service.CustomerImportReader;
+import com.amigoscode.customerapitdd.service.CustomerImportService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+@RestController
+@RequestMapping("api/v1")
+public class CustomerController {
+
+    static final String NDJSON = "application/x-ndjson";
+    static final String CSV = "text/csv";
+
+    private final CustomerImportService customerImportService;
+    private final CustomerSearchIndex customerSearchIndex;
+    private final ObjectMapper objectMapper;
+
+    public CustomerController(CustomerImportService customerImportService,
+                              CustomerSearchIndex customerSearchIndex,
+                              ObjectMapper objectMapper) {
+        this.customerImportService = customerImportService;
+        this.customerSearchIndex = customerSearchIndex;
+        this.objectMapper = objectMapper;
+    }
+
+    @GetMapping("customers/search")
+    public List<CustomerSearchResult> searchCustomers(@RequestParam("q") String query,
+                                                      @RequestParam(name = "limit", defaultValue = "20") int limit) {
+        return customerSearchIndex.search(query, limit);
+    }
+
+    /**
+     * Reads the body line by line and answers with one NDJSON result per input line, written out as chunks
+     * complete, so neither the upload nor the report is ever buffered whole. Runs on the request thread rather
+     * than as a streaming body so a long import is not cut off by the async request timeout.
+     */
+    @PostMapping(path = "customers/import", consumes = {NDJSON, CSV})
+    public void importCustomers(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                InputStream body,
+                                HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        InputStreamReader reader = new InputStreamReader(body, StandardCharsets.UTF_8);
+        CustomerImportReader lines = contentType.isCompatibleWith(MediaType.valueOf(CSV))
+                ? CustomerImportReader.csv(reader)
+                : CustomerImportReader.ndjson(reader, objectMapper);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            customerImportService.importCustomers(lines, result -> {
+                try {
+                    generator.writeObject(result);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
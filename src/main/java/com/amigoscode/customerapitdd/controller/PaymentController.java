@@ -0,0 +1,101 @@
+package com.amigoscode.customerapitdd.controller;
+
+import com.amigoscode.customerapitdd.aggregate.PaymentAggregates;
+import com.amigoscode.customerapitdd.dto.BatchPaymentRequest;
+import com.amigoscode.customerapitdd.dto.BatchPaymentResult;
+import com.amigoscode.customerapitdd.dto.PaymentRequest;
+import com.amigoscode.customerapitdd.dto.PaymentTotals;
+import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.model.Payment;
+import com.amigoscode.customerapitdd.service.PaymentHistoryService;
+import com.amigoscode.customerapitdd.service.PaymentService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("api/v1")
+public class PaymentController {
+
+    private final PaymentService paymentService;
+    private final PaymentHistoryService paymentHistoryService;
+    private final PaymentAggregates paymentAggregates;
+    private final ObjectMapper objectMapper;
+
+    public PaymentController(PaymentService paymentService,
+                             PaymentHistoryService paymentHistoryService,
+                             PaymentAggregates paymentAggregates,
+                             ObjectMapper objectMapper) {
+        this.paymentService = paymentService;
+        this.paymentHistoryService = paymentHistoryService;
+        this.paymentAggregates = paymentAggregates;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostMapping("customers/{customerId}/payments")
+    public CompletableFuture<Payment> chargeCard(@PathVariable("customerId") UUID customerId,
+                                                 @RequestBody PaymentRequest paymentRequest) {
+        return paymentService.chargeCardAsync(customerId, paymentRequest);
+    }
+
+    @PostMapping("payments/batch")
+    public List<BatchPaymentResult> chargeCards(@RequestBody List<BatchPaymentRequest> requests) {
+        return paymentService.chargeCards(requests);
+    }
+
+    /**
+     * Payments are serialized page by page straight to the response instead of being collected first. Runs on
+     * the request thread rather than as a streaming body so a long history is not cut off by the async
+     * request timeout.
+     */
+    @GetMapping("customers/{customerId}/payments")
+    public void getPayments(@PathVariable("customerId") UUID customerId,
+                            @RequestParam(name = "afterPaymentId", defaultValue = "0") long afterPaymentId,
+                            @RequestParam(name = "limit", defaultValue = "-1") long limit,
+                            HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.writeStartArray();
+            paymentHistoryService.forEachPayment(customerId, afterPaymentId, limit, payment -> {
+                try {
+                    generator.writeObject(payment);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        }
+    }
+
+    @GetMapping("payments/totals")
+    public PaymentTotals getTotals(@RequestParam("currency") Currency currency,
+                                   @RequestParam(name = "hour", required = false)
+                                   @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant hour) {
+        return hour == null
+                ? paymentAggregates.totalFor(currency)
+                : paymentAggregates.totalForHour(hour, currency);
+    }
+
+    @GetMapping("customers/{customerId}/payments/totals")
+    public PaymentTotals getTotals(@PathVariable("customerId") UUID customerId,
+                                   @RequestParam("currency") Currency currency) {
+        return paymentAggregates.totalFor(customerId, currency);
+    }
+}
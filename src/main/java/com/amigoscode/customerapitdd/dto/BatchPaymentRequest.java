@@ -0,0 +1,34 @@
+package com.amigoscode.customerapitdd.dto;
+
+import com.amigoscode.customerapitdd.model.Payment;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.UUID;
+
+public class BatchPaymentRequest {
+
+    private final UUID customerId;
+    private final Payment payment;
+
+    public BatchPaymentRequest(@JsonProperty("customerId") UUID customerId,
+                               @JsonProperty("payment") Payment payment) {
+        this.customerId = customerId;
+        this.payment = payment;
+    }
+
+    public UUID getCustomerId() {
+        return customerId;
+    }
+
+    public Payment getPayment() {
+        return payment;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchPaymentRequest{" +
+                "customerId=" + customerId +
+                ", payment=" + payment +
+                '}';
+    }
+}
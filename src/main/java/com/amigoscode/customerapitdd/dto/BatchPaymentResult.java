@@ -0,0 +1,57 @@
+package com.amigoscode.customerapitdd.dto;
+
+import java.util.UUID;
+
+public class BatchPaymentResult {
+
+    private final int index;
+    private final UUID customerId;
+    private final boolean charged;
+    private final String error;
+
+    private BatchPaymentResult(int index, UUID customerId, boolean charged, String error) {
+        this.index = index;
+        this.customerId = customerId;
+        this.charged = charged;
+        this.error = error;
+    }
+
+    public static BatchPaymentResult charged(int index, UUID customerId) {
+        return new BatchPaymentResult(index, customerId, true, null);
+    }
+
+    // the card was debited but the payment could not be written, the error says why
+    public static BatchPaymentResult notRecorded(int index, UUID customerId, String error) {
+        return new BatchPaymentResult(index, customerId, true, error);
+    }
+
+    public static BatchPaymentResult failed(int index, UUID customerId, String error) {
+        return new BatchPaymentResult(index, customerId, false, error);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public UUID getCustomerId() {
+        return customerId;
+    }
+
+    public boolean isCharged() {
+        return charged;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchPaymentResult{" +
+                "index=" + index +
+                ", customerId=" + customerId +
+                ", charged=" + charged +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,50 @@
+package com.amigoscode.customerapitdd.dto;
+
+public class CustomerImportLine {
+
+    private final long lineNumber;
+    private final String name;
+    private final String phoneNumber;
+    private final String error;
+
+    private CustomerImportLine(long lineNumber, String name, String phoneNumber, String error) {
+        this.lineNumber = lineNumber;
+        this.name = name;
+        this.phoneNumber = phoneNumber;
+        this.error = error;
+    }
+
+    public static CustomerImportLine of(long lineNumber, String name, String phoneNumber) {
+        return new CustomerImportLine(lineNumber, name, phoneNumber, null);
+    }
+
+    public static CustomerImportLine unreadable(long lineNumber, String error) {
+        return new CustomerImportLine(lineNumber, null, null, error);
+    }
+
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "CustomerImportLine{" +
+                "lineNumber=" + lineNumber +
+                ", name='" + name + '\'' +
+                ", phoneNumber='" + phoneNumber + '\'' +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,68 @@
+package com.amigoscode.customerapitdd.dto;
+
+import java.util.UUID;
+
+public class CustomerImportResult {
+
+    public enum Status {
+        REGISTERED,
+        ALREADY_REGISTERED,
+        PHONE_NUMBER_TAKEN,
+        INVALID
+    }
+
+    private final long lineNumber;
+    private final Status status;
+    private final UUID customerId;
+    private final String error;
+
+    private CustomerImportResult(long lineNumber, Status status, UUID customerId, String error) {
+        this.lineNumber = lineNumber;
+        this.status = status;
+        this.customerId = customerId;
+        this.error = error;
+    }
+
+    public static CustomerImportResult registered(long lineNumber, UUID customerId) {
+        return new CustomerImportResult(lineNumber, Status.REGISTERED, customerId, null);
+    }
+
+    public static CustomerImportResult alreadyRegistered(long lineNumber, UUID customerId) {
+        return new CustomerImportResult(lineNumber, Status.ALREADY_REGISTERED, customerId, null);
+    }
+
+    public static CustomerImportResult phoneNumberTaken(long lineNumber, String phoneNumber) {
+        return new CustomerImportResult(lineNumber, Status.PHONE_NUMBER_TAKEN, null,
+                String.format("phone number [%s] is taken", phoneNumber));
+    }
+
+    public static CustomerImportResult invalid(long lineNumber, String error) {
+        return new CustomerImportResult(lineNumber, Status.INVALID, null, error);
+    }
+
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public UUID getCustomerId() {
+        return customerId;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "CustomerImportResult{" +
+                "lineNumber=" + lineNumber +
+                ", status=" + status +
+                ", customerId=" + customerId +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
@@ -7,7 +7,7 @@ public class CustomerRequest {
 
     private final Customer customer;
 
-    public CustomerRequest(@JsonProperty Customer customer) {
+    public CustomerRequest(@JsonProperty("customer") Customer customer) {
         this.customer = customer;
     }
 
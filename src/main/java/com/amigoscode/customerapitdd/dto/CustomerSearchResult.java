@@ -0,0 +1,37 @@
+package com.amigoscode.customerapitdd.dto;
+
+import java.util.UUID;
+
+public class CustomerSearchResult {
+
+    private final UUID id;
+    private final String name;
+    private final String phoneNumber;
+
+    public CustomerSearchResult(UUID id, String name, String phoneNumber) {
+        this.id = id;
+        this.name = name;
+        this.phoneNumber = phoneNumber;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    @Override
+    public String toString() {
+        return "CustomerSearchResult{" +
+                "id=" + id +
+                ", name='" + name + '\'' +
+                ", phoneNumber='" + phoneNumber + '\'' +
+                '}';
+    }
+}
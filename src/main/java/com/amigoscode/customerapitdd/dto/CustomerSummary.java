@@ -0,0 +1,13 @@
+package com.amigoscode.customerapitdd.dto;
+
+import java.util.UUID;
+
+/**
+ * Closed projection of a customer, queried without hydrating the entity.
+ */
+public interface CustomerSummary {
+
+    UUID getId();
+
+    String getName();
+}
@@ -0,0 +1,39 @@
+package com.amigoscode.customerapitdd.dto;
+
+import com.amigoscode.customerapitdd.model.Currency;
+
+import java.math.BigDecimal;
+
+public class PaymentTotals {
+
+    private final Currency currency;
+    private final BigDecimal amount;
+    private final long count;
+
+    public PaymentTotals(Currency currency, BigDecimal amount, long count) {
+        this.currency = currency;
+        this.amount = amount;
+        this.count = count;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "PaymentTotals{" +
+                "currency=" + currency +
+                ", amount=" + amount +
+                ", count=" + count +
+                '}';
+    }
+}
@@ -0,0 +1,6 @@
+package com.amigoscode.customerapitdd.dto;
+
+public interface RegisteredPhoneNumber extends CustomerSummary {
+
+    String getNormalizedPhoneNumber();
+}
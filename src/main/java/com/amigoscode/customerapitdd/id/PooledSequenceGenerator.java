@@ -0,0 +1,34 @@
+package com.amigoscode.customerapitdd.id;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * Sequence generator whose allocation size can be overridden from configuration. Each sequence call
+ * reserves a block of {@code increment_size} ids that are handed out from memory, which keeps the
+ * insert path free of per-row sequence round trips and lets Hibernate batch the inserts.
+ * <p>
+ * Set {@code spring.jpa.properties.<allocation_size_setting>} to change the block size. The value must
+ * match the increment of an already created sequence.
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+
+    public static final String ALLOCATION_SIZE_SETTING_PARAM = "allocation_size_setting";
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        String setting = params.getProperty(ALLOCATION_SIZE_SETTING_PARAM);
+        if (setting != null) {
+            Object allocationSize = serviceRegistry.getService(ConfigurationService.class).getSettings().get(setting);
+            if (allocationSize != null) {
+                params.setProperty(INCREMENT_PARAM, allocationSize.toString());
+            }
+        }
+        super.configure(type, params, serviceRegistry);
+    }
+}
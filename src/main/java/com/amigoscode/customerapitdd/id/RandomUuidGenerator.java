@@ -0,0 +1,13 @@
+package com.amigoscode.customerapitdd.id;
+
+import com.amigoscode.customerapitdd.interfaces.IdGenerator;
+
+import java.util.UUID;
+
+public class RandomUuidGenerator implements IdGenerator {
+
+    @Override
+    public UUID generateId() {
+        return UUID.randomUUID();
+    }
+}
@@ -0,0 +1,67 @@
+package com.amigoscode.customerapitdd.id;
+
+import com.amigoscode.customerapitdd.interfaces.IdGenerator;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * Generates UUIDv7 style identifiers: 48 bits of unix epoch millis, the version nibble, a 12 bit
+ * counter and 62 random bits. New ids therefore land at the right edge of a primary key index instead
+ * of a random page.
+ * <p>
+ * Each thread keeps its own millis/counter pair, so generation never contends on a lock and ids are
+ * strictly increasing per thread. When a thread exhausts the counter within one millisecond it borrows
+ * the next millisecond rather than going backwards.
+ */
+public class TimeOrderedUuidGenerator implements IdGenerator {
+
+    private static final int VERSION = 7;
+    private static final int COUNTER_BITS = 12;
+    private static final int MAX_COUNTER = (1 << COUNTER_BITS) - 1;
+    private static final long VARIANT = 0x8000000000000000L;
+    private static final long RANDOM_MASK = 0x3FFFFFFFFFFFFFFFL;
+
+    private final LongSupplier currentMillis;
+    private final ThreadLocal<State> state = ThreadLocal.withInitial(State::new);
+
+    public TimeOrderedUuidGenerator() {
+        this(System::currentTimeMillis);
+    }
+
+    TimeOrderedUuidGenerator(LongSupplier currentMillis) {
+        this.currentMillis = currentMillis;
+    }
+
+    @Override
+    public UUID generateId() {
+        State current = state.get();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long now = currentMillis.getAsLong();
+
+        if (now > current.millis) {
+            current.millis = now;
+            // start low in the counter space so there is room to increment within the millisecond
+            current.counter = random.nextInt(MAX_COUNTER >> 1);
+        } else if (current.counter < MAX_COUNTER) {
+            current.counter++;
+        } else {
+            current.millis++;
+            current.counter = 0;
+        }
+
+        long mostSigBits = (current.millis << 16) | ((long) VERSION << COUNTER_BITS) | current.counter;
+        long leastSigBits = VARIANT | (random.nextLong() & RANDOM_MASK);
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    public static boolean isTimeOrdered(UUID id) {
+        return id.version() == VERSION;
+    }
+
+    private static final class State {
+        private long millis = -1;
+        private int counter;
+    }
+}
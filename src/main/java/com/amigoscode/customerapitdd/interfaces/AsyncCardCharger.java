@@ -0,0 +1,15 @@
+package com.amigoscode.customerapitdd.interfaces;
+
+import com.amigoscode.customerapitdd.model.Money;
+import com.amigoscode.customerapitdd.service.CardPaymentCharge;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface AsyncCardCharger {
+
+    CompletableFuture<CardPaymentCharge> chargeCard(
+            String cardSource,
+            Money amount,
+            String description
+    );
+}
@@ -1,16 +1,13 @@
 package com.amigoscode.customerapitdd.interfaces;
 
 import com.amigoscode.customerapitdd.service.CardPaymentCharge;
-import com.amigoscode.customerapitdd.model.Currency;
-
-import java.math.BigDecimal;
+import com.amigoscode.customerapitdd.model.Money;
 
 public interface CardCharger {
 
     CardPaymentCharge chargeCard(
             String cardSource,
-            BigDecimal amount,
-            Currency currency,
+            Money amount,
             String description
     );
 }
@@ -0,0 +1,8 @@
+package com.amigoscode.customerapitdd.interfaces;
+
+import java.util.UUID;
+
+public interface IdGenerator {
+
+    UUID generateId();
+}
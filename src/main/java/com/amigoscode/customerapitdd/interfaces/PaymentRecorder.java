@@ -0,0 +1,13 @@
+package com.amigoscode.customerapitdd.interfaces;
+
+import com.amigoscode.customerapitdd.model.Payment;
+
+import java.util.List;
+
+public interface PaymentRecorder {
+
+    // payments passed in are new, recording them assigns the id and the creation time on the instance
+    void save(Payment payment);
+
+    void saveAll(List<Payment> payments);
+}
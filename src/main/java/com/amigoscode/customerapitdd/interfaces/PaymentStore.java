@@ -0,0 +1,29 @@
+package com.amigoscode.customerapitdd.interfaces;
+
+import com.amigoscode.customerapitdd.model.Payment;
+import com.amigoscode.customerapitdd.model.SmsNotification;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+public interface PaymentStore {
+
+    // payments passed in are new, saving them assigns the id on the instance. The notification made for a
+    // payment is queued in the same transaction, in the outbox of the database the payment is written to
+    void save(Payment payment, Function<Payment, SmsNotification> notification);
+
+    void saveAll(List<Payment> payments, Function<Payment, SmsNotification> notification);
+
+    // payments passed in carry their id, those already stored are skipped so repeating a call writes each
+    // once, and only the payments written get their notification queued
+    List<Payment> insertMissing(List<Payment> payments, Function<Payment, SmsNotification> notification);
+
+    Optional<Payment> findByIdempotencyKey(String idempotencyKey);
+
+    List<Payment> selectPaymentPage(UUID customerId, long afterPaymentId, Pageable pageable);
+
+    List<Payment> selectPaymentPage(long afterPaymentId, Pageable pageable);
+}
@@ -0,0 +1,25 @@
+package com.amigoscode.customerapitdd.interfaces;
+
+import com.amigoscode.customerapitdd.model.SmsNotification;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * The SMS notifications queued in one database, next to the payments they are about.
+ */
+public interface SmsOutbox {
+
+    /**
+     * Claims up to limit notifications, pending ones and those whose claim expired before now, until
+     * claimedUntil. Notifications another dispatcher claims meanwhile are skipped.
+     *
+     * @return the notifications claimed, in SENDING
+     */
+    List<SmsNotification> claim(int limit, Instant now, Instant claimedUntil);
+
+    /**
+     * Writes back the status and attempts of claimed notifications, releasing their claim.
+     */
+    void release(List<SmsNotification> notifications);
+}
@@ -0,0 +1,6 @@
+package com.amigoscode.customerapitdd.interfaces;
+
+public interface SmsSender {
+
+    void send(String phoneNumber, String message);
+}
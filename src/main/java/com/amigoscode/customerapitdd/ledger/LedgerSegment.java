@@ -0,0 +1,176 @@
+package com.amigoscode.customerapitdd.ledger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * One fixed size, memory-mapped file of the ledger. Records follow each other from the start of the
+ * file as {@code [payload length][crc32c of payload][payload]}, the zeroed rest of the file ends them.
+ * Appends are not thread safe, the ledger serializes them.
+ */
+final class LedgerSegment implements AutoCloseable {
+
+    static final int HEADER_SIZE = 8;
+
+    private final long index;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final ByteBuffer writeBuffer;
+    private final ByteBuffer readBuffer;
+    private final CRC32C crc = new CRC32C();
+
+    private int writePosition;
+
+    private LedgerSegment(long index, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.index = index;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.writeBuffer = buffer.duplicate();
+        this.readBuffer = buffer.duplicate();
+    }
+
+    static LedgerSegment open(Path directory, long index, int size) {
+        Path path = directory.resolve(fileName(index));
+        try {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            // an existing segment keeps its own size, a new one is sized on mapping
+            long length = channel.size() > 0 ? channel.size() : size;
+            return new LedgerSegment(index, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, length));
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("could not open ledger segment [%s]", path), e);
+        }
+    }
+
+    static String fileName(long index) {
+        return String.format("payments-%020d.log", index);
+    }
+
+    static long indexOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring("payments-".length(), name.length() - ".log".length()));
+    }
+
+    long getIndex() {
+        return index;
+    }
+
+    int getWritePosition() {
+        return writePosition;
+    }
+
+    /**
+     * Finds the end of the records written before a restart. A record cut short by a crash, or one whose
+     * checksum does not match, ends the scan.
+     *
+     * @return true when the records ended cleanly rather than on a damaged record
+     */
+    boolean recover() {
+        int position = 0;
+        boolean clean = true;
+        while (true) {
+            int length = recordLength(position);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || !checksumMatches(position, length)) {
+                clean = false;
+                break;
+            }
+            position += HEADER_SIZE + length;
+        }
+        writePosition = position;
+        return clean;
+    }
+
+    /**
+     * Zeroes everything after the last good record, so appends continue where it ends.
+     */
+    void discardTail() {
+        byte[] zeros = new byte[4096];
+        for (int position = writePosition; position < buffer.capacity(); position += zeros.length) {
+            writeBuffer.position(position);
+            writeBuffer.put(zeros, 0, Math.min(zeros.length, buffer.capacity() - position));
+        }
+    }
+
+    /**
+     * @return false when the record does not fit into the rest of the segment
+     */
+    boolean append(byte[] payload) {
+        if (buffer.capacity() - writePosition < HEADER_SIZE + payload.length) {
+            return false;
+        }
+        crc.reset();
+        crc.update(payload);
+        writeBuffer.position(writePosition + HEADER_SIZE);
+        writeBuffer.put(payload);
+        writeBuffer.putInt(writePosition + 4, (int) crc.getValue());
+        // the length goes last, a reader that sees it sees the whole record
+        writeBuffer.putInt(writePosition, payload.length);
+        writePosition += HEADER_SIZE + payload.length;
+        return true;
+    }
+
+    /**
+     * @return the payload of the record at the position, or null past the last record
+     */
+    ByteBuffer read(int position) {
+        int length = recordLength(position);
+        if (length <= 0) {
+            return null;
+        }
+        ByteBuffer payload = readBuffer.duplicate();
+        payload.position(position + HEADER_SIZE);
+        payload.limit(position + HEADER_SIZE + length);
+        return payload.slice();
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void delete() {
+        close();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("could not delete ledger segment [%s]", path), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("could not close ledger segment [%s]", path), e);
+        }
+    }
+
+    private int recordLength(int position) {
+        if (buffer.capacity() - position < HEADER_SIZE) {
+            return 0;
+        }
+        int length = readBuffer.getInt(position);
+        return length > buffer.capacity() - position - HEADER_SIZE ? -1 : length;
+    }
+
+    private boolean checksumMatches(int position, int length) {
+        ByteBuffer payload = readBuffer.duplicate();
+        payload.position(position + HEADER_SIZE);
+        payload.limit(position + HEADER_SIZE + length);
+        CRC32C checksum = new CRC32C();
+        checksum.update(payload);
+        return (int) checksum.getValue() == readBuffer.getInt(position + 4);
+    }
+}
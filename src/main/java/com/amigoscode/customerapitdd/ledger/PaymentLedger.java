@@ -0,0 +1,479 @@
+package com.amigoscode.customerapitdd.ledger;
+
+import com.amigoscode.customerapitdd.cache.PaymentIdempotencyStore;
+import com.amigoscode.customerapitdd.interfaces.PaymentRecorder;
+import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.model.Payment;
+import com.amigoscode.customerapitdd.service.PaymentWriter;
+import com.amigoscode.customerapitdd.shard.PaymentIdAllocator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Acknowledges payments once they are appended to a local, memory-mapped log and synced to disk, the
+ * payment table is written behind in large batches by {@link #flush()}. Appends arriving while a sync
+ * runs wait for the next one, so one sync covers every payment appended since the last (group commit).
+ * <p>
+ * The checkpoint file holds the log position written to the payment table. On restart the log is
+ * replayed from there, a payment written before a crash but after its checkpoint was lost is skipped
+ * by id, so each payment reaches the table once.
+ */
+public class PaymentLedger implements PaymentRecorder, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PaymentLedger.class);
+    private static final String CHECKPOINT = "checkpoint";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int flushBatchSize;
+    private final PaymentWriter paymentWriter;
+    private final PaymentIdempotencyStore idempotencyStore;
+    private final PaymentIdAllocator idAllocator;
+    private final ConcurrentSkipListMap<Long, LedgerSegment> segments = new ConcurrentSkipListMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition synced = lock.newCondition();
+    private LedgerSegment current;
+    private long appendCount;
+    private long syncedCount;
+    private RuntimeException syncFailure;
+    private boolean closed;
+    private Thread syncer;
+    private ScheduledExecutorService flusher;
+
+    private volatile Position syncedPosition;
+    private Position checkpoint;
+
+    public PaymentLedger(Path directory,
+                         int segmentSize,
+                         int flushBatchSize,
+                         PaymentWriter paymentWriter,
+                         PaymentIdempotencyStore idempotencyStore,
+                         PaymentIdAllocator idAllocator) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.flushBatchSize = flushBatchSize;
+        this.paymentWriter = paymentWriter;
+        this.idempotencyStore = idempotencyStore;
+        this.idAllocator = idAllocator;
+    }
+
+    /**
+     * Recovers the log left by the last run and starts syncing appends. Payments recovered are not in
+     * the payment table yet, call {@link #flush()} before taking requests.
+     */
+    public void open() {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("could not create ledger directory [%s]", directory), e);
+        }
+        checkpoint = readCheckpoint();
+        for (Path path : segmentFiles()) {
+            long index = LedgerSegment.indexOf(path);
+            if (index < checkpoint.segment) {
+                // written to the payment table, the run before stopped between checkpoint and delete
+                delete(path);
+                continue;
+            }
+            if (current != null && !current.recover()) {
+                throw new IllegalStateException(String.format(
+                        "payment ledger segment [%s] is corrupt at offset [%s]",
+                        current.getIndex(), current.getWritePosition()));
+            }
+            current = LedgerSegment.open(directory, index, segmentSize);
+            segments.put(index, current);
+        }
+        if (current == null) {
+            current = LedgerSegment.open(directory, checkpoint.segment, segmentSize);
+            segments.put(current.getIndex(), current);
+        }
+        if (!current.recover()) {
+            // only the last record can be torn by a crash, it was never acknowledged
+            LOGGER.warn("discarding torn ledger record in segment [{}] at offset [{}]",
+                    current.getIndex(), current.getWritePosition());
+            current.discardTail();
+        }
+        segments.values().forEach(LedgerSegment::force);
+        syncedPosition = new Position(current.getIndex(), current.getWritePosition());
+
+        syncer = new Thread(this::syncLoop, "payment-ledger-sync");
+        syncer.setDaemon(true);
+        syncer.start();
+    }
+
+    @Override
+    public void save(Payment payment) {
+        saveAll(List.of(payment));
+    }
+
+    /**
+     * Returns once the payments are on disk, before they are in the payment table.
+     */
+    @Override
+    public void saveAll(List<Payment> payments) {
+        Instant now = Instant.now();
+        List<byte[]> records = new ArrayList<>(payments.size());
+        for (Payment payment : payments) {
+            payment.setPaymentId(idAllocator.nextId());
+            payment.setCreatedAt(now);
+            records.add(encode(payment));
+        }
+        // pinned first, the flusher may write the payments before this call returns
+        hold(payments);
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("payment ledger is closed");
+            }
+            for (byte[] record : records) {
+                append(record);
+            }
+            long ticket = ++appendCount;
+            appended.signal();
+            while (syncedCount < ticket && syncFailure == null) {
+                synced.awaitUninterruptibly();
+            }
+            if (syncedCount < ticket) {
+                throw new IllegalStateException("payment ledger could not sync to disk", syncFailure);
+            }
+        } catch (RuntimeException e) {
+            release(payments);
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Calls {@link #flush()} every {@code interval} on a thread of its own, so the payment table keeps up
+     * with the log while the application's shared scheduler is held up by another task.
+     */
+    public void startFlushing(Duration interval) {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "payment-ledger-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(
+                this::flushUntilClosed, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes synced payments to the payment table from the checkpoint on and moves the checkpoint past them.
+     *
+     * @return the number of payments written
+     */
+    public synchronized int flush() {
+        int written = 0;
+        while (true) {
+            Position end = syncedPosition;
+            Position position = checkpoint;
+            List<Payment> batch = new ArrayList<>();
+            while (batch.size() < flushBatchSize && position.isBefore(end)) {
+                ByteBuffer payload = segments.get(position.segment).read(position.offset);
+                if (payload == null) {
+                    // the rest of the segment did not fit the next record
+                    position = new Position(position.segment + 1, 0);
+                    continue;
+                }
+                int length = payload.remaining();
+                batch.add(decode(payload));
+                position = new Position(position.segment, position.offset + LedgerSegment.HEADER_SIZE + length);
+            }
+            if (position.equals(checkpoint)) {
+                return written;
+            }
+            if (!batch.isEmpty()) {
+                written += paymentWriter.saveAcknowledged(batch).size();
+            }
+            writeCheckpoint(position);
+            release(batch);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (flusher != null) {
+            // a flush in progress finishes first, close flushes what is left below
+            flusher.shutdown();
+        }
+        lock.lock();
+        try {
+            closed = true;
+            appended.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (syncer != null) {
+            try {
+                syncer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOGGER.warn("could not write the payment ledger to the payment table, it is replayed on restart", e);
+        }
+        segments.values().forEach(LedgerSegment::close);
+    }
+
+    // an exception escaping would cancel the schedule, the batch is written on the next run instead
+    private void flushUntilClosed() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOGGER.warn("could not write the payment ledger to the payment table, retrying", e);
+        }
+    }
+
+    private void append(byte[] record) {
+        if (LedgerSegment.HEADER_SIZE + record.length > segmentSize) {
+            throw new IllegalStateException(String.format(
+                    "payment of [%s] bytes does not fit a ledger segment of [%s] bytes", record.length, segmentSize));
+        }
+        if (!current.append(record)) {
+            // the syncer only follows the current segment, the one left behind is synced here
+            current.force();
+            current = LedgerSegment.open(directory, current.getIndex() + 1, segmentSize);
+            segments.put(current.getIndex(), current);
+            current.append(record);
+        }
+    }
+
+    private void syncLoop() {
+        while (true) {
+            long target;
+            LedgerSegment segment;
+            Position position;
+            lock.lock();
+            try {
+                while (appendCount == syncedCount && !closed) {
+                    appended.awaitUninterruptibly();
+                }
+                if (appendCount == syncedCount) {
+                    return;
+                }
+                target = appendCount;
+                segment = current;
+                position = new Position(segment.getIndex(), segment.getWritePosition());
+            } finally {
+                lock.unlock();
+            }
+
+            RuntimeException failure = null;
+            try {
+                // outside the lock, appends keep landing in the mapping while it syncs
+                segment.force();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+
+            lock.lock();
+            try {
+                if (failure != null) {
+                    syncFailure = failure;
+                } else {
+                    syncedCount = target;
+                    syncedPosition = position;
+                }
+                synced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (failure != null) {
+                LOGGER.error("payment ledger could not sync to disk, refusing further payments", failure);
+                return;
+            }
+        }
+    }
+
+    private void hold(List<Payment> payments) {
+        for (Payment payment : payments) {
+            if (payment.getIdempotencyKey() != null) {
+                idempotencyStore.holdUntilWritten(payment.getIdempotencyKey(), payment);
+            }
+        }
+    }
+
+    private void release(List<Payment> payments) {
+        for (Payment payment : payments) {
+            if (payment.getIdempotencyKey() != null) {
+                idempotencyStore.written(payment.getIdempotencyKey());
+            }
+        }
+    }
+
+    private Position readCheckpoint() {
+        Path path = directory.resolve(CHECKPOINT);
+        if (!Files.exists(path)) {
+            Iterator<Path> existing = segmentFiles().iterator();
+            return new Position(existing.hasNext() ? LedgerSegment.indexOf(existing.next()) : 0, 0);
+        }
+        try {
+            String[] fields = Files.readString(path).trim().split(" ");
+            return new Position(Long.parseLong(fields[0]), Integer.parseInt(fields[1]));
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("could not read ledger checkpoint [%s]", path), e);
+        }
+    }
+
+    private void writeCheckpoint(Position position) {
+        Path path = directory.resolve(CHECKPOINT);
+        Path temp = directory.resolve(CHECKPOINT + ".tmp");
+        byte[] content = (position.segment + " " + position.offset + "\n").getBytes(StandardCharsets.US_ASCII);
+        try {
+            try (FileChannel channel = FileChannel.open(temp,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(ByteBuffer.wrap(content));
+                channel.force(true);
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("could not write ledger checkpoint [%s]", path), e);
+        }
+        checkpoint = position;
+        // segments before the checkpoint are in the payment table
+        Iterator<Map.Entry<Long, LedgerSegment>> done = segments.headMap(position.segment).entrySet().iterator();
+        while (done.hasNext()) {
+            done.next().getValue().delete();
+            done.remove();
+        }
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("could not delete ledger segment [%s]", path), e);
+        }
+    }
+
+    private List<Path> segmentFiles() {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "payments-*.log")) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("could not list ledger directory [%s]", directory), e);
+        }
+        // names are zero padded, so name order is segment order
+        files.sort(null);
+        return files;
+    }
+
+    static byte[] encode(Payment payment) {
+        byte[] currency = bytesOf(payment.getCurrency().name());
+        byte[] source = bytesOf(payment.getSource());
+        byte[] description = bytesOf(payment.getDescription());
+        byte[] idempotencyKey = bytesOf(payment.getIdempotencyKey());
+        ByteBuffer buffer = ByteBuffer.allocate(8 * 5 + 4 + 4 * 4
+                + length(currency) + length(source) + length(description) + length(idempotencyKey));
+        buffer.putLong(payment.getPaymentId());
+        buffer.putLong(payment.getCustomerId().getMostSignificantBits());
+        buffer.putLong(payment.getCustomerId().getLeastSignificantBits());
+        buffer.putLong(payment.getAmount());
+        buffer.putLong(payment.getCreatedAt().getEpochSecond());
+        buffer.putInt(payment.getCreatedAt().getNano());
+        putBytes(buffer, currency);
+        putBytes(buffer, source);
+        putBytes(buffer, description);
+        putBytes(buffer, idempotencyKey);
+        return buffer.array();
+    }
+
+    static Payment decode(ByteBuffer buffer) {
+        Payment payment = new Payment();
+        payment.setPaymentId(buffer.getLong());
+        payment.setCustomerId(new UUID(buffer.getLong(), buffer.getLong()));
+        payment.setAmount(buffer.getLong());
+        payment.setCreatedAt(Instant.ofEpochSecond(buffer.getLong(), buffer.getInt()));
+        payment.setCurrency(Currency.valueOf(getString(buffer)));
+        payment.setSource(getString(buffer));
+        payment.setDescription(getString(buffer));
+        payment.setIdempotencyKey(getString(buffer));
+        return payment;
+    }
+
+    private static byte[] bytesOf(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    // strings are written as their length followed by their utf-8 bytes, -1 stands for null
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class Position {
+
+        private final long segment;
+        private final int offset;
+
+        private Position(long segment, int offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+
+        private boolean isBefore(Position other) {
+            return segment < other.segment || segment == other.segment && offset < other.offset;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Position position = (Position) o;
+            return segment == position.segment && offset == position.offset;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(segment) + offset;
+        }
+    }
+}
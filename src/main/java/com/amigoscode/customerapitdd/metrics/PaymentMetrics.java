@@ -0,0 +1,97 @@
+package com.amigoscode.customerapitdd.metrics;
+
+import com.amigoscode.customerapitdd.model.Currency;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers per payment step and counters per outcome, tagged by currency. Every meter is registered up
+ * front and looked up through enum maps, so recording on the hot path allocates nothing.
+ */
+@Component
+public class PaymentMetrics {
+
+    public enum Step {
+        CUSTOMER_LOOKUP,
+        CURRENCY_CHECK,
+        CARD_CHARGE,
+        PAYMENT_SAVE
+    }
+
+    public enum Outcome {
+        CHARGED,
+        REPLAYED,
+        CUSTOMER_NOT_FOUND,
+        CURRENCY_NOT_SUPPORTED,
+        AMOUNT_NOT_ALLOWED,
+        CARD_NOT_DEBITED,
+        FAILED
+    }
+
+    private static final String UNKNOWN_CURRENCY = "unknown";
+
+    private final Map<Currency, Map<Step, Timer>> timers = new EnumMap<>(Currency.class);
+    private final Map<Currency, Map<Outcome, Counter>> counters = new EnumMap<>(Currency.class);
+    private final Map<Step, Timer> unknownCurrencyTimers;
+    private final Map<Outcome, Counter> unknownCurrencyCounters;
+
+    public PaymentMetrics(MeterRegistry meterRegistry) {
+        for (Currency currency : Currency.values()) {
+            timers.put(currency, registerTimers(meterRegistry, currency.name()));
+            counters.put(currency, registerCounters(meterRegistry, currency.name()));
+        }
+        unknownCurrencyTimers = registerTimers(meterRegistry, UNKNOWN_CURRENCY);
+        unknownCurrencyCounters = registerCounters(meterRegistry, UNKNOWN_CURRENCY);
+    }
+
+    public void recordStep(Currency currency, Step step, long startNanos) {
+        timersOf(currency).get(step).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordOutcome(Currency currency, Outcome outcome) {
+        countersOf(currency).get(outcome).increment();
+    }
+
+    public double count(Currency currency, Outcome outcome) {
+        return countersOf(currency).get(outcome).count();
+    }
+
+    private Map<Step, Timer> timersOf(Currency currency) {
+        return currency == null ? unknownCurrencyTimers : timers.get(currency);
+    }
+
+    private Map<Outcome, Counter> countersOf(Currency currency) {
+        return currency == null ? unknownCurrencyCounters : counters.get(currency);
+    }
+
+    private static Map<Step, Timer> registerTimers(MeterRegistry meterRegistry, String currency) {
+        Map<Step, Timer> stepTimers = new EnumMap<>(Step.class);
+        for (Step step : Step.values()) {
+            stepTimers.put(step, Timer.builder("payment.step")
+                    .description("Time spent in each step of charging a card")
+                    .tag("step", step.name().toLowerCase())
+                    .tag("currency", currency)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+        return stepTimers;
+    }
+
+    private static Map<Outcome, Counter> registerCounters(MeterRegistry meterRegistry, String currency) {
+        Map<Outcome, Counter> outcomeCounters = new EnumMap<>(Outcome.class);
+        for (Outcome outcome : Outcome.values()) {
+            outcomeCounters.put(outcome, Counter.builder("payment.outcome")
+                    .description("Payments by final outcome")
+                    .tag("outcome", outcome.name().toLowerCase())
+                    .tag("currency", currency)
+                    .register(meterRegistry));
+        }
+        return outcomeCounters;
+    }
+}
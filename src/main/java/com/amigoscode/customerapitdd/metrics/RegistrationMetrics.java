@@ -0,0 +1,65 @@
+package com.amigoscode.customerapitdd.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class RegistrationMetrics {
+
+    private final Timer phoneNumberLookup;
+    private final Timer customerSave;
+    private final Counter registered;
+    private final Counter alreadyRegistered;
+    private final Counter phoneNumberTaken;
+
+    public RegistrationMetrics(MeterRegistry meterRegistry) {
+        this.phoneNumberLookup = registerTimer(meterRegistry, "phone_number_lookup");
+        this.customerSave = registerTimer(meterRegistry, "customer_save");
+        this.registered = registerCounter(meterRegistry, "registered");
+        this.alreadyRegistered = registerCounter(meterRegistry, "already_registered");
+        this.phoneNumberTaken = registerCounter(meterRegistry, "phone_number_taken");
+    }
+
+    public void recordPhoneNumberLookup(long startNanos) {
+        phoneNumberLookup.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordCustomerSave(long startNanos) {
+        customerSave.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void registered() {
+        registered.increment();
+    }
+
+    public void alreadyRegistered() {
+        alreadyRegistered.increment();
+    }
+
+    public void phoneNumberTaken() {
+        phoneNumberTaken.increment();
+    }
+
+    public double phoneNumberTakenCount() {
+        return phoneNumberTaken.count();
+    }
+
+    private static Timer registerTimer(MeterRegistry meterRegistry, String step) {
+        return Timer.builder("customer.registration.step")
+                .description("Time spent in each step of registering a customer")
+                .tag("step", step)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static Counter registerCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("customer.registration")
+                .description("Customer registrations by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -9,7 +9,7 @@ import javax.validation.constraints.NotBlank;
 import java.util.UUID;
 
 @Entity
-@JsonIgnoreProperties(value= {"id"}, allowGetters = true)       // setId from client (POST, PUT) is not allowed
+@JsonIgnoreProperties(value= {"id", "normalizedPhoneNumber"}, allowGetters = true)       // setId from client (POST, PUT) is not allowed
 public class Customer {
 
     @Id
@@ -23,10 +23,14 @@ public class Customer {
     @Column(nullable = false, unique = true)
     private String phoneNumber;
 
+    @Column(unique = true)
+    private String normalizedPhoneNumber;       // derived from phoneNumber, duplicate checks probe this index
+
     public Customer(UUID id, String name, String phoneNumber) {
         this.id = id;
         this.name = name;
         this.phoneNumber = phoneNumber;
+        this.normalizedPhoneNumber = PhoneNumbers.normalize(phoneNumber);
     }
 
     public Customer() {
@@ -54,6 +58,11 @@ public class Customer {
 
     public void setPhoneNumber(String phoneNumber) {
         this.phoneNumber = phoneNumber;
+        this.normalizedPhoneNumber = PhoneNumbers.normalize(phoneNumber);
+    }
+
+    public String getNormalizedPhoneNumber() {
+        return normalizedPhoneNumber;
     }
 
     @Override
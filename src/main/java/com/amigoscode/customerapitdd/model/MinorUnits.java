@@ -0,0 +1,98 @@
+package com.amigoscode.customerapitdd.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import javax.persistence.AttributeConverter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversions between minor units and the decimal amounts clients send and the payment table stores.
+ * Every supported {@link Currency} has two decimal places.
+ */
+public final class MinorUnits {
+
+    public static final int SCALE = 2;
+
+    /**
+     * Context attribute of an ObjectMapper, when true the amount is written and read as its minor units
+     * rather than as a decimal. Set by the CBOR mapper, binary clients send the scaled long directly.
+     */
+    public static final String AS_MINOR_UNITS = MinorUnits.class.getName() + ".AS_MINOR_UNITS";
+
+    private MinorUnits() {
+    }
+
+    /**
+     * @throws ArithmeticException if the amount has more than {@link #SCALE} decimal places or does not fit a long
+     */
+    public static long of(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    /**
+     * Keeps the amount column a DECIMAL so existing rows and reports read the same.
+     */
+    @javax.persistence.Converter
+    public static class Converter implements AttributeConverter<Long, BigDecimal> {
+
+        @Override
+        public BigDecimal convertToDatabaseColumn(Long minorUnits) {
+            return minorUnits == null ? null : toBigDecimal(minorUnits);
+        }
+
+        @Override
+        public Long convertToEntityAttribute(BigDecimal amount) {
+            return amount == null ? null : of(amount);
+        }
+    }
+
+    /**
+     * Writes minor units as the decimal amount, 10000 is written as 100.00. With {@link #AS_MINOR_UNITS}
+     * 10000 is written as is.
+     */
+    public static class Serializer extends JsonSerializer<Long> {
+
+        @Override
+        public void serialize(Long minorUnits, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            if (Boolean.TRUE.equals(provider.getAttribute(AS_MINOR_UNITS))) {
+                generator.writeNumber(minorUnits.longValue());
+                return;
+            }
+            generator.writeNumber(toBigDecimal(minorUnits));
+        }
+    }
+
+    /**
+     * Reads a decimal amount into minor units, amounts finer than a minor unit are rejected. With
+     * {@link #AS_MINOR_UNITS} an integer is taken as minor units already.
+     */
+    public static class Deserializer extends JsonDeserializer<Long> {
+
+        @Override
+        public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (parser.currentToken() == JsonToken.VALUE_NUMBER_INT
+                    && Boolean.TRUE.equals(context.getAttribute(AS_MINOR_UNITS))) {
+                return parser.getLongValue();
+            }
+            try {
+                return of(parser.getDecimalValue());
+            } catch (ArithmeticException e) {
+                return (Long) context.handleWeirdNumberValue(Long.class, parser.getDecimalValue(),
+                        "amount must be a whole number of minor units");
+            }
+        }
+    }
+}
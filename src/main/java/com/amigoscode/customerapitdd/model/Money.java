@@ -0,0 +1,58 @@
+package com.amigoscode.customerapitdd.model;
+
+import java.math.BigDecimal;
+
+/**
+ * An amount in minor units (cents, pence) of a currency. Used on the payment path instead of
+ * BigDecimal so validating, charging and aggregating a payment does not allocate per step,
+ * see {@link MinorUnits} for the conversion done at the JSON and JPA boundaries.
+ */
+public final class Money {
+
+    private final long minorUnits;
+    private final Currency currency;
+
+    private Money(long minorUnits, Currency currency) {
+        this.minorUnits = minorUnits;
+        this.currency = currency;
+    }
+
+    public static Money ofMinorUnits(long minorUnits, Currency currency) {
+        return new Money(minorUnits, currency);
+    }
+
+    public static Money of(BigDecimal amount, Currency currency) {
+        return new Money(MinorUnits.of(amount), currency);
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return MinorUnits.toBigDecimal(minorUnits);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal() + " " + currency;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Money money = (Money) o;
+        return minorUnits == money.minorUnits &&
+                currency == money.currency;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(minorUnits) + (currency == null ? 0 : currency.hashCode());
+    }
+}
@@ -1,22 +1,50 @@
 package com.amigoscode.customerapitdd.model;
 
+import com.amigoscode.customerapitdd.id.PooledSequenceGenerator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
 import java.math.BigDecimal;
-import java.util.Objects;
+import java.time.Instant;
 import java.util.UUID;
 
 @Entity
+@JsonIgnoreProperties(value = "createdAt", allowGetters = true)      // stamped when the payment is written
+@Table(indexes = @Index(name = "payment_customer_id_payment_id_idx", columnList = "customerId, paymentId"))     // keyset pages of a customer's history
 public class Payment {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_id_generator")
+    @GenericGenerator(
+            name = "payment_id_generator",
+            strategy = "com.amigoscode.customerapitdd.id.PooledSequenceGenerator",
+            parameters = {
+                    @Parameter(name = PooledSequenceGenerator.SEQUENCE_PARAM, value = "payment_id_seq"),
+                    @Parameter(name = PooledSequenceGenerator.INCREMENT_PARAM, value = "50"),
+                    @Parameter(name = PooledSequenceGenerator.OPT_PARAM, value = "pooled-lo"),
+                    @Parameter(name = PooledSequenceGenerator.ALLOCATION_SIZE_SETTING_PARAM,
+                            value = "payment.id.allocation_size")
+            })
     private Long paymentId;
 
     private UUID customerId;
 
-    private BigDecimal amount;
+    @Convert(converter = MinorUnits.Converter.class)
+    @JsonSerialize(using = MinorUnits.Serializer.class)
+    @JsonDeserialize(using = MinorUnits.Deserializer.class)
+    private long amount;        // minor units, a decimal only in JSON and in the amount column
 
     private Currency currency;
 
@@ -24,20 +52,33 @@ public class Payment {
 
     private String description;
 
+    @Column(unique = true)
+    private String idempotencyKey;
+
+    private Instant createdAt;
+
     public Payment(Long paymentId,
                    UUID customerId,
-                   BigDecimal amount,
-                   Currency currency,
+                   Money amount,
                    String source,
                    String description) {
         this.paymentId = paymentId;
         this.customerId = customerId;
-        this.amount = amount;
-        this.currency = currency;
+        this.amount = amount.getMinorUnits();
+        this.currency = amount.getCurrency();
         this.source = source;
         this.description = description;
     }
 
+    public Payment(Long paymentId,
+                   UUID customerId,
+                   BigDecimal amount,
+                   Currency currency,
+                   String source,
+                   String description) {
+        this(paymentId, customerId, Money.of(amount, currency), source, description);
+    }
+
     public Payment() {
     }
 
@@ -57,14 +98,19 @@ public class Payment {
         this.customerId = customerId;
     }
 
-    public BigDecimal getAmount() {
+    public long getAmount() {
         return amount;
     }
 
-    public void setAmount(BigDecimal amount) {
+    public void setAmount(long amount) {
         this.amount = amount;
     }
 
+    @JsonIgnore
+    public Money getMoney() {
+        return Money.ofMinorUnits(amount, currency);
+    }
+
     public Currency getCurrency() {
         return currency;
     }
@@ -89,15 +135,33 @@ public class Payment {
         this.description = description;
     }
 
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
     @Override
     public String toString() {
         return "Payment{" +
                 "paymentId=" + paymentId +
                 ", customerId=" + customerId +
-                ", amount=" + amount +
+                ", amount=" + MinorUnits.toBigDecimal(amount) +
                 ", currency=" + currency +
                 ", source='" + source + '\'' +
                 ", description='" + description + '\'' +
+                ", idempotencyKey='" + idempotencyKey + '\'' +
+                ", createdAt=" + createdAt +
                 '}';
     }
 
@@ -108,7 +172,7 @@ public class Payment {
         Payment payment = (Payment) o;
         return paymentId.equals(payment.paymentId) &&
                 customerId.equals(payment.customerId) &&
-                amount.equals(payment.amount) &&
+                amount == payment.amount &&
                 currency == payment.currency &&
                 source.equals(payment.source) &&
                 description.equals(payment.description);
@@ -116,6 +180,13 @@ public class Payment {
 
     @Override
     public int hashCode() {
-        return Objects.hash(paymentId, customerId, amount, currency, source, description);
+        // written out instead of Objects.hash, which boxes the amount and allocates a varargs array per call
+        int result = paymentId == null ? 0 : paymentId.hashCode();
+        result = 31 * result + (customerId == null ? 0 : customerId.hashCode());
+        result = 31 * result + Long.hashCode(amount);
+        result = 31 * result + (currency == null ? 0 : currency.hashCode());
+        result = 31 * result + (source == null ? 0 : source.hashCode());
+        result = 31 * result + (description == null ? 0 : description.hashCode());
+        return result;
     }
 }
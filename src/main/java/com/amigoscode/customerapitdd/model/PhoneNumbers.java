@@ -0,0 +1,71 @@
+package com.amigoscode.customerapitdd.model;
+
+import java.util.regex.Pattern;
+
+/**
+ * Canonical form of a phone number: a leading '+', the country code and the subscriber digits,
+ * e.g. "+44 7700 900123", "+44 (0)7700 900123", "0044 7700900123", "07700 900123" and "7700 900123"
+ * all become "+447700900123". Numbers written without a country code get the default one, 44 unless
+ * {@code phone-numbers.default-country-code} says otherwise.
+ */
+public final class PhoneNumbers {
+
+    static final String DEFAULT_COUNTRY_CODE = "44";
+
+    // the national trunk prefix some write after the country code, e.g. "+44 (0)7700 900123"
+    private static final Pattern TRUNK_PREFIX = Pattern.compile("\\(\\s*0\\s*\\)");
+
+    private static volatile String defaultCountryCode = DEFAULT_COUNTRY_CODE;
+
+    private PhoneNumbers() {
+    }
+
+    public static String getDefaultCountryCode() {
+        return defaultCountryCode;
+    }
+
+    /**
+     * Set once on startup, numbers normalized before and after a change do not match each other.
+     */
+    public static void setDefaultCountryCode(String countryCode) {
+        if (countryCode == null || !countryCode.matches("[1-9][0-9]{0,2}")) {
+            throw new IllegalArgumentException(String.format("invalid country code [%s]", countryCode));
+        }
+        defaultCountryCode = countryCode;
+    }
+
+    public static String normalize(String phoneNumber) {
+        if (phoneNumber == null) {
+            return null;
+        }
+        String trimmed = phoneNumber.trim();
+        String countryCode = defaultCountryCode;
+        if (trimmed.indexOf('(') >= 0) {
+            trimmed = TRUNK_PREFIX.matcher(trimmed).replaceFirst("");
+        }
+        StringBuilder digits = new StringBuilder(trimmed.length() + countryCode.length() + 1);
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+
+        if (trimmed.startsWith("+")) {
+            return digits.insert(0, '+').toString();
+        }
+        if (digits.length() > 2 && digits.charAt(0) == '0' && digits.charAt(1) == '0') {
+            // international call prefix
+            return digits.replace(0, 2, "+").toString();
+        }
+        if (digits.length() > 1 && digits.charAt(0) == '0') {
+            // national trunk prefix
+            return digits.replace(0, 1, "+" + countryCode).toString();
+        }
+        if (digits.length() > 0) {
+            // a national number written without its trunk prefix
+            digits.insert(0, countryCode);
+        }
+        return digits.insert(0, '+').toString();
+    }
+}
@@ -0,0 +1,140 @@
+package com.amigoscode.customerapitdd.model;
+
+import com.amigoscode.customerapitdd.id.PooledSequenceGenerator;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Outbox row written in the same transaction as its payment, in the database holding the payment, sent later
+ * by the outbox dispatcher. A dispatcher
+ * claims a row by moving it to SENDING with its own claim token, until {@code claimedUntil} no other one
+ * picks it up.
+ */
+@Entity
+@Table(indexes = @Index(name = "sms_notification_status_id_idx", columnList = "status, id"))
+public class SmsNotification {
+
+    public enum Status {
+        PENDING,
+        SENDING,
+        SENT,
+        FAILED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sms_notification_id_generator")
+    @GenericGenerator(
+            name = "sms_notification_id_generator",
+            strategy = "com.amigoscode.customerapitdd.id.PooledSequenceGenerator",
+            parameters = {
+                    @Parameter(name = PooledSequenceGenerator.SEQUENCE_PARAM, value = "sms_notification_id_seq"),
+                    @Parameter(name = PooledSequenceGenerator.INCREMENT_PARAM, value = "50"),
+                    @Parameter(name = PooledSequenceGenerator.OPT_PARAM, value = "pooled-lo")
+            })
+    private Long id;
+
+    @Column(nullable = false)
+    private Long paymentId;
+
+    @Column(nullable = false)
+    private UUID customerId;
+
+    @Column(nullable = false)
+    private String message;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    private int attempts;
+
+    private UUID claimToken;
+
+    private Instant claimedUntil;
+
+    public SmsNotification(Long paymentId, UUID customerId, String message) {
+        this.paymentId = paymentId;
+        this.customerId = customerId;
+        this.message = message;
+        this.status = Status.PENDING;
+    }
+
+    public SmsNotification() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getPaymentId() {
+        return paymentId;
+    }
+
+    public UUID getCustomerId() {
+        return customerId;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public UUID getClaimToken() {
+        return claimToken;
+    }
+
+    public void setClaimToken(UUID claimToken) {
+        this.claimToken = claimToken;
+    }
+
+    public Instant getClaimedUntil() {
+        return claimedUntil;
+    }
+
+    public void setClaimedUntil(Instant claimedUntil) {
+        this.claimedUntil = claimedUntil;
+    }
+
+    @Override
+    public String toString() {
+        return "SmsNotification{" +
+                "id=" + id +
+                ", paymentId=" + paymentId +
+                ", customerId=" + customerId +
+                ", message='" + message + '\'' +
+                ", status=" + status +
+                ", attempts=" + attempts +
+                '}';
+    }
+}
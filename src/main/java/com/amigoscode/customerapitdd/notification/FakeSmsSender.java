@@ -0,0 +1,18 @@
+package com.amigoscode.customerapitdd.notification;
+
+import com.amigoscode.customerapitdd.interfaces.SmsSender;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local stand-in for the SMS provider, it only logs what would have been sent.
+ */
+public class FakeSmsSender implements SmsSender {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FakeSmsSender.class);
+
+    @Override
+    public void send(String phoneNumber, String message) {
+        LOGGER.info("sms to [{}]: {}", phoneNumber, message);
+    }
+}
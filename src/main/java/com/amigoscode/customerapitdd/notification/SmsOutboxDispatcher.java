@@ -0,0 +1,163 @@
+package com.amigoscode.customerapitdd.notification;
+
+import com.amigoscode.customerapitdd.interfaces.SmsOutbox;
+import com.amigoscode.customerapitdd.interfaces.SmsSender;
+import com.amigoscode.customerapitdd.model.Customer;
+import com.amigoscode.customerapitdd.model.SmsNotification;
+import com.amigoscode.customerapitdd.replica.ReplicaRouting;
+import com.amigoscode.customerapitdd.repository.CustomerRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * Drains pending SMS notifications in batches from every outbox, the application's own and one per payment
+ * shard. Every batch is claimed in the outboxes first, so instances running side by side never send the
+ * same SMS, then sent on the {@code sender} executor, spaced to stay under the provider rate limit, while
+ * the scheduler thread moves on. A failed send is retried on a later run until it reaches
+ * {@code maxAttempts}. A claim lasts {@code claimTimeout}, the rows of an instance that died mid batch are
+ * claimed again after that.
+ */
+public class SmsOutboxDispatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SmsOutboxDispatcher.class);
+
+    private final List<SmsOutbox> outboxes;
+    private final CustomerRepository customerRepository;
+    private final SmsSender smsSender;
+    private final ExecutorService sender;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long nanosBetweenSends;
+    private final Duration claimTimeout;
+
+    private int firstOutbox;
+    private long nextSendAtNanos = System.nanoTime();
+    private CompletableFuture<Integer> sending = CompletableFuture.completedFuture(0);
+
+    public SmsOutboxDispatcher(List<SmsOutbox> outboxes,
+                               CustomerRepository customerRepository,
+                               SmsSender smsSender,
+                               ExecutorService sender,
+                               int batchSize,
+                               int maxAttempts,
+                               int sendsPerSecond,
+                               Duration claimTimeout) {
+        Duration batchSendTime = Duration.ofNanos(TimeUnit.SECONDS.toNanos(batchSize) / sendsPerSecond);
+        if (claimTimeout.compareTo(batchSendTime.multipliedBy(2)) < 0) {
+            throw new IllegalArgumentException(String.format(
+                    "claim timeout [%s] must be at least twice the time a batch takes to send [%s]",
+                    claimTimeout, batchSendTime));
+        }
+        this.outboxes = List.copyOf(outboxes);
+        this.customerRepository = customerRepository;
+        this.smsSender = smsSender;
+        this.sender = sender;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.nanosBetweenSends = TimeUnit.SECONDS.toNanos(1) / sendsPerSecond;
+        this.claimTimeout = claimTimeout;
+    }
+
+    /**
+     * Claims the next batch unless the previous one is still being sent.
+     *
+     * @return the number of notifications sent from the claimed batch, once it has been sent
+     */
+    @Scheduled(fixedDelayString = "${sms.outbox.poll-interval-ms:1000}")
+    public synchronized CompletableFuture<Integer> dispatch() {
+        if (!sending.isDone()) {
+            return CompletableFuture.completedFuture(0);
+        }
+        Map<SmsOutbox, List<SmsNotification>> claimed = claimBatch();
+        if (claimed.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+        sending = CompletableFuture.supplyAsync(() -> send(claimed), sender);
+        return sending;
+    }
+
+    public void shutdown() {
+        sender.shutdown();
+    }
+
+    // every poll starts at the next outbox, so a busy one does not keep the others waiting
+    private Map<SmsOutbox, List<SmsNotification>> claimBatch() {
+        Instant now = Instant.now();
+        Map<SmsOutbox, List<SmsNotification>> claimed = new LinkedHashMap<>();
+        int remaining = batchSize;
+        for (int i = 0; i < outboxes.size() && remaining > 0; i++) {
+            SmsOutbox outbox = outboxes.get((firstOutbox + i) % outboxes.size());
+            List<SmsNotification> notifications = outbox.claim(remaining, now, now.plus(claimTimeout));
+            if (!notifications.isEmpty()) {
+                claimed.put(outbox, notifications);
+                remaining -= notifications.size();
+            }
+        }
+        firstOutbox = (firstOutbox + 1) % outboxes.size();
+        return claimed;
+    }
+
+    private int send(Map<SmsOutbox, List<SmsNotification>> claimedByOutbox) {
+        List<SmsNotification> claimed = new ArrayList<>();
+        claimedByOutbox.values().forEach(claimed::addAll);
+        Set<UUID> customerIds = claimed.stream()
+                .map(SmsNotification::getCustomerId)
+                .collect(Collectors.toSet());
+        Map<UUID, String> phoneNumbers = new HashMap<>();
+        // a customer missing here loses the SMS for good, so not asked of a replica that may lag behind
+        Iterable<Customer> customers = ReplicaRouting.onPrimary(() -> customerRepository.findAllById(customerIds));
+        for (Customer customer : customers) {
+            phoneNumbers.put(customer.getId(), customer.getPhoneNumber());
+        }
+
+        int sent = 0;
+        for (SmsNotification notification : claimed) {
+            String phoneNumber = phoneNumbers.get(notification.getCustomerId());
+            if (phoneNumber == null) {
+                notification.setStatus(SmsNotification.Status.FAILED);
+                LOGGER.warn("no phone number for customer [{}], dropping {}", notification.getCustomerId(), notification);
+                continue;
+            }
+            awaitRateLimit();
+            try {
+                smsSender.send(phoneNumber, notification.getMessage());
+                notification.setStatus(SmsNotification.Status.SENT);
+                sent++;
+            } catch (RuntimeException e) {
+                notification.setAttempts(notification.getAttempts() + 1);
+                if (notification.getAttempts() >= maxAttempts) {
+                    notification.setStatus(SmsNotification.Status.FAILED);
+                    LOGGER.warn("giving up on {}", notification, e);
+                } else {
+                    notification.setStatus(SmsNotification.Status.PENDING);
+                }
+            }
+        }
+        claimedByOutbox.forEach(SmsOutbox::release);
+        return sent;
+    }
+
+    private void awaitRateLimit() {
+        long waitNanos = nextSendAtNanos - System.nanoTime();
+        if (waitNanos > 0) {
+            LockSupport.parkNanos(waitNanos);
+        }
+        nextSendAtNanos = Math.max(nextSendAtNanos, System.nanoTime()) + nanosBetweenSends;
+    }
+}
@@ -0,0 +1,22 @@
+package com.amigoscode.customerapitdd.policy;
+
+/**
+ * Holds the currency policy in effect. A reload swaps the whole policy, so a payment that reads it
+ * once sees one consistent set of currencies, limits and routes.
+ */
+public class CurrencyPolicies {
+
+    private volatile CurrencyPolicy current;
+
+    public CurrencyPolicies(CurrencyPolicy initial) {
+        this.current = initial;
+    }
+
+    public CurrencyPolicy current() {
+        return current;
+    }
+
+    public void update(CurrencyPolicy policy) {
+        this.current = policy;
+    }
+}
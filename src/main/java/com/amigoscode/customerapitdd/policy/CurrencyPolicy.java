@@ -0,0 +1,73 @@
+package com.amigoscode.customerapitdd.policy;
+
+import com.amigoscode.customerapitdd.interfaces.CardCharger;
+import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.model.Money;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Which currencies are accepted, the amount limits of each and the card charger each is routed to.
+ * Immutable and precomputed per currency, so checking a payment is a bit test, two array reads and an
+ * enum map lookup without allocating.
+ */
+public final class CurrencyPolicy {
+
+    private final Set<Currency> accepted;
+    private final long[] minMinorUnits = new long[Currency.values().length];
+    private final long[] maxMinorUnits = new long[Currency.values().length];
+    private final Map<Currency, CardCharger> cardChargers = new EnumMap<>(Currency.class);
+
+    /**
+     * @param minAmounts     inclusive lower limits, currencies without one have no lower limit
+     * @param maxAmounts     inclusive upper limits, currencies without one have no upper limit
+     * @param routes         card chargers of the currencies not charged through the default
+     */
+    public CurrencyPolicy(Set<Currency> accepted,
+                          Map<Currency, Money> minAmounts,
+                          Map<Currency, Money> maxAmounts,
+                          Map<Currency, CardCharger> routes,
+                          CardCharger defaultCardCharger) {
+        this.accepted = accepted.isEmpty() ? EnumSet.noneOf(Currency.class) : EnumSet.copyOf(accepted);
+        Arrays.fill(minMinorUnits, Long.MIN_VALUE);
+        Arrays.fill(maxMinorUnits, Long.MAX_VALUE);
+        minAmounts.forEach((currency, amount) -> minMinorUnits[currency.ordinal()] = minorUnitsIn(currency, amount));
+        maxAmounts.forEach((currency, amount) -> maxMinorUnits[currency.ordinal()] = minorUnitsIn(currency, amount));
+        for (Currency currency : Currency.values()) {
+            cardChargers.put(currency, routes.getOrDefault(currency, defaultCardCharger));
+        }
+    }
+
+    public static CurrencyPolicy accepting(Set<Currency> accepted, CardCharger cardCharger) {
+        return new CurrencyPolicy(accepted, Map.of(), Map.of(), Map.of(), cardCharger);
+    }
+
+    public boolean accepts(Currency currency) {
+        return accepted.contains(currency);
+    }
+
+    public boolean isWithinLimits(Currency currency, long amountInMinorUnits) {
+        return amountInMinorUnits >= minMinorUnits[currency.ordinal()]
+                && amountInMinorUnits <= maxMinorUnits[currency.ordinal()];
+    }
+
+    public CardCharger cardChargerFor(Currency currency) {
+        return cardChargers.get(currency);
+    }
+
+    public Set<Currency> getAccepted() {
+        return EnumSet.copyOf(accepted);
+    }
+
+    private static long minorUnitsIn(Currency currency, Money amount) {
+        if (amount.getCurrency() != currency) {
+            throw new IllegalArgumentException(String.format(
+                    "limit [%s] is not in currency [%s]", amount, currency));
+        }
+        return amount.getMinorUnits();
+    }
+}
@@ -0,0 +1,156 @@
+package com.amigoscode.customerapitdd.policy;
+
+import com.amigoscode.customerapitdd.interfaces.CardCharger;
+import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.model.Money;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySource;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * Builds the currency policy from the {@code currency-policy.*} properties:
+ * <pre>
+ * currency-policy.accepted=USD,GBP,EUR
+ * currency-policy.min-amount.EUR=0.50
+ * currency-policy.max-amount.EUR=5000
+ * currency-policy.route.EUR=euCardCharger
+ * </pre>
+ * Routes name CardCharger beans, currencies without a route use the default one. A routed charger is
+ * wrapped by the route decorator once, given its bean name, and the wrapper kept across reloads, so its
+ * circuit breaker and limiter keep their state. When {@code currency-policy.file} points at a properties
+ * file its entries override the application's and the file is polled, so the policy changes without a
+ * restart. A file that does not build a valid policy is logged and the policy in effect is kept.
+ */
+public class CurrencyPolicyLoader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CurrencyPolicyLoader.class);
+
+    private static final String PREFIX = "currency-policy";
+
+    private final Environment environment;
+    private final Map<String, CardCharger> cardChargers;
+    private final CardCharger defaultCardCharger;
+    private final BiFunction<String, CardCharger, CardCharger> routeDecorator;
+    private final Map<String, CardCharger> decoratedCardChargers = new HashMap<>();
+    private final Path file;
+    private final CurrencyPolicies currencyPolicies;
+
+    private long loadedLastModified;
+
+    public CurrencyPolicyLoader(Environment environment,
+                                Map<String, CardCharger> cardChargers,
+                                CardCharger defaultCardCharger,
+                                BiFunction<String, CardCharger, CardCharger> routeDecorator,
+                                Path file) {
+        this.environment = environment;
+        this.cardChargers = cardChargers;
+        this.defaultCardCharger = defaultCardCharger;
+        this.routeDecorator = routeDecorator;
+        this.file = file;
+        this.loadedLastModified = lastModified();
+        this.currencyPolicies = new CurrencyPolicies(load());
+    }
+
+    public CurrencyPolicies getCurrencyPolicies() {
+        return currencyPolicies;
+    }
+
+    @Scheduled(fixedDelayString = "${currency-policy.reload-interval-ms:5000}")
+    public void reloadIfChanged() {
+        long lastModified = lastModified();
+        if (lastModified == loadedLastModified) {
+            return;
+        }
+        loadedLastModified = lastModified;
+        try {
+            CurrencyPolicy policy = load();
+            currencyPolicies.update(policy);
+            LOGGER.info("reloaded currency policy from {}, accepting {}", file, policy.getAccepted());
+        } catch (RuntimeException e) {
+            LOGGER.warn("keeping the current currency policy, {} is invalid", file, e);
+        }
+    }
+
+    CurrencyPolicy load() {
+        Binder binder = binder();
+        Set<Currency> accepted = binder.bind(PREFIX + ".accepted", Bindable.setOf(Currency.class))
+                .orElse(EnumSet.of(Currency.USD, Currency.GBP));
+        Map<Currency, BigDecimal> minAmounts = binder.bind(PREFIX + ".min-amount",
+                Bindable.mapOf(Currency.class, BigDecimal.class)).orElse(Map.of());
+        Map<Currency, BigDecimal> maxAmounts = binder.bind(PREFIX + ".max-amount",
+                Bindable.mapOf(Currency.class, BigDecimal.class)).orElse(Map.of());
+        Map<Currency, String> routes = binder.bind(PREFIX + ".route",
+                Bindable.mapOf(Currency.class, String.class)).orElse(Map.of());
+
+        Map<Currency, CardCharger> routedCardChargers = new EnumMap<>(Currency.class);
+        routes.forEach((currency, beanName) -> {
+            CardCharger cardCharger = cardChargers.get(beanName);
+            if (cardCharger == null) {
+                throw new IllegalStateException(String.format(
+                        "card charger [%s] for currency [%s] not found", beanName, currency));
+            }
+            routedCardChargers.put(currency, decorated(beanName, cardCharger));
+        });
+        return new CurrencyPolicy(accepted, toMoney(minAmounts), toMoney(maxAmounts), routedCardChargers, defaultCardCharger);
+    }
+
+    // loads run one at a time, at startup and then on the scheduler
+    private synchronized CardCharger decorated(String beanName, CardCharger cardCharger) {
+        return decoratedCardChargers.computeIfAbsent(beanName, name -> routeDecorator.apply(name, cardCharger));
+    }
+
+    private Binder binder() {
+        List<ConfigurationPropertySource> sources = new ArrayList<>();
+        if (file != null && Files.exists(file)) {
+            sources.add(new MapConfigurationPropertySource(readFile()));
+        }
+        ConfigurationPropertySources.get(environment).forEach(sources::add);
+        return new Binder(sources);
+    }
+
+    private Properties readFile() {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return properties;
+    }
+
+    private long lastModified() {
+        try {
+            return file != null && Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : 0;
+        } catch (IOException e) {
+            return loadedLastModified;
+        }
+    }
+
+    private static Map<Currency, Money> toMoney(Map<Currency, BigDecimal> amounts) {
+        Map<Currency, Money> money = new EnumMap<>(Currency.class);
+        amounts.forEach((currency, amount) -> money.put(currency, Money.of(amount, currency)));
+        return money;
+    }
+}
@@ -0,0 +1,50 @@
+package com.amigoscode.customerapitdd.replica;
+
+import com.amigoscode.customerapitdd.cache.ExpiringCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Sends reads of a customer written moments ago to the primary. A replica further behind than the
+ * maximum lag takes no reads, so a pin lasting that long covers every replica that does.
+ * Pins are local to the instance that did the write.
+ */
+@Component
+public class ReadYourWritesPins {
+
+    private final boolean enabled;
+    private final ExpiringCache<UUID, Boolean> pinnedCustomerIds;
+
+    public ReadYourWritesPins(@Value("${datasource.replicas.enabled:false}") boolean enabled,
+                              @Value("${datasource.replicas.max-pins:10000}") int maxPins,
+                              @Value("${datasource.replicas.max-lag-ms:1000}") long maxLagMillis) {
+        this.enabled = enabled;
+        this.pinnedCustomerIds = new ExpiringCache<>(maxPins, maxLagMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void pin(UUID customerId) {
+        if (enabled) {
+            pinnedCustomerIds.put(customerId, Boolean.TRUE);
+        }
+    }
+
+    public <T> T readFor(UUID customerId, Supplier<T> queries) {
+        return enabled && pinnedCustomerIds.get(customerId).isPresent() ? ReplicaRouting.onPrimary(queries) : queries.get();
+    }
+
+    public <T> T readFor(Collection<UUID> customerIds, Supplier<T> queries) {
+        if (enabled) {
+            for (UUID customerId : customerIds) {
+                if (pinnedCustomerIds.get(customerId).isPresent()) {
+                    return ReplicaRouting.onPrimary(queries);
+                }
+            }
+        }
+        return queries.get();
+    }
+}
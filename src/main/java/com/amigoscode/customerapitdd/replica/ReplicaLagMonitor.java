@@ -0,0 +1,92 @@
+package com.amigoscode.customerapitdd.replica;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures replica lag with a heartbeat row: each check reads the time the replicas last saw written,
+ * then writes the current time on the primary. The lag read includes up to one check interval.
+ * A replica that cannot be read counts as out of sync. Checks run on a thread of their own, a check
+ * held up behind another task would let a lagging replica keep taking reads.
+ */
+public class ReplicaLagMonitor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    private final ReplicaRoutingDataSource routingDataSource;
+    private final JdbcTemplate primary;
+    private final List<JdbcTemplate> replicas = new ArrayList<>();
+    private ScheduledExecutorService checker;
+
+    public ReplicaLagMonitor(ReplicaRoutingDataSource routingDataSource) {
+        this.routingDataSource = routingDataSource;
+        this.primary = new JdbcTemplate(routingDataSource.getPrimary());
+        for (DataSource replica : routingDataSource.getReplicas()) {
+            replicas.add(new JdbcTemplate(replica));
+        }
+    }
+
+    public void createHeartbeat() {
+        primary.execute("CREATE TABLE IF NOT EXISTS replica_heartbeat (id INT PRIMARY KEY, beat_millis BIGINT NOT NULL)");
+    }
+
+    public void start(Duration interval) {
+        checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checker.scheduleWithFixedDelay(this::checkUntilStopped, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (checker != null) {
+            checker.shutdown();
+        }
+    }
+
+    public void check() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < replicas.size(); i++) {
+            long lagMillis;
+            try {
+                List<Long> beats = replicas.get(i).queryForList(
+                        "SELECT beat_millis FROM replica_heartbeat WHERE id = 1", Long.class);
+                lagMillis = beats.isEmpty() ? Long.MAX_VALUE : Math.max(0, now - beats.get(0));
+            } catch (DataAccessException e) {
+                LOGGER.debug("could not read the heartbeat of replica [{}]", i, e);
+                lagMillis = Long.MAX_VALUE;
+            }
+            boolean wasInSync = routingDataSource.isInSync(i);
+            routingDataSource.updateLag(i, lagMillis);
+            if (wasInSync && !routingDataSource.isInSync(i)) {
+                LOGGER.warn("replica [{}] fell behind, {} ms since its last heartbeat, reads go elsewhere", i,
+                        lagMillis == Long.MAX_VALUE ? "unknown" : lagMillis);
+            } else if (!wasInSync && routingDataSource.isInSync(i)) {
+                LOGGER.info("replica [{}] is in sync, taking reads", i);
+            }
+        }
+        if (primary.update("UPDATE replica_heartbeat SET beat_millis = ? WHERE id = 1", now) == 0) {
+            primary.update("INSERT INTO replica_heartbeat (id, beat_millis) VALUES (1, ?)", now);
+        }
+    }
+
+    // an exception escaping would cancel the schedule and freeze the lag last measured
+    private void checkUntilStopped() {
+        try {
+            check();
+        } catch (RuntimeException e) {
+            LOGGER.warn("could not write the replica heartbeat", e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.amigoscode.customerapitdd.replica;
+
+import java.util.function.Supplier;
+
+/**
+ * Read-only transactions go to an in-sync replica, reads that must see the latest writes, such as
+ * lookups deciding a write, are run through {@link #onPrimary(Supplier)} instead.
+ */
+public final class ReplicaRouting {
+
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private ReplicaRouting() {
+    }
+
+    /**
+     * Runs the queries on the primary, including read-only ones. Transactions already open keep their connection.
+     */
+    public static <T> T onPrimary(Supplier<T> queries) {
+        Boolean outer = PRIMARY_REQUIRED.get();
+        PRIMARY_REQUIRED.set(Boolean.TRUE);
+        try {
+            return queries.get();
+        } finally {
+            PRIMARY_REQUIRED.set(outer);
+        }
+    }
+
+    static boolean isPrimaryRequired() {
+        return PRIMARY_REQUIRED.get();
+    }
+}
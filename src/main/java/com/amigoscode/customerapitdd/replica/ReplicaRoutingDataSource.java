@@ -0,0 +1,75 @@
+package com.amigoscode.customerapitdd.replica;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hands out primary connections, except to read-only transactions, which take turns over the replicas
+ * within the maximum lag and fall back to the primary when none is. Connections are chosen when taken,
+ * so this sits behind a lazy connection proxy that waits for the transaction's read-only flag.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final String PRIMARY = "primary";
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final long maxLagMillis;
+    // unknown until the lag monitor first reads the replica, which keeps it out until then
+    private final AtomicLongArray lagMillis;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, long maxLagMillis) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.maxLagMillis = maxLagMillis;
+        this.lagMillis = new AtomicLongArray(replicas.size());
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            lagMillis.set(i, Long.MAX_VALUE);
+            targets.put(i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public List<DataSource> getReplicas() {
+        return replicas;
+    }
+
+    public void updateLag(int replica, long lagMillis) {
+        this.lagMillis.set(replica, lagMillis);
+    }
+
+    public boolean isInSync(int replica) {
+        return lagMillis.get(replica) <= maxLagMillis;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || ReplicaRouting.isPrimaryRequired()) {
+            return PRIMARY;
+        }
+        int start = nextReplica.getAndIncrement();
+        for (int i = 0; i < replicas.size(); i++) {
+            int replica = Math.floorMod(start + i, replicas.size());
+            if (isInSync(replica)) {
+                return replica;
+            }
+        }
+        return PRIMARY;
+    }
+}
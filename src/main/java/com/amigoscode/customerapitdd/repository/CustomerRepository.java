@@ -1,17 +1,35 @@
 package com.amigoscode.customerapitdd.repository;
 
+import com.amigoscode.customerapitdd.dto.CustomerSummary;
+import com.amigoscode.customerapitdd.dto.RegisteredPhoneNumber;
 import com.amigoscode.customerapitdd.model.Customer;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface CustomerRepository extends CrudRepository<Customer, UUID> {
 
-    @Query(value = "SELECT id, name, phone_number " +
-           "FROM CUSTOMER WHERE phone_number = :phone_number",
-            nativeQuery = true)
-    Optional<Customer> selectCustomerByPhoneNumber(@Param("phone_number") String phoneNumber);
+    Optional<CustomerSummary> findByNormalizedPhoneNumber(String normalizedPhoneNumber);
+
+    List<RegisteredPhoneNumber> findByNormalizedPhoneNumberIn(Collection<String> normalizedPhoneNumbers);
+
+    @Query("SELECT c.id FROM Customer c")
+    List<UUID> selectAllIds();
+
+    @Query("SELECT c FROM Customer c ORDER BY c.id")
+    List<Customer> selectCustomerPage(Pageable pageable);
+
+    @Query("SELECT c FROM Customer c WHERE c.id > :afterId ORDER BY c.id")
+    List<Customer> selectCustomerPage(@Param("afterId") UUID afterId, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Customer c SET c.id = :newId WHERE c.id = :oldId")
+    int updateId(@Param("oldId") UUID oldId, @Param("newId") UUID newId);
 }
@@ -0,0 +1,62 @@
+package com.amigoscode.customerapitdd.repository;
+
+import com.amigoscode.customerapitdd.interfaces.PaymentStore;
+import com.amigoscode.customerapitdd.model.Payment;
+import com.amigoscode.customerapitdd.model.SmsNotification;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps every payment in the application's own database, joining the caller's transaction. Notifications
+ * go to the outbox table of the same database.
+ */
+public class JpaPaymentStore implements PaymentStore {
+
+    private final PaymentRepository paymentRepository;
+    private final SmsNotificationRepository smsNotificationRepository;
+
+    public JpaPaymentStore(PaymentRepository paymentRepository,
+                           SmsNotificationRepository smsNotificationRepository) {
+        this.paymentRepository = paymentRepository;
+        this.smsNotificationRepository = smsNotificationRepository;
+    }
+
+    @Override
+    public void save(Payment payment, Function<Payment, SmsNotification> notification) {
+        paymentRepository.save(payment);
+        smsNotificationRepository.save(notification.apply(payment));
+    }
+
+    @Override
+    public void saveAll(List<Payment> payments, Function<Payment, SmsNotification> notification) {
+        paymentRepository.saveAll(payments);
+        smsNotificationRepository.saveAll(payments.stream().map(notification).collect(Collectors.toList()));
+    }
+
+    @Override
+    public List<Payment> insertMissing(List<Payment> payments, Function<Payment, SmsNotification> notification) {
+        List<Payment> inserted = paymentRepository.insertMissing(payments);
+        smsNotificationRepository.saveAll(inserted.stream().map(notification).collect(Collectors.toList()));
+        return inserted;
+    }
+
+    @Override
+    public Optional<Payment> findByIdempotencyKey(String idempotencyKey) {
+        return paymentRepository.findByIdempotencyKey(idempotencyKey);
+    }
+
+    @Override
+    public List<Payment> selectPaymentPage(UUID customerId, long afterPaymentId, Pageable pageable) {
+        return paymentRepository.selectPaymentPage(customerId, afterPaymentId, pageable);
+    }
+
+    @Override
+    public List<Payment> selectPaymentPage(long afterPaymentId, Pageable pageable) {
+        return paymentRepository.selectPaymentPage(afterPaymentId, pageable);
+    }
+}
@@ -0,0 +1,43 @@
+package com.amigoscode.customerapitdd.repository;
+
+import com.amigoscode.customerapitdd.interfaces.SmsOutbox;
+import com.amigoscode.customerapitdd.model.SmsNotification;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The outbox table of the application's own database, holding the notifications of unsharded payments.
+ */
+public class JpaSmsOutbox implements SmsOutbox {
+
+    private final SmsNotificationRepository smsNotificationRepository;
+
+    public JpaSmsOutbox(SmsNotificationRepository smsNotificationRepository) {
+        this.smsNotificationRepository = smsNotificationRepository;
+    }
+
+    @Override
+    public List<SmsNotification> claim(int limit, Instant now, Instant claimedUntil) {
+        List<Long> ids = smsNotificationRepository.selectClaimableIds(
+                SmsNotification.Status.PENDING, SmsNotification.Status.SENDING, now, PageRequest.of(0, limit));
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        UUID claimToken = UUID.randomUUID();
+        int claimed = smsNotificationRepository.claim(ids, claimToken, claimedUntil,
+                SmsNotification.Status.PENDING, SmsNotification.Status.SENDING, now);
+        return claimed == 0 ? List.of() : smsNotificationRepository.findByClaimTokenOrderByIdAsc(claimToken);
+    }
+
+    @Override
+    public void release(List<SmsNotification> notifications) {
+        notifications.forEach(notification -> {
+            notification.setClaimToken(null);
+            notification.setClaimedUntil(null);
+        });
+        smsNotificationRepository.saveAll(notifications);
+    }
+}
@@ -1,7 +1,31 @@
 package com.amigoscode.customerapitdd.repository;
 
 import com.amigoscode.customerapitdd.model.Payment;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
-public interface PaymentRepository extends CrudRepository<Payment, Long> {
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface PaymentRepository extends CrudRepository<Payment, Long>, PaymentRepositoryCustom {
+
+    Optional<Payment> findByIdempotencyKey(String idempotencyKey);
+
+    @Query("SELECT p FROM Payment p " +
+           "WHERE p.customerId = :customerId AND p.paymentId > :afterPaymentId " +
+           "ORDER BY p.paymentId")
+    List<Payment> selectPaymentPage(@Param("customerId") UUID customerId,
+                                    @Param("afterPaymentId") long afterPaymentId,
+                                    Pageable pageable);
+
+    @Query("SELECT p FROM Payment p WHERE p.paymentId > :afterPaymentId ORDER BY p.paymentId")
+    List<Payment> selectPaymentPage(@Param("afterPaymentId") long afterPaymentId, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Payment p SET p.customerId = :newId WHERE p.customerId = :oldId")
+    int updateCustomerId(@Param("oldId") UUID oldId, @Param("newId") UUID newId);
 }
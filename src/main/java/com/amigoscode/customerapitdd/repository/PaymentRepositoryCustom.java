@@ -0,0 +1,11 @@
+package com.amigoscode.customerapitdd.repository;
+
+import com.amigoscode.customerapitdd.model.Payment;
+
+import java.util.List;
+
+public interface PaymentRepositoryCustom {
+
+    // payments passed in carry their id, the entity's generator would replace it
+    List<Payment> insertMissing(List<Payment> payments);
+}
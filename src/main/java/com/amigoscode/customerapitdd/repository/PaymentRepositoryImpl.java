@@ -0,0 +1,23 @@
+package com.amigoscode.customerapitdd.repository;
+
+import com.amigoscode.customerapitdd.model.Payment;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.List;
+
+/**
+ * Writes payments with plain JDBC on the connection of the surrounding JPA transaction.
+ */
+public class PaymentRepositoryImpl implements PaymentRepositoryCustom {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public PaymentRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public List<Payment> insertMissing(List<Payment> payments) {
+        return PaymentRows.insertMissing(jdbcTemplate, payments);
+    }
+}
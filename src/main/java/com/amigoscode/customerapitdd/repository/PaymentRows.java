@@ -0,0 +1,84 @@
+package com.amigoscode.customerapitdd.repository;
+
+import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.model.MinorUnits;
+import com.amigoscode.customerapitdd.model.Money;
+import com.amigoscode.customerapitdd.model.Payment;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The payment table layout of the entity mapping, for the paths that read and write it with plain JDBC.
+ */
+public final class PaymentRows {
+
+    public static final String COLUMNS =
+            "payment_id, customer_id, amount, currency, source, description, idempotency_key, created_at";
+
+    public static final String INSERT = "INSERT INTO payment (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    public static final RowMapper<Payment> ROW_MAPPER = PaymentRows::mapPayment;
+
+    private PaymentRows() {
+    }
+
+    /**
+     * Inserts the payments carrying ids that are not stored yet, in the caller's transaction.
+     *
+     * @return the payments inserted
+     */
+    public static List<Payment> insertMissing(NamedParameterJdbcTemplate jdbcTemplate, List<Payment> payments) {
+        if (payments.isEmpty()) {
+            return List.of();
+        }
+        List<Long> ids = new ArrayList<>(payments.size());
+        payments.forEach(payment -> ids.add(payment.getPaymentId()));
+        Set<Long> existing = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT payment_id FROM payment WHERE payment_id IN (:ids)", Map.of("ids", ids), Long.class));
+        List<Payment> missing = new ArrayList<>(payments.size());
+        for (Payment payment : payments) {
+            if (!existing.contains(payment.getPaymentId())) {
+                missing.add(payment);
+            }
+        }
+        jdbcTemplate.getJdbcOperations().batchUpdate(INSERT, missing, missing.size(), PaymentRows::bind);
+        return missing;
+    }
+
+    public static void bind(PreparedStatement ps, Payment payment) throws SQLException {
+        ps.setLong(1, payment.getPaymentId());
+        ps.setObject(2, payment.getCustomerId());
+        ps.setBigDecimal(3, MinorUnits.toBigDecimal(payment.getAmount()));
+        ps.setInt(4, payment.getCurrency().ordinal());
+        ps.setString(5, payment.getSource());
+        ps.setString(6, payment.getDescription());
+        ps.setString(7, payment.getIdempotencyKey());
+        if (payment.getCreatedAt() != null) {
+            ps.setTimestamp(8, Timestamp.from(payment.getCreatedAt()));
+        } else {
+            ps.setNull(8, Types.TIMESTAMP);
+        }
+    }
+
+    private static Payment mapPayment(ResultSet rs, int rowNum) throws SQLException {
+        Money amount = Money.ofMinorUnits(MinorUnits.of(rs.getBigDecimal("amount")), Currency.values()[rs.getInt("currency")]);
+        Payment payment = new Payment(rs.getLong("payment_id"), rs.getObject("customer_id", UUID.class),
+                amount, rs.getString("source"), rs.getString("description"));
+        payment.setIdempotencyKey(rs.getString("idempotency_key"));
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        payment.setCreatedAt(createdAt != null ? createdAt.toInstant() : null);
+        return payment;
+    }
+}
@@ -0,0 +1,48 @@
+package com.amigoscode.customerapitdd.repository;
+
+import com.amigoscode.customerapitdd.model.SmsNotification;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface SmsNotificationRepository extends CrudRepository<SmsNotification, Long> {
+
+    /**
+     * Pending notifications and those whose claim expired, the dispatcher holding it is presumed dead.
+     */
+    @Query("SELECT n.id FROM SmsNotification n " +
+           "WHERE n.status = :pending OR (n.status = :sending AND n.claimedUntil < :now) " +
+           "ORDER BY n.id")
+    List<Long> selectClaimableIds(@Param("pending") SmsNotification.Status pending,
+                                  @Param("sending") SmsNotification.Status sending,
+                                  @Param("now") Instant now,
+                                  Pageable pageable);
+
+    /**
+     * Rows another dispatcher claimed since they were selected no longer match and are skipped, the update
+     * re-checks the condition under the row lock.
+     *
+     * @return the number of notifications claimed
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE SmsNotification n " +
+           "SET n.status = :sending, n.claimToken = :claimToken, n.claimedUntil = :claimedUntil " +
+           "WHERE n.id IN :ids AND (n.status = :pending OR (n.status = :sending AND n.claimedUntil < :now))")
+    int claim(@Param("ids") Collection<Long> ids,
+              @Param("claimToken") UUID claimToken,
+              @Param("claimedUntil") Instant claimedUntil,
+              @Param("pending") SmsNotification.Status pending,
+              @Param("sending") SmsNotification.Status sending,
+              @Param("now") Instant now);
+
+    List<SmsNotification> findByClaimTokenOrderByIdAsc(UUID claimToken);
+}
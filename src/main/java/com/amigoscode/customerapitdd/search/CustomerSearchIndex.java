@@ -0,0 +1,182 @@
+package com.amigoscode.customerapitdd.search;
+
+import com.amigoscode.customerapitdd.dto.CustomerSearchResult;
+import com.amigoscode.customerapitdd.model.Customer;
+import com.amigoscode.customerapitdd.replica.ReplicaRouting;
+import com.amigoscode.customerapitdd.repository.CustomerRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Finds customers by a part of their name or phone number for support agents. The index lives in memory,
+ * it is built from the customer table on startup and every registration adds to it. Searches share a read
+ * lock, registrations take the write lock only for the few postings they append to.
+ */
+@Component
+public class CustomerSearchIndex implements ApplicationContextAware {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerSearchIndex.class);
+
+    public static final int MAX_RESULTS = 100;
+
+    private final CustomerRepository customerRepository;
+    private final int pageSize;
+    private final boolean rebuildOnStartup;
+    private ApplicationContext applicationContext;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private TrigramIndex index = new TrigramIndex();
+    // customers registered while a rebuild scans the table, added to the rebuilt index before it is swapped in
+    private List<Customer> addedDuringRebuild;
+    // ids changed meanwhile, the scan may have seen a customer under its old id
+    private Map<UUID, UUID> movedDuringRebuild;
+
+    public CustomerSearchIndex(CustomerRepository customerRepository,
+                               @Value("${customer.search.rebuild-page-size:1000}") int pageSize,
+                               @Value("${customer.search.rebuild-on-startup:true}") boolean rebuildOnStartup) {
+        this.customerRepository = customerRepository;
+        this.pageSize = pageSize;
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) {
+        this.applicationContext = applicationContext;
+    }
+
+    // child contexts, like a management context on its own port, refresh too and must not rebuild again
+    @EventListener(ContextRefreshedEvent.class)
+    public void rebuildOnStartup(ContextRefreshedEvent event) {
+        if (rebuildOnStartup && event.getApplicationContext() == applicationContext) {
+            long start = System.nanoTime();
+            int customers = rebuild();
+            LOGGER.info("indexed {} customers for search in {} ms",
+                    customers, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Builds a new index with one scan of the customer table in id order and swaps it in. Searches keep
+     * using the old index meanwhile.
+     *
+     * @return the number of customers indexed
+     */
+    public synchronized int rebuild() {
+        lock.writeLock().lock();
+        try {
+            addedDuringRebuild = new ArrayList<>();
+            movedDuringRebuild = new LinkedHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        TrigramIndex rebuilt = new TrigramIndex();
+        boolean scanned = false;
+        try {
+            List<Customer> page = ReplicaRouting.onPrimary(
+                    () -> customerRepository.selectCustomerPage(PageRequest.of(0, pageSize)));
+            while (true) {
+                for (Customer customer : page) {
+                    add(rebuilt, customer);
+                }
+                if (page.size() < pageSize) {
+                    break;
+                }
+                Customer last = page.get(page.size() - 1);
+                page = ReplicaRouting.onPrimary(
+                        () -> customerRepository.selectCustomerPage(last.getId(), PageRequest.of(0, pageSize)));
+            }
+            scanned = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (scanned) {
+                    // a customer both scanned and registered meanwhile is indexed once
+                    addedDuringRebuild.forEach(customer -> add(rebuilt, customer));
+                    movedDuringRebuild.forEach(rebuilt::changeId);
+                    index = rebuilt;
+                }
+                addedDuringRebuild = null;
+                movedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        return rebuilt.size();
+    }
+
+    public void add(Customer customer) {
+        addAll(List.of(customer));
+    }
+
+    public void addAll(Collection<Customer> customers) {
+        lock.writeLock().lock();
+        try {
+            for (Customer customer : customers) {
+                add(index, customer);
+            }
+            if (addedDuringRebuild != null) {
+                addedDuringRebuild.addAll(customers);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Follows a customer being re-keyed, it keeps its place in search results.
+     */
+    public void changeId(UUID oldId, UUID newId) {
+        lock.writeLock().lock();
+        try {
+            index.changeId(oldId, newId);
+            if (movedDuringRebuild != null) {
+                movedDuringRebuild.put(oldId, newId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param limit capped at {@link #MAX_RESULTS}
+     * @see TrigramIndex#search(String, int)
+     */
+    public List<CustomerSearchResult> search(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            int[] customers = index.search(query, Math.min(limit, MAX_RESULTS));
+            List<CustomerSearchResult> results = new ArrayList<>(customers.length);
+            for (int customer : customers) {
+                results.add(new CustomerSearchResult(
+                        index.idOf(customer), index.nameOf(customer), index.phoneNumberOf(customer)));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void add(TrigramIndex index, Customer customer) {
+        index.add(customer.getId(), customer.getName(), customer.getPhoneNumber());
+    }
+}
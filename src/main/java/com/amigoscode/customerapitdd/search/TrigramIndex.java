@@ -0,0 +1,390 @@
+package com.amigoscode.customerapitdd.search;
+
+import com.amigoscode.customerapitdd.model.PhoneNumbers;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Trigram postings over customer names and the digits of their phone numbers. Customers are numbered
+ * densely in the order they are added and every trigram maps to the sorted customer numbers containing it,
+ * so a query intersects a few int arrays instead of scanning customers. Every word additionally contributes
+ * its first one and two characters behind word start markers, which is what one and two character queries
+ * and word prefix matches look up. Not thread safe, {@link CustomerSearchIndex} guards it.
+ */
+final class TrigramIndex {
+
+    private static final long NAME = 0;
+    private static final long PHONE = 1L << 48;
+    private static final char WORD_START = 0;
+
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    // per customer number
+    private long[] mostSignificantBits = new long[1024];
+    private long[] leastSignificantBits = new long[1024];
+    private String[] names = new String[1024];
+    private String[] phoneNumbers = new String[1024];
+    private int size;
+
+    // open addressing over customer number + 1, zero marks a free slot, so adding a customer twice is a no-op
+    private int[] numbersById = new int[2048];
+
+    private final StringBuilder word = new StringBuilder();
+
+    int size() {
+        return size;
+    }
+
+    UUID idOf(int customer) {
+        return new UUID(mostSignificantBits[customer], leastSignificantBits[customer]);
+    }
+
+    String nameOf(int customer) {
+        return names[customer];
+    }
+
+    String phoneNumberOf(int customer) {
+        return phoneNumbers[customer];
+    }
+
+    /**
+     * @return false when the customer is indexed already
+     */
+    boolean add(UUID id, String name, String phoneNumber) {
+        int slot = slotOf(id);
+        if (numbersById[slot] != 0) {
+            return false;
+        }
+        if (size == names.length) {
+            grow();
+            slot = slotOf(id);
+        }
+        int customer = size++;
+        mostSignificantBits[customer] = id.getMostSignificantBits();
+        leastSignificantBits[customer] = id.getLeastSignificantBits();
+        names[customer] = name;
+        phoneNumbers[customer] = phoneNumber;
+        numbersById[slot] = customer + 1;
+
+        if (name != null) {
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                if (Character.isLetterOrDigit(c)) {
+                    word.append(Character.toLowerCase(c));
+                } else {
+                    indexWord(NAME, customer);
+                }
+            }
+            indexWord(NAME, customer);
+        }
+        String normalized = PhoneNumbers.normalize(phoneNumber);
+        if (normalized != null) {
+            // the whole number is one word, without the '+' every normalized number starts with
+            word.append(normalized, 1, normalized.length());
+            indexWord(PHONE, customer);
+        }
+        return true;
+    }
+
+    /**
+     * Gives an indexed customer a new id, keeping its number and postings since name and phone number are
+     * unchanged.
+     *
+     * @return false when no customer with the old id is indexed
+     */
+    boolean changeId(UUID oldId, UUID newId) {
+        int slot = slotOf(oldId);
+        if (numbersById[slot] == 0) {
+            return false;
+        }
+        int customer = numbersById[slot] - 1;
+        removeSlot(slot);
+        mostSignificantBits[customer] = newId.getMostSignificantBits();
+        leastSignificantBits[customer] = newId.getLeastSignificantBits();
+        numbersById[slotOf(newId)] = customer + 1;
+        return true;
+    }
+
+    /**
+     * A query with digits and no letters searches phone numbers, any other one names. Customers with a word
+     * starting with every query word, or a phone number starting with the query digits, come first, then
+     * those containing them anywhere. Both groups are in the order customers were added.
+     *
+     * @return the numbers of at most limit matching customers
+     */
+    int[] search(String query, int limit) {
+        boolean letters = false;
+        boolean digits = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            letters |= Character.isLetter(c);
+            digits |= c >= '0' && c <= '9';
+        }
+        long field = digits && !letters ? PHONE : NAME;
+        String[] words = field == PHONE ? phoneQuery(query) : nameQuery(query);
+        if (words.length == 0 || limit <= 0) {
+            return new int[0];
+        }
+
+        int[] matches = new int[limit];
+        int found = collect(field, words, true, matches, 0);
+        if (found < limit) {
+            found = collect(field, words, false, matches, found);
+        }
+        return Arrays.copyOf(matches, found);
+    }
+
+    private int collect(long field, String[] words, boolean prefixes, int[] matches, int found) {
+        long[] terms = termsOf(field, words, prefixes);
+        Postings[] lists = new Postings[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            lists[i] = postings.get(terms[i]);
+            if (lists[i] == null) {
+                return found;
+            }
+        }
+        // the shortest list drives the intersection, the others are only probed
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+        int[] cursors = new int[lists.length];
+        int alreadyFound = found;
+
+        Postings driver = lists[0];
+        candidates:
+        for (int i = 0; i < driver.size && found < matches.length; i++) {
+            int customer = driver.customers[i];
+            for (int l = 1; l < lists.length; l++) {
+                int cursor = lists[l].seek(customer, cursors[l]);
+                if (cursor == lists[l].size) {
+                    break candidates;
+                }
+                cursors[l] = cursor;
+                if (lists[l].customers[cursor] != customer) {
+                    continue candidates;
+                }
+            }
+            // trigrams can match in an order or spread the query does not, so the candidate is checked
+            if (matches(customer, field, words, prefixes) && !contains(matches, alreadyFound, customer)) {
+                matches[found++] = customer;
+            }
+        }
+        return found;
+    }
+
+    private boolean matches(int customer, long field, String[] words, boolean prefixes) {
+        if (field == PHONE) {
+            String normalized = PhoneNumbers.normalize(phoneNumbers[customer]);
+            return prefixes ? normalized.startsWith(words[0], 1) : normalized.contains(words[0]);
+        }
+        String name = names[customer];
+        for (String queryWord : words) {
+            boolean matched = prefixes || queryWord.length() < 3
+                    ? startsWord(name, queryWord)
+                    : containsIgnoreCase(name, queryWord);
+            if (!matched) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void indexWord(long field, int customer) {
+        if (word.length() == 0) {
+            return;
+        }
+        add(term(field, WORD_START, WORD_START, word.charAt(0)), customer);
+        if (word.length() > 1) {
+            add(term(field, WORD_START, word.charAt(0), word.charAt(1)), customer);
+        }
+        for (int i = 2; i < word.length(); i++) {
+            add(term(field, word.charAt(i - 2), word.charAt(i - 1), word.charAt(i)), customer);
+        }
+        word.setLength(0);
+    }
+
+    private void add(long term, int customer) {
+        postings.computeIfAbsent(term, t -> new Postings()).add(customer);
+    }
+
+    private static long[] termsOf(long field, String[] words, boolean prefixes) {
+        long[] terms = new long[0];
+        int count = 0;
+        for (String queryWord : words) {
+            terms = Arrays.copyOf(terms, count + queryWord.length());
+            if (queryWord.length() == 1) {
+                terms[count++] = term(field, WORD_START, WORD_START, queryWord.charAt(0));
+                continue;
+            }
+            if (prefixes || queryWord.length() == 2) {
+                terms[count++] = term(field, WORD_START, queryWord.charAt(0), queryWord.charAt(1));
+            }
+            for (int i = 2; i < queryWord.length(); i++) {
+                terms[count++] = term(field, queryWord.charAt(i - 2), queryWord.charAt(i - 1), queryWord.charAt(i));
+            }
+        }
+        // a word repeating a trigram, or two words sharing one, would only intersect a list with itself
+        return Arrays.stream(terms, 0, count).sorted().distinct().toArray();
+    }
+
+    private static long term(long field, char first, char second, char third) {
+        return field | (long) first << 32 | (long) second << 16 | third;
+    }
+
+    private static String[] nameQuery(String query) {
+        StringBuilder words = new StringBuilder(query.length());
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            words.append(Character.isLetterOrDigit(c) ? Character.toLowerCase(c) : ' ');
+        }
+        String trimmed = words.toString().trim();
+        return trimmed.isEmpty() ? new String[0] : trimmed.split(" +");
+    }
+
+    private static String[] phoneQuery(String query) {
+        StringBuilder digits = new StringBuilder(query.length());
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        // numbers are indexed with their country code, so a typed call or trunk prefix would never match
+        int start = digits.indexOf("00") == 0 ? 2 : digits.indexOf("0") == 0 ? 1 : 0;
+        return digits.length() == start ? new String[0] : new String[]{digits.substring(start)};
+    }
+
+    private static boolean startsWord(String name, String prefix) {
+        for (int i = 0; i + prefix.length() <= name.length(); i++) {
+            boolean wordStart = i == 0 || !Character.isLetterOrDigit(name.charAt(i - 1));
+            if (wordStart && name.regionMatches(true, i, prefix, 0, prefix.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsIgnoreCase(String name, String part) {
+        for (int i = 0; i + part.length() <= name.length(); i++) {
+            if (name.regionMatches(true, i, part, 0, part.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains(int[] customers, int length, int customer) {
+        for (int i = 0; i < length; i++) {
+            if (customers[i] == customer) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int slotOf(UUID id) {
+        int mask = numbersById.length - 1;
+        int slot = homeSlotOf(id.getMostSignificantBits(), id.getLeastSignificantBits(), mask);
+        while (numbersById[slot] != 0) {
+            int customer = numbersById[slot] - 1;
+            if (mostSignificantBits[customer] == id.getMostSignificantBits()
+                    && leastSignificantBits[customer] == id.getLeastSignificantBits()) {
+                return slot;
+            }
+            slot = slot + 1 & mask;
+        }
+        return slot;
+    }
+
+    private static int homeSlotOf(long mostSignificantBits, long leastSignificantBits, int mask) {
+        long bits = mostSignificantBits ^ leastSignificantBits;
+        return (int) (bits ^ bits >>> 32) * 0x9E3779B9 & mask;
+    }
+
+    /**
+     * Frees a slot and shifts back the customers probed past it, so none of them becomes unreachable.
+     */
+    private void removeSlot(int slot) {
+        int mask = numbersById.length - 1;
+        int free = slot;
+        numbersById[free] = 0;
+        for (int next = free + 1 & mask; numbersById[next] != 0; next = next + 1 & mask) {
+            int customer = numbersById[next] - 1;
+            int home = homeSlotOf(mostSignificantBits[customer], leastSignificantBits[customer], mask);
+            // a customer may only move back if its home slot does not lie cyclically within (free, next]
+            if ((next - home & mask) >= (next - free & mask)) {
+                numbersById[free] = numbersById[next];
+                numbersById[next] = 0;
+                free = next;
+            }
+        }
+    }
+
+    private void grow() {
+        int capacity = names.length * 2;
+        mostSignificantBits = Arrays.copyOf(mostSignificantBits, capacity);
+        leastSignificantBits = Arrays.copyOf(leastSignificantBits, capacity);
+        names = Arrays.copyOf(names, capacity);
+        phoneNumbers = Arrays.copyOf(phoneNumbers, capacity);
+        numbersById = new int[capacity * 2];
+        int mask = numbersById.length - 1;
+        for (int customer = 0; customer < size; customer++) {
+            int slot = homeSlotOf(mostSignificantBits[customer], leastSignificantBits[customer], mask);
+            while (numbersById[slot] != 0) {
+                slot = slot + 1 & mask;
+            }
+            numbersById[slot] = customer + 1;
+        }
+    }
+
+    /**
+     * Customer numbers containing one trigram, ascending since customers are only ever appended.
+     */
+    private static final class Postings {
+
+        private int[] customers = new int[4];
+        private int size;
+
+        void add(int customer) {
+            // a trigram repeated within one customer is listed once
+            if (size > 0 && customers[size - 1] == customer) {
+                return;
+            }
+            if (size == customers.length) {
+                customers = Arrays.copyOf(customers, size + (size >> 1));
+            }
+            customers[size++] = customer;
+        }
+
+        /**
+         * Gallops from the cursor, then binary searches the range it bracketed.
+         *
+         * @return the position of the first customer not below the given one, or size if there is none
+         */
+        int seek(int customer, int from) {
+            if (from >= size || customers[from] >= customer) {
+                return from;
+            }
+            int low = from;
+            int step = 1;
+            int high = from + 1;
+            while (high < size && customers[high] < customer) {
+                low = high;
+                step <<= 1;
+                high = low + step;
+            }
+            high = Math.min(high, size);
+            while (low + 1 < high) {
+                int middle = (low + high) >>> 1;
+                if (customers[middle] < customer) {
+                    low = middle;
+                } else {
+                    high = middle;
+                }
+            }
+            return high;
+        }
+    }
+}
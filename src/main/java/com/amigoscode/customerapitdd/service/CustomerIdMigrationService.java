@@ -0,0 +1,104 @@
+package com.amigoscode.customerapitdd.service;
+
+import com.amigoscode.customerapitdd.cache.CustomerCache;
+import com.amigoscode.customerapitdd.id.TimeOrderedUuidGenerator;
+import com.amigoscode.customerapitdd.interfaces.IdGenerator;
+import com.amigoscode.customerapitdd.model.Customer;
+import com.amigoscode.customerapitdd.repository.CustomerRepository;
+import com.amigoscode.customerapitdd.repository.PaymentRepository;
+import com.amigoscode.customerapitdd.search.CustomerSearchIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Re-keys customers created with random ids onto time ordered ones. Every customer is moved in its own
+ * transaction together with its payments, so the job can be stopped and resumed at any point. Its cache
+ * entries and search index entry follow it in the same transaction.
+ */
+@Service
+public class CustomerIdMigrationService implements ApplicationContextAware {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerIdMigrationService.class);
+
+    private final CustomerRepository customerRepository;
+    private final PaymentRepository paymentRepository;
+    private final IdGenerator idGenerator;
+    private final CustomerCache customerCache;
+    private final CustomerSearchIndex customerSearchIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean migrateOnStartup;
+    private ApplicationContext applicationContext;
+
+    public CustomerIdMigrationService(CustomerRepository customerRepository,
+                                      PaymentRepository paymentRepository,
+                                      IdGenerator idGenerator,
+                                      CustomerCache customerCache,
+                                      CustomerSearchIndex customerSearchIndex,
+                                      PlatformTransactionManager transactionManager,
+                                      @Value("${customer.id-migration.enabled:false}") boolean migrateOnStartup) {
+        this.customerRepository = customerRepository;
+        this.paymentRepository = paymentRepository;
+        this.idGenerator = idGenerator;
+        this.customerCache = customerCache;
+        this.customerSearchIndex = customerSearchIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.migrateOnStartup = migrateOnStartup;
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) {
+        this.applicationContext = applicationContext;
+    }
+
+    // runs before the web server starts and ahead of the startup rebuilds, which then only see migrated ids
+    @EventListener(ContextRefreshedEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void migrateOnStartup(ContextRefreshedEvent event) {
+        if (migrateOnStartup && event.getApplicationContext() == applicationContext) {
+            int migrated = migrateToTimeOrderedIds();
+            LOGGER.info("migrated {} customers to time ordered ids", migrated);
+        }
+    }
+
+    public int migrateToTimeOrderedIds() {
+        List<UUID> customerIds = customerRepository.selectAllIds();
+        int migrated = 0;
+        for (UUID oldId : customerIds) {
+            if (TimeOrderedUuidGenerator.isTimeOrdered(oldId)) {
+                continue;
+            }
+            UUID newId = idGenerator.generateId();
+            if (!TimeOrderedUuidGenerator.isTimeOrdered(newId)) {
+                throw new IllegalStateException("configured id generator does not produce time ordered ids");
+            }
+            Boolean moved = transactionTemplate.execute(status -> {
+                Customer customer = customerRepository.findById(oldId).orElse(null);
+                if (customer == null) {
+                    return false;
+                }
+                customerRepository.updateId(oldId, newId);
+                paymentRepository.updateCustomerId(oldId, newId);
+                customerCache.invalidate(customer);
+                customerSearchIndex.changeId(oldId, newId);
+                return true;
+            });
+            if (Boolean.TRUE.equals(moved)) {
+                migrated++;
+            }
+        }
+        return migrated;
+    }
+}
@@ -0,0 +1,140 @@
+package com.amigoscode.customerapitdd.service;
+
+import com.amigoscode.customerapitdd.dto.CustomerImportLine;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads an import file one line at a time, so the file is never held in memory as a whole.
+ * A line that cannot be parsed becomes an unreadable {@link CustomerImportLine} instead of failing the import.
+ * Blank lines are skipped but still counted, line numbers always match the file.
+ */
+public abstract class CustomerImportReader implements Iterator<CustomerImportLine> {
+
+    private final BufferedReader reader;
+    private long lineNumber;
+    private CustomerImportLine next;
+
+    private CustomerImportReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    /**
+     * One JSON object per line, e.g. {@code {"name":"Maria","phoneNumber":"+447700900123"}}.
+     */
+    public static CustomerImportReader ndjson(Reader reader, ObjectMapper objectMapper) {
+        return new CustomerImportReader(reader) {
+            @Override
+            CustomerImportLine parse(long lineNumber, String line) {
+                try {
+                    JsonNode node = objectMapper.readTree(line);
+                    return CustomerImportLine.of(lineNumber, text(node, "name"), text(node, "phoneNumber"));
+                } catch (JsonProcessingException e) {
+                    return CustomerImportLine.unreadable(lineNumber, "line is not a JSON object");
+                }
+            }
+        };
+    }
+
+    /**
+     * {@code name,phoneNumber} per line, fields may be double quoted. A first line equal to the header is skipped.
+     */
+    public static CustomerImportReader csv(Reader reader) {
+        return new CustomerImportReader(reader) {
+            @Override
+            CustomerImportLine parse(long lineNumber, String line) {
+                List<String> fields = csvFields(line);
+                if (fields == null || fields.size() != 2) {
+                    return CustomerImportLine.unreadable(lineNumber, "expected name,phoneNumber");
+                }
+                if (lineNumber == 1 && fields.get(0).equalsIgnoreCase("name")
+                        && fields.get(1).equalsIgnoreCase("phoneNumber")) {
+                    return null;
+                }
+                return CustomerImportLine.of(lineNumber, fields.get(0), fields.get(1));
+            }
+        };
+    }
+
+    /**
+     * @return the parsed line, or null to skip it
+     */
+    abstract CustomerImportLine parse(long lineNumber, String line);
+
+    @Override
+    public boolean hasNext() {
+        while (next == null) {
+            String line;
+            try {
+                line = reader.readLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (line == null) {
+                return false;
+            }
+            lineNumber++;
+            if (!line.isBlank()) {
+                next = parse(lineNumber, line);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public CustomerImportLine next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        CustomerImportLine line = next;
+        next = null;
+        return line;
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    // null when a quoted field is not closed
+    static List<String> csvFields(String line) {
+        List<String> fields = new ArrayList<>(2);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+}
@@ -0,0 +1,217 @@
+package com.amigoscode.customerapitdd.service;
+
+import com.amigoscode.customerapitdd.cache.CustomerCache;
+import com.amigoscode.customerapitdd.dto.CustomerImportLine;
+import com.amigoscode.customerapitdd.dto.CustomerImportResult;
+import com.amigoscode.customerapitdd.dto.CustomerSummary;
+import com.amigoscode.customerapitdd.dto.RegisteredPhoneNumber;
+import com.amigoscode.customerapitdd.interfaces.IdGenerator;
+import com.amigoscode.customerapitdd.metrics.RegistrationMetrics;
+import com.amigoscode.customerapitdd.model.Customer;
+import com.amigoscode.customerapitdd.model.PhoneNumbers;
+import com.amigoscode.customerapitdd.replica.ReplicaRouting;
+import com.amigoscode.customerapitdd.repository.CustomerRepository;
+import com.amigoscode.customerapitdd.search.CustomerSearchIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Registers customers in chunks with the same rules as {@link CustomerService#registerNewCustomer}.
+ * Per chunk, phone numbers repeated within the chunk are resolved in memory, the remaining ones are
+ * looked up with a single IN query and new customers are inserted in one transaction so Hibernate
+ * sends them as JDBC batches.
+ */
+@Service
+public class CustomerImportService {
+
+    private final CustomerRepository customerRepository;
+    private final CustomerCache customerCache;
+    private final IdGenerator idGenerator;
+    private final RegistrationMetrics registrationMetrics;
+    private final CustomerSearchIndex customerSearchIndex;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public CustomerImportService(CustomerRepository customerRepository,
+                                 CustomerCache customerCache,
+                                 IdGenerator idGenerator,
+                                 RegistrationMetrics registrationMetrics,
+                                 CustomerSearchIndex customerSearchIndex,
+                                 EntityManager entityManager,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${customer.import.chunk-size:500}") int chunkSize) {
+        this.customerRepository = customerRepository;
+        this.customerCache = customerCache;
+        this.idGenerator = idGenerator;
+        this.registrationMetrics = registrationMetrics;
+        this.customerSearchIndex = customerSearchIndex;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param results receives one result per line, in line order, as soon as the line's chunk is done
+     * @return the number of lines imported
+     */
+    public long importCustomers(Iterator<CustomerImportLine> lines, Consumer<CustomerImportResult> results) {
+        long imported = 0;
+        List<CustomerImportLine> chunk = new ArrayList<>(chunkSize);
+        while (lines.hasNext()) {
+            chunk.add(lines.next());
+            if (chunk.size() == chunkSize) {
+                importChunk(chunk, results);
+                imported += chunk.size();
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, results);
+            imported += chunk.size();
+        }
+        return imported;
+    }
+
+    private void importChunk(List<CustomerImportLine> chunk, Consumer<CustomerImportResult> results) {
+        CustomerImportResult[] outcomes = new CustomerImportResult[chunk.size()];
+        String[] normalizedPhoneNumbers = new String[chunk.size()];
+
+        // 1. validate and resolve numbers already known to the cache
+        Map<String, CustomerSummary> registered = new HashMap<>();
+        List<String> unresolved = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            CustomerImportLine line = chunk.get(i);
+            if (line.getError() != null) {
+                outcomes[i] = CustomerImportResult.invalid(line.getLineNumber(), line.getError());
+            } else if (isBlank(line.getName()) || isBlank(line.getPhoneNumber())) {
+                outcomes[i] = CustomerImportResult.invalid(line.getLineNumber(), "name and phoneNumber are required");
+            } else {
+                String normalizedPhoneNumber = PhoneNumbers.normalize(line.getPhoneNumber());
+                normalizedPhoneNumbers[i] = normalizedPhoneNumber;
+                if (!registered.containsKey(normalizedPhoneNumber)) {
+                    CustomerSummary cached = customerCache.getByPhoneNumber(normalizedPhoneNumber).orElse(null);
+                    registered.put(normalizedPhoneNumber, cached);
+                    if (cached == null) {
+                        unresolved.add(normalizedPhoneNumber);
+                    }
+                }
+            }
+        }
+
+        // 2. one query for every number the cache did not know, on the primary as it decides what is inserted
+        if (!unresolved.isEmpty()) {
+            List<RegisteredPhoneNumber> found = ReplicaRouting.onPrimary(
+                    () -> customerRepository.findByNormalizedPhoneNumberIn(unresolved));
+            for (RegisteredPhoneNumber customer : found) {
+                registered.put(customer.getNormalizedPhoneNumber(), customer);
+                customerCache.put(customer.getNormalizedPhoneNumber(), customer);
+            }
+        }
+
+        // 3. the first line claiming a free number registers it, later lines in the chunk see it as taken
+        List<Customer> newCustomers = new ArrayList<>();
+        List<Integer> newCustomerLines = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            if (outcomes[i] != null) {
+                continue;
+            }
+            CustomerImportLine line = chunk.get(i);
+            CustomerSummary existing = registered.get(normalizedPhoneNumbers[i]);
+            if (existing == null) {
+                Customer customer = new Customer(idGenerator.generateId(), line.getName(), line.getPhoneNumber());
+                registered.put(normalizedPhoneNumbers[i], new ImportedCustomer(customer));
+                newCustomers.add(customer);
+                newCustomerLines.add(i);
+            } else if (existing.getName().equals(line.getName())) {
+                registrationMetrics.alreadyRegistered();
+                outcomes[i] = CustomerImportResult.alreadyRegistered(line.getLineNumber(), existing.getId());
+            } else {
+                registrationMetrics.phoneNumberTaken();
+                outcomes[i] = CustomerImportResult.phoneNumberTaken(line.getLineNumber(), line.getPhoneNumber());
+            }
+        }
+
+        // 4. insert the chunk's new customers together
+        if (!newCustomers.isEmpty()) {
+            if (!insert(newCustomers)) {
+                // a number was registered concurrently, find out which one by inserting one customer at a time
+                for (int n = 0; n < newCustomers.size(); n++) {
+                    Customer customer = newCustomers.get(n);
+                    int i = newCustomerLines.get(n);
+                    if (!insert(List.of(customer))) {
+                        registrationMetrics.phoneNumberTaken();
+                        outcomes[i] = CustomerImportResult.phoneNumberTaken(
+                                chunk.get(i).getLineNumber(), customer.getPhoneNumber());
+                    }
+                }
+            }
+            List<Customer> registeredCustomers = new ArrayList<>(newCustomers.size());
+            for (int n = 0; n < newCustomers.size(); n++) {
+                Customer customer = newCustomers.get(n);
+                int i = newCustomerLines.get(n);
+                if (outcomes[i] == null) {
+                    customerCache.put(customer);
+                    registeredCustomers.add(customer);
+                    registrationMetrics.registered();
+                    outcomes[i] = CustomerImportResult.registered(chunk.get(i).getLineNumber(), customer.getId());
+                }
+            }
+            customerSearchIndex.addAll(registeredCustomers);
+        }
+
+        for (CustomerImportResult outcome : outcomes) {
+            results.accept(outcome);
+        }
+    }
+
+    // persist rather than save, save would merge and select every customer first as ids are assigned here
+    private boolean insert(List<Customer> customers) {
+        try {
+            transactionTemplate.execute(status -> {
+                customers.forEach(entityManager::persist);
+                entityManager.flush();
+                entityManager.clear();
+                return null;
+            });
+            return true;
+        } catch (PersistenceException e) {
+            return false;
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static final class ImportedCustomer implements CustomerSummary {
+
+        private final Customer customer;
+
+        private ImportedCustomer(Customer customer) {
+            this.customer = customer;
+        }
+
+        @Override
+        public UUID getId() {
+            return customer.getId();
+        }
+
+        @Override
+        public String getName() {
+            return customer.getName();
+        }
+    }
+}
@@ -1,20 +1,55 @@
 package com.amigoscode.customerapitdd.service;
 
+import com.amigoscode.customerapitdd.cache.CustomerCache;
 import com.amigoscode.customerapitdd.dto.CustomerRequest;
+import com.amigoscode.customerapitdd.dto.CustomerSummary;
+import com.amigoscode.customerapitdd.interfaces.IdGenerator;
+import com.amigoscode.customerapitdd.metrics.RegistrationMetrics;
 import com.amigoscode.customerapitdd.model.Customer;
+import com.amigoscode.customerapitdd.model.PhoneNumbers;
+import com.amigoscode.customerapitdd.replica.ReadYourWritesPins;
+import com.amigoscode.customerapitdd.replica.ReplicaRouting;
 import com.amigoscode.customerapitdd.repository.CustomerRepository;
+import com.amigoscode.customerapitdd.search.CustomerSearchIndex;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
-import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Registers customers by phone number. Concurrent registrations of one number, such as a double submit,
+ * are coalesced: the first does the lookup and the insert, the others wait for it and only compare names.
+ */
 @Service
 public class CustomerService {
 
     private final CustomerRepository customerRepository;
+    private final CustomerCache customerCache;
+    private final IdGenerator idGenerator;
+    private final RegistrationMetrics registrationMetrics;
+    private final ReadYourWritesPins readYourWritesPins;
+    private final CustomerSearchIndex customerSearchIndex;
+    // keyed by normalized phone number, only the map bin of the number is locked while joining
+    private final ConcurrentMap<String, CompletableFuture<CustomerSummary>> inFlightRegistrations =
+            new ConcurrentHashMap<>();
 
-    public CustomerService(CustomerRepository customerRepository) {
+    public CustomerService(CustomerRepository customerRepository,
+                           CustomerCache customerCache,
+                           IdGenerator idGenerator,
+                           RegistrationMetrics registrationMetrics,
+                           ReadYourWritesPins readYourWritesPins,
+                           CustomerSearchIndex customerSearchIndex) {
         this.customerRepository = customerRepository;
+        this.customerCache = customerCache;
+        this.idGenerator = idGenerator;
+        this.registrationMetrics = registrationMetrics;
+        this.readYourWritesPins = readYourWritesPins;
+        this.customerSearchIndex = customerSearchIndex;
     }
 
     public void registerNewCustomer(CustomerRequest request) {
@@ -23,21 +58,107 @@ public class CustomerService {
         // - 2.1 if yes return
         // - 2.2 thrown an exception
         // 3. save customer
-        String phoneNumber = request.getCustomer().getPhoneNumber();
+        Customer customer = request.getCustomer();
+        String normalizedPhoneNumber = PhoneNumbers.normalize(customer.getPhoneNumber());
 
-        Optional<Customer> optional = customerRepository.selectCustomerByPhoneNumber(phoneNumber);
+        long start = System.nanoTime();
+        Optional<CustomerSummary> cached = customerCache.getByPhoneNumber(normalizedPhoneNumber);
+        if (cached.isPresent()) {
+            registrationMetrics.recordPhoneNumberLookup(start);
+            checkSameCustomer(cached.get(), customer);
+            return;
+        }
+
+        while (true) {
+            CompletableFuture<CustomerSummary> registration = new CompletableFuture<>();
+            CompletableFuture<CustomerSummary> inFlight =
+                    inFlightRegistrations.putIfAbsent(normalizedPhoneNumber, registration);
+            if (inFlight == null) {
+                register(customer, normalizedPhoneNumber, registration);
+                return;
+            }
+            // a concurrent registration of the number does the lookup and insert, this one only compares names
+            Optional<CustomerSummary> holder = outcomeOf(inFlight);
+            if (holder.isPresent()) {
+                checkSameCustomer(holder.get(), customer);
+                return;
+            }
+            // it failed without deciding who holds the number, try again, possibly as the one doing the insert
+        }
+    }
+
+    private void register(Customer customer,
+                          String normalizedPhoneNumber,
+                          CompletableFuture<CustomerSummary> registration) {
+        try {
+            long start = System.nanoTime();
+            Optional<CustomerSummary> optional = selectCustomerByPhoneNumber(normalizedPhoneNumber);
+            registrationMetrics.recordPhoneNumberLookup(start);
 
-        if (optional.isPresent()) {
-            Customer customer = optional.get();
-            if (customer.getName().equals(request.getCustomer().getName())) {
+            if (optional.isPresent()) {
+                registration.complete(optional.get());
+                checkSameCustomer(optional.get(), customer);
                 return;
             }
-            throw new IllegalStateException(String.format("phone number [%s] is taken", phoneNumber));
+
+            if (customer.getId() == null) {
+                customer.setId(idGenerator.generateId());
+            }
+            start = System.nanoTime();
+            try {
+                customerRepository.save(customer);
+            } catch (DataIntegrityViolationException e) {
+                // another instance inserted the number after our lookup, or before it on a replica lagging behind
+                customerCache.invalidate(customer);
+                Optional<CustomerSummary> holder = ReplicaRouting.onPrimary(
+                        () -> customerRepository.findByNormalizedPhoneNumber(normalizedPhoneNumber));
+                if (holder.isPresent() && holder.get().getName().equals(customer.getName())) {
+                    customerCache.put(normalizedPhoneNumber, holder.get());
+                    registration.complete(holder.get());
+                    registrationMetrics.alreadyRegistered();
+                    return;
+                }
+                registrationMetrics.phoneNumberTaken();
+                throw new IllegalStateException(
+                        String.format("phone number [%s] is taken", customer.getPhoneNumber()), e);
+            } catch (RuntimeException e) {
+                customerCache.invalidate(customer);
+                throw e;
+            } finally {
+                registrationMetrics.recordCustomerSave(start);
+            }
+            readYourWritesPins.pin(customer.getId());
+            customerSearchIndex.add(customer);
+            registration.complete(customerCache.put(customer));
+            registrationMetrics.registered();
+        } catch (RuntimeException e) {
+            registration.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightRegistrations.remove(normalizedPhoneNumber, registration);
         }
+    }
 
-        if (request.getCustomer().getId() == null) {
-            request.getCustomer().setId(UUID.randomUUID());
+    private void checkSameCustomer(CustomerSummary holder, Customer customer) {
+        if (holder.getName().equals(customer.getName())) {
+            registrationMetrics.alreadyRegistered();
+            return;
         }
-        customerRepository.save(request.getCustomer());
+        registrationMetrics.phoneNumberTaken();
+        throw new IllegalStateException(String.format("phone number [%s] is taken", customer.getPhoneNumber()));
+    }
+
+    private static Optional<CustomerSummary> outcomeOf(CompletableFuture<CustomerSummary> registration) {
+        try {
+            return Optional.of(registration.join());
+        } catch (CompletionException | CancellationException e) {
+            return Optional.empty();
+        }
+    }
+
+    private Optional<CustomerSummary> selectCustomerByPhoneNumber(String normalizedPhoneNumber) {
+        Optional<CustomerSummary> optional = customerRepository.findByNormalizedPhoneNumber(normalizedPhoneNumber);
+        optional.ifPresent(customer -> customerCache.put(normalizedPhoneNumber, customer));
+        return optional;
     }
 }
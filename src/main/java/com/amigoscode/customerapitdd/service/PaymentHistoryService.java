@@ -0,0 +1,51 @@
+package com.amigoscode.customerapitdd.service;
+
+import com.amigoscode.customerapitdd.interfaces.PaymentStore;
+import com.amigoscode.customerapitdd.model.Payment;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Walks a customer's payments in paymentId order one keyset page at a time, so only a single page
+ * of entities is ever held in memory regardless of how long the history is.
+ */
+@Service
+public class PaymentHistoryService {
+
+    private final PaymentStore paymentStore;
+    private final int pageSize;
+
+    public PaymentHistoryService(PaymentStore paymentStore,
+                                 @Value("${payment.history.page-size:500}") int pageSize) {
+        this.paymentStore = paymentStore;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * @param afterPaymentId exclusive cursor, pass the last paymentId seen to resume
+     * @param limit          maximum number of payments to visit, or a negative value for all of them
+     * @return the number of payments visited
+     */
+    public long forEachPayment(UUID customerId, long afterPaymentId, long limit, Consumer<Payment> consumer) {
+        long visited = 0;
+        long cursor = afterPaymentId;
+        while (limit < 0 || visited < limit) {
+            int size = limit < 0 ? pageSize : (int) Math.min(pageSize, limit - visited);
+            List<Payment> page = paymentStore.selectPaymentPage(customerId, cursor, PageRequest.of(0, size));
+            for (Payment payment : page) {
+                consumer.accept(payment);
+            }
+            visited += page.size();
+            if (page.size() < size) {
+                break;
+            }
+            cursor = page.get(page.size() - 1).getPaymentId();
+        }
+        return visited;
+    }
+}
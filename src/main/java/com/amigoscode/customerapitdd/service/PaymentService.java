@@ -1,66 +1,413 @@
 package com.amigoscode.customerapitdd.service;
 
+import com.amigoscode.customerapitdd.aggregate.PaymentAggregates;
+import com.amigoscode.customerapitdd.cache.CustomerCache;
+import com.amigoscode.customerapitdd.cache.PaymentIdempotencyStore;
+import com.amigoscode.customerapitdd.dto.BatchPaymentRequest;
+import com.amigoscode.customerapitdd.dto.BatchPaymentResult;
 import com.amigoscode.customerapitdd.dto.PaymentRequest;
-import com.amigoscode.customerapitdd.interfaces.CardCharger;
+import com.amigoscode.customerapitdd.interfaces.AsyncCardCharger;
+import com.amigoscode.customerapitdd.interfaces.PaymentRecorder;
+import com.amigoscode.customerapitdd.metrics.PaymentMetrics;
+import com.amigoscode.customerapitdd.metrics.PaymentMetrics.Outcome;
+import com.amigoscode.customerapitdd.metrics.PaymentMetrics.Step;
 import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.model.Customer;
+import com.amigoscode.customerapitdd.model.Payment;
+import com.amigoscode.customerapitdd.policy.CurrencyPolicies;
+import com.amigoscode.customerapitdd.policy.CurrencyPolicy;
+import com.amigoscode.customerapitdd.replica.ReadYourWritesPins;
 import com.amigoscode.customerapitdd.repository.CustomerRepository;
-import com.amigoscode.customerapitdd.repository.PaymentRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 @Service
 public class PaymentService {
 
-    private static final List<Currency> ACCEPTED_CURRENCIES = List.of(Currency.USD, Currency.GBP);
+    private static final int BATCH_CHARGE_CONCURRENCY = 8;
 
     private final CustomerRepository customerRepository;
-    private final PaymentRepository paymentRepository;
-    private final CardCharger cardCharger;
+    private final PaymentRecorder paymentRecorder;
+    private final CurrencyPolicies currencyPolicies;
+    private final AsyncCardCharger asyncCardCharger;
+    private final CustomerCache customerCache;
+    private final ReadYourWritesPins readYourWritesPins;
+    private final PaymentIdempotencyStore idempotencyStore;
+    private final PaymentMetrics paymentMetrics;
+    private final PaymentAggregates paymentAggregates;
+    private final ExecutorService batchCardChargerExecutor;
 
     @Autowired
     public PaymentService(CustomerRepository customerRepository,
-                          PaymentRepository paymentRepository,
-                          CardCharger cardCharger) {
+                          PaymentRecorder paymentRecorder,
+                          CurrencyPolicies currencyPolicies,
+                          AsyncCardCharger asyncCardCharger,
+                          CustomerCache customerCache,
+                          ReadYourWritesPins readYourWritesPins,
+                          PaymentIdempotencyStore idempotencyStore,
+                          PaymentMetrics paymentMetrics,
+                          PaymentAggregates paymentAggregates,
+                          @Qualifier("batchCardChargerExecutor") ExecutorService batchCardChargerExecutor) {
         this.customerRepository = customerRepository;
-        this.paymentRepository = paymentRepository;
-        this.cardCharger = cardCharger;
+        this.paymentRecorder = paymentRecorder;
+        this.currencyPolicies = currencyPolicies;
+        this.asyncCardCharger = asyncCardCharger;
+        this.customerCache = customerCache;
+        this.readYourWritesPins = readYourWritesPins;
+        this.idempotencyStore = idempotencyStore;
+        this.paymentMetrics = paymentMetrics;
+        this.paymentAggregates = paymentAggregates;
+        this.batchCardChargerExecutor = batchCardChargerExecutor;
     }
 
-    void chargeCard(UUID customerId, PaymentRequest paymentRequest) {
-        // 1. Does customer exists if not, throw
-        boolean isCustomerFound  = customerRepository.findById(customerId).isPresent();
+    Payment chargeCard(UUID customerId, PaymentRequest paymentRequest) {
+        // 0. a retried request is answered with the stored payment
+        Optional<Payment> replay = replayOrBegin(customerId, paymentRequest.getPayment());
+        if (replay.isPresent()) {
+            return replay.get();
+        }
+
+        String idempotencyKey = paymentRequest.getPayment().getIdempotencyKey();
+        CurrencyPolicy currencyPolicy = currencyPolicies.current();
+        try {
+            // 1. Does customer exists if not, throw
+            // 2. do we support the currency and amount if not throw
+            validatePayment(customerId, paymentRequest.getPayment(), currencyPolicy);
+
+            // 3. charge card
+            long chargeStart = System.nanoTime();
+            CardPaymentCharge cardPaymentCharge;
+            try {
+                cardPaymentCharge = currencyPolicy.cardChargerFor(paymentRequest.getPayment().getCurrency()).chargeCard(
+                        paymentRequest.getPayment().getSource(),
+                        paymentRequest.getPayment().getMoney(),
+                        paymentRequest.getPayment().getDescription()
+                );
+            } catch (RuntimeException e) {
+                paymentMetrics.recordOutcome(paymentRequest.getPayment().getCurrency(), Outcome.FAILED);
+                throw e;
+            } finally {
+                paymentMetrics.recordStep(paymentRequest.getPayment().getCurrency(), Step.CARD_CHARGE, chargeStart);
+            }
+
+            // 4. if not debited, throw
+            // 5. insert payment, the SMS goes out through the outbox written with it
+            recordPayment(customerId, paymentRequest.getPayment(), cardPaymentCharge);
+        } catch (RuntimeException e) {
+            abort(idempotencyKey);
+            throw e;
+        }
+        complete(idempotencyKey, paymentRequest.getPayment());
+        return paymentRequest.getPayment();
+    }
+
+    public CompletableFuture<Payment> chargeCardAsync(UUID customerId, PaymentRequest paymentRequest) {
+        Payment payment = paymentRequest.getPayment();
+        try {
+            Optional<Payment> replay = replayOrBegin(customerId, payment);
+            if (replay.isPresent()) {
+                return CompletableFuture.completedFuture(replay.get());
+            }
+        } catch (IllegalStateException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        String idempotencyKey = payment.getIdempotencyKey();
+        try {
+            validatePayment(customerId, payment, currencyPolicies.current());
+        } catch (IllegalStateException e) {
+            abort(idempotencyKey);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        // the calling thread is released here, the payment is recorded once the card network answers
+        long chargeStart = System.nanoTime();
+        return asyncCardCharger.chargeCard(
+                payment.getSource(),
+                payment.getMoney(),
+                payment.getDescription()
+        ).whenComplete((cardPaymentCharge, e) -> {
+            paymentMetrics.recordStep(payment.getCurrency(), Step.CARD_CHARGE, chargeStart);
+            if (e != null) {
+                paymentMetrics.recordOutcome(payment.getCurrency(), Outcome.FAILED);
+            }
+        }).thenApply(cardPaymentCharge -> {
+            recordPayment(customerId, payment, cardPaymentCharge);
+            complete(idempotencyKey, payment);
+            return payment;
+        }).whenComplete((recorded, e) -> {
+            if (e != null) {
+                abort(idempotencyKey);
+            }
+        });
+    }
+
+    /**
+     * Returns the stored payment when the idempotency key was already charged,
+     * otherwise marks the key as in flight until {@link #complete} or {@link #abort}.
+     */
+    private Optional<Payment> replayOrBegin(UUID customerId, Payment payment) {
+        String idempotencyKey = payment.getIdempotencyKey();
+        if (idempotencyKey == null) {
+            return Optional.empty();
+        }
+        Optional<Payment> completed = idempotencyStore.findCompleted(idempotencyKey);
+        if (completed.isPresent()) {
+            if (!completed.get().getCustomerId().equals(customerId)) {
+                throw new IllegalStateException(String.format(
+                        "idempotency key [%s] belongs to another customer", idempotencyKey));
+            }
+            paymentMetrics.recordOutcome(payment.getCurrency(), Outcome.REPLAYED);
+            return completed;
+        }
+        if (!idempotencyStore.begin(idempotencyKey)) {
+            throw new IllegalStateException(String.format(
+                    "payment with idempotency key [%s] is in progress", idempotencyKey));
+        }
+        return Optional.empty();
+    }
+
+    private void complete(String idempotencyKey, Payment payment) {
+        if (idempotencyKey != null) {
+            idempotencyStore.complete(idempotencyKey, payment);
+        }
+    }
+
+    private void abort(String idempotencyKey) {
+        if (idempotencyKey != null) {
+            idempotencyStore.abort(idempotencyKey);
+        }
+    }
+
+    private void validatePayment(UUID customerId, Payment payment, CurrencyPolicy currencyPolicy) {
+        long start = System.nanoTime();
+        boolean isCustomerFound = isCustomerFound(customerId);
+        paymentMetrics.recordStep(payment.getCurrency(), Step.CUSTOMER_LOOKUP, start);
         if (!isCustomerFound) {
+            paymentMetrics.recordOutcome(payment.getCurrency(), Outcome.CUSTOMER_NOT_FOUND);
             throw new IllegalStateException(String.format("customer with id [%s] not found", customerId));
         }
 
-        // 2. do we support the currency if not throw
-        boolean isCurrencySupported = ACCEPTED_CURRENCIES.contains(paymentRequest.getPayment().getCurrency());
+        start = System.nanoTime();
+        boolean isCurrencySupported = currencyPolicy.accepts(payment.getCurrency());
+        boolean isAmountAllowed = currencyPolicy.isWithinLimits(payment.getCurrency(), payment.getAmount());
+        paymentMetrics.recordStep(payment.getCurrency(), Step.CURRENCY_CHECK, start);
 
         if (!isCurrencySupported) {
-            String message = String.format("currency [%s] not supported", paymentRequest.getPayment().getCurrency());
+            paymentMetrics.recordOutcome(payment.getCurrency(), Outcome.CURRENCY_NOT_SUPPORTED);
+            String message = String.format("currency [%s] not supported", payment.getCurrency());
             throw new IllegalStateException(message);
         }
+        if (!isAmountAllowed) {
+            paymentMetrics.recordOutcome(payment.getCurrency(), Outcome.AMOUNT_NOT_ALLOWED);
+            throw new IllegalStateException(amountNotAllowedMessage(payment));
+        }
+    }
 
-        // 3. charge card
-        CardPaymentCharge cardPaymentCharge = cardCharger.chargeCard(
-                paymentRequest.getPayment().getSource(),
-                paymentRequest.getPayment().getAmount(),
-                paymentRequest.getPayment().getCurrency(),
-                paymentRequest.getPayment().getDescription()
-        );
+    private static String amountNotAllowedMessage(Payment payment) {
+        return String.format("amount [%s] not allowed for currency [%s]",
+                payment.getMoney().toBigDecimal(), payment.getCurrency());
+    }
 
-        // 4. if not debited, throw
+    private void recordPayment(UUID customerId, Payment payment, CardPaymentCharge cardPaymentCharge) {
         if (!cardPaymentCharge.isCardDebited()) {
+            paymentMetrics.recordOutcome(payment.getCurrency(), Outcome.CARD_NOT_DEBITED);
             throw new IllegalStateException(String.format("card not debited for customer [%s]", customerId));
         }
 
-        // 5. insert payment
-        paymentRequest.getPayment().setCustomerId(customerId);
-        paymentRepository.save(paymentRequest.getPayment());
+        payment.setCustomerId(customerId);
+        long start = System.nanoTime();
+        try {
+            paymentRecorder.save(payment);
+        } catch (RuntimeException e) {
+            paymentMetrics.recordOutcome(payment.getCurrency(), Outcome.FAILED);
+            throw e;
+        } finally {
+            paymentMetrics.recordStep(payment.getCurrency(), Step.PAYMENT_SAVE, start);
+        }
+        paymentMetrics.recordOutcome(payment.getCurrency(), Outcome.CHARGED);
+        paymentAggregates.record(payment);
+    }
+
+    private boolean isCustomerFound(UUID customerId) {
+        if (customerCache.isKnownCustomer(customerId)) {
+            return true;
+        }
+        // a customer registered moments ago may not have reached the replicas yet
+        boolean isCustomerFound = readYourWritesPins.readFor(
+                customerId, () -> customerRepository.existsById(customerId));
+        if (isCustomerFound) {
+            customerCache.markKnownCustomer(customerId);
+        }
+        return isCustomerFound;
+    }
+
+    public List<BatchPaymentResult> chargeCards(List<BatchPaymentRequest> requests) {
+        if (requests.isEmpty()) {
+            return List.of();
+        }
+        BatchPaymentResult[] results = new BatchPaymentResult[requests.size()];
+
+        // 1. look up every customer of the batch in a single query
+        Set<UUID> existingCustomerIds = new HashSet<>();
+        Set<UUID> customerIds = requests.stream()
+                .filter(Objects::nonNull)
+                .map(BatchPaymentRequest::getCustomerId)
+                .filter(Objects::nonNull)
+                .filter(customerId -> {
+                    if (customerCache.isKnownCustomer(customerId)) {
+                        existingCustomerIds.add(customerId);
+                        return false;
+                    }
+                    return true;
+                })
+                .collect(Collectors.toSet());
+        if (!customerIds.isEmpty()) {
+            Iterable<Customer> customers = readYourWritesPins.readFor(
+                    customerIds, () -> customerRepository.findAllById(customerIds));
+            customers.forEach(customer -> {
+                existingCustomerIds.add(customer.getId());
+                customerCache.markKnownCustomer(customer.getId());
+            });
+        }
+
+        // 2. answer replays, reject unknown customers, unsupported currencies and amounts without aborting the batch
+        CurrencyPolicy currencyPolicy = currencyPolicies.current();
+        List<Integer> chargeable = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            if (requests.get(i) == null || requests.get(i).getPayment() == null) {
+                UUID customerId = requests.get(i) == null ? null : requests.get(i).getCustomerId();
+                results[i] = BatchPaymentResult.failed(i, customerId, "payment is required");
+                continue;
+            }
+            UUID customerId = requests.get(i).getCustomerId();
+            Currency currency = requests.get(i).getPayment().getCurrency();
+            Optional<Payment> replay;
+            try {
+                replay = replayOrBegin(customerId, requests.get(i).getPayment());
+            } catch (IllegalStateException e) {
+                results[i] = BatchPaymentResult.failed(i, customerId, e.getMessage());
+                continue;
+            }
+            if (replay.isPresent()) {
+                results[i] = BatchPaymentResult.charged(i, customerId);
+                continue;
+            }
+            if (!existingCustomerIds.contains(customerId)) {
+                paymentMetrics.recordOutcome(currency, Outcome.CUSTOMER_NOT_FOUND);
+                results[i] = BatchPaymentResult.failed(i, customerId,
+                        String.format("customer with id [%s] not found", customerId));
+            } else if (!currencyPolicy.accepts(currency)) {
+                paymentMetrics.recordOutcome(currency, Outcome.CURRENCY_NOT_SUPPORTED);
+                results[i] = BatchPaymentResult.failed(i, customerId,
+                        String.format("currency [%s] not supported", currency));
+            } else if (!currencyPolicy.isWithinLimits(currency, requests.get(i).getPayment().getAmount())) {
+                paymentMetrics.recordOutcome(currency, Outcome.AMOUNT_NOT_ALLOWED);
+                results[i] = BatchPaymentResult.failed(i, customerId,
+                        amountNotAllowedMessage(requests.get(i).getPayment()));
+            } else {
+                chargeable.add(i);
+                continue;
+            }
+            abort(requests.get(i).getPayment().getIdempotencyKey());
+        }
+
+        // 3. charge cards on the batch card charger threads, a batch takes at most a few of them at a time
+        if (!chargeable.isEmpty()) {
+            AtomicInteger next = new AtomicInteger();
+            Runnable worker = () -> {
+                for (int n = next.getAndIncrement(); n < chargeable.size(); n = next.getAndIncrement()) {
+                    int index = chargeable.get(n);
+                    results[index] = chargeBatchItem(index, requests.get(index), currencyPolicy);
+                }
+            };
+            int concurrency = Math.min(BATCH_CHARGE_CONCURRENCY, chargeable.size());
+            CompletableFuture<?>[] workers = new CompletableFuture<?>[concurrency];
+            for (int w = 0; w < workers.length; w++) {
+                workers[w] = CompletableFuture.runAsync(worker, batchCardChargerExecutor);
+            }
+            CompletableFuture.allOf(workers).join();
+        }
+
+        // 4. insert every debited payment in one batch
+        List<Integer> debited = new ArrayList<>();
+        for (int index : chargeable) {
+            Payment payment = requests.get(index).getPayment();
+            if (results[index].isCharged()) {
+                payment.setCustomerId(results[index].getCustomerId());
+                debited.add(index);
+            } else {
+                abort(payment.getIdempotencyKey());
+            }
+        }
+        if (!debited.isEmpty()) {
+            List<Payment> payments = debited.stream()
+                    .map(index -> requests.get(index).getPayment())
+                    .collect(Collectors.toList());
+            try {
+                paymentRecorder.saveAll(payments);
+                payments.forEach(this::recordBatchPayment);
+            } catch (RuntimeException e) {
+                // the cards are charged, save one payment at a time so only the failing ones go unrecorded
+                for (int index : debited) {
+                    Payment payment = requests.get(index).getPayment();
+                    try {
+                        paymentRecorder.save(payment);
+                        recordBatchPayment(payment);
+                    } catch (RuntimeException saveFailure) {
+                        // the key stays in flight, a retry must not charge the card a second time
+                        paymentMetrics.recordOutcome(payment.getCurrency(), Outcome.FAILED);
+                        results[index] = BatchPaymentResult.notRecorded(index, payment.getCustomerId(),
+                                String.format("card charged but payment not recorded: %s", saveFailure.getMessage()));
+                    }
+                }
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private void recordBatchPayment(Payment payment) {
+        paymentMetrics.recordOutcome(payment.getCurrency(), Outcome.CHARGED);
+        paymentAggregates.record(payment);
+        complete(payment.getIdempotencyKey(), payment);
+    }
 
-        // TODO: SEND SMS
+    private BatchPaymentResult chargeBatchItem(int index, BatchPaymentRequest request, CurrencyPolicy currencyPolicy) {
+        UUID customerId = request.getCustomerId();
+        Payment payment = request.getPayment();
+        long start = System.nanoTime();
+        try {
+            CardPaymentCharge cardPaymentCharge = currencyPolicy.cardChargerFor(payment.getCurrency()).chargeCard(
+                    payment.getSource(),
+                    payment.getMoney(),
+                    payment.getDescription()
+            );
+            if (!cardPaymentCharge.isCardDebited()) {
+                paymentMetrics.recordOutcome(payment.getCurrency(), Outcome.CARD_NOT_DEBITED);
+                return BatchPaymentResult.failed(index, customerId,
+                        String.format("card not debited for customer [%s]", customerId));
+            }
+            return BatchPaymentResult.charged(index, customerId);
+        } catch (RuntimeException e) {
+            paymentMetrics.recordOutcome(payment.getCurrency(), Outcome.FAILED);
+            return BatchPaymentResult.failed(index, customerId, e.getMessage());
+        } finally {
+            paymentMetrics.recordStep(payment.getCurrency(), Step.CARD_CHARGE, start);
+        }
     }
 }
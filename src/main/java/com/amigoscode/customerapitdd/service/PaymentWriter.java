@@ -0,0 +1,57 @@
+package com.amigoscode.customerapitdd.service;
+
+import com.amigoscode.customerapitdd.interfaces.PaymentRecorder;
+import com.amigoscode.customerapitdd.interfaces.PaymentStore;
+import com.amigoscode.customerapitdd.model.Payment;
+import com.amigoscode.customerapitdd.model.SmsNotification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Inserts payments together with their pending SMS notification in one transaction (transactional outbox),
+ * the SMS itself is sent later by the outbox dispatcher so the payment never waits on the SMS provider.
+ * The payment store queues the notification in the database the payment goes to, its shard when sharded.
+ */
+@Service
+public class PaymentWriter implements PaymentRecorder {
+
+    private final PaymentStore paymentStore;
+
+    public PaymentWriter(PaymentStore paymentStore) {
+        this.paymentStore = paymentStore;
+    }
+
+    @Override
+    @Transactional
+    public void save(Payment payment) {
+        payment.setCreatedAt(Instant.now());
+        paymentStore.save(payment, PaymentWriter::notificationFor);
+    }
+
+    @Override
+    @Transactional
+    public void saveAll(List<Payment> payments) {
+        Instant now = Instant.now();
+        payments.forEach(payment -> payment.setCreatedAt(now));
+        paymentStore.saveAll(payments, PaymentWriter::notificationFor);
+    }
+
+    /**
+     * Writes payments acknowledged earlier, which already carry their id and creation time. Payments
+     * already stored are skipped, so only the ones written get their SMS queued.
+     *
+     * @return the payments written
+     */
+    @Transactional
+    public List<Payment> saveAcknowledged(List<Payment> payments) {
+        return paymentStore.insertMissing(payments, PaymentWriter::notificationFor);
+    }
+
+    private static SmsNotification notificationFor(Payment payment) {
+        String message = String.format("Payment of %s received. %s", payment.getMoney(), payment.getDescription());
+        return new SmsNotification(payment.getPaymentId(), payment.getCustomerId(), message);
+    }
+}
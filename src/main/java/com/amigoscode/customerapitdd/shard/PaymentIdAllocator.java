@@ -0,0 +1,30 @@
+package com.amigoscode.customerapitdd.shard;
+
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+
+/**
+ * Hands out payment ids from the same pooled-lo sequence the payment entity uses, so ids stay unique
+ * across shards and never collide with payments written before sharding was turned on.
+ * Each sequence call reserves {@code allocationSize} ids, which must match the sequence increment.
+ */
+public class PaymentIdAllocator {
+
+    private final DataFieldMaxValueIncrementer sequence;
+    private final int allocationSize;
+
+    private long next;
+    private long limit;
+
+    public PaymentIdAllocator(DataFieldMaxValueIncrementer sequence, int allocationSize) {
+        this.sequence = sequence;
+        this.allocationSize = allocationSize;
+    }
+
+    public synchronized long nextId() {
+        if (next == limit) {
+            next = sequence.nextLongValue();
+            limit = next + allocationSize;
+        }
+        return next++;
+    }
+}
@@ -0,0 +1,185 @@
+package com.amigoscode.customerapitdd.shard;
+
+import com.amigoscode.customerapitdd.dto.PaymentTotals;
+import com.amigoscode.customerapitdd.interfaces.SmsOutbox;
+import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.model.Payment;
+import com.amigoscode.customerapitdd.model.SmsNotification;
+import com.amigoscode.customerapitdd.repository.PaymentRows;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * One database holding the payments of the customers routed to it. Uses the same payment table
+ * layout as the entity mapping, written with plain JDBC since every shard has its own connection pool.
+ * The SMS notifications of those payments are queued in an outbox table of the shard, in the transaction
+ * inserting the payment.
+ */
+public class PaymentShard implements SmsOutbox, AutoCloseable {
+
+    private static final String INSERT_NOTIFICATION =
+            "INSERT INTO sms_notification (payment_id, customer_id, message, status, attempts) VALUES (?, ?, ?, ?, 0)";
+
+    private static final String CLAIMABLE = "(status = 'PENDING' OR (status = 'SENDING' AND claimed_until < :now))";
+
+    private static final RowMapper<SmsNotification> NOTIFICATION_ROW_MAPPER = (rs, rowNum) -> {
+        SmsNotification notification = new SmsNotification(
+                rs.getLong("payment_id"), rs.getObject("customer_id", UUID.class), rs.getString("message"));
+        notification.setId(rs.getLong("id"));
+        notification.setStatus(SmsNotification.Status.valueOf(rs.getString("status")));
+        notification.setAttempts(rs.getInt("attempts"));
+        notification.setClaimToken(rs.getObject("claim_token", UUID.class));
+        Timestamp claimedUntil = rs.getTimestamp("claimed_until");
+        notification.setClaimedUntil(claimedUntil != null ? claimedUntil.toInstant() : null);
+        return notification;
+    };
+
+    private final int index;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public PaymentShard(int index, DataSource dataSource) {
+        this.index = index;
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    public void createSchema() {
+        new ResourceDatabasePopulator(new ClassPathResource("schema-payment-shard.sql")).execute(dataSource);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    void insert(List<Payment> payments, Function<Payment, SmsNotification> notification) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(PaymentRows.INSERT, payments, payments.size(), PaymentRows::bind);
+            insertNotifications(payments, notification);
+        });
+    }
+
+    /**
+     * Like {@link #insertMissing(List)}, queuing the notification of every payment inserted.
+     */
+    List<Payment> insertMissing(List<Payment> payments, Function<Payment, SmsNotification> notification) {
+        return transactionTemplate.execute(status -> {
+            List<Payment> inserted = PaymentRows.insertMissing(namedParameterJdbcTemplate, payments);
+            insertNotifications(inserted, notification);
+            return inserted;
+        });
+    }
+
+    /**
+     * Inserts the payments this shard does not hold yet, so a copy interrupted half way can be repeated.
+     *
+     * @return the payments inserted
+     */
+    List<Payment> insertMissing(List<Payment> payments) {
+        return transactionTemplate.execute(status -> PaymentRows.insertMissing(namedParameterJdbcTemplate, payments));
+    }
+
+    void delete(Collection<Long> paymentIds) {
+        namedParameterJdbcTemplate.update("DELETE FROM payment WHERE payment_id IN (:ids)", Map.of("ids", paymentIds));
+    }
+
+    /**
+     * Deletes payments inserted by {@link #insert(List, Function)} together with their notifications.
+     */
+    void undoInsert(Collection<Long> paymentIds) {
+        transactionTemplate.executeWithoutResult(status -> {
+            namedParameterJdbcTemplate.update(
+                    "DELETE FROM sms_notification WHERE payment_id IN (:ids)", Map.of("ids", paymentIds));
+            delete(paymentIds);
+        });
+    }
+
+    @Override
+    public List<SmsNotification> claim(int limit, Instant now, Instant claimedUntil) {
+        Timestamp nowTimestamp = Timestamp.from(now);
+        List<Long> ids = namedParameterJdbcTemplate.queryForList(
+                "SELECT id FROM sms_notification WHERE " + CLAIMABLE + " ORDER BY id LIMIT :limit",
+                Map.of("now", nowTimestamp, "limit", limit), Long.class);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        // rows another dispatcher claimed since they were selected no longer match and are skipped
+        UUID claimToken = UUID.randomUUID();
+        int claimed = namedParameterJdbcTemplate.update(
+                "UPDATE sms_notification SET status = 'SENDING', claim_token = :claimToken, claimed_until = :claimedUntil " +
+                "WHERE id IN (:ids) AND " + CLAIMABLE,
+                Map.of("claimToken", claimToken, "claimedUntil", Timestamp.from(claimedUntil),
+                        "ids", ids, "now", nowTimestamp));
+        return claimed == 0 ? List.of() : jdbcTemplate.query(
+                "SELECT * FROM sms_notification WHERE claim_token = ? ORDER BY id", NOTIFICATION_ROW_MAPPER, claimToken);
+    }
+
+    @Override
+    public void release(List<SmsNotification> notifications) {
+        jdbcTemplate.batchUpdate(
+                "UPDATE sms_notification SET status = ?, attempts = ?, claim_token = NULL, claimed_until = NULL WHERE id = ?",
+                notifications, notifications.size(), (ps, notification) -> {
+                    ps.setString(1, notification.getStatus().name());
+                    ps.setInt(2, notification.getAttempts());
+                    ps.setLong(3, notification.getId());
+                });
+    }
+
+    Optional<Payment> findByIdempotencyKey(String idempotencyKey) {
+        return jdbcTemplate.query("SELECT " + PaymentRows.COLUMNS + " FROM payment WHERE idempotency_key = ?",
+                PaymentRows.ROW_MAPPER, idempotencyKey).stream().findFirst();
+    }
+
+    List<Payment> selectPaymentPage(UUID customerId, long afterPaymentId, int limit) {
+        return jdbcTemplate.query("SELECT " + PaymentRows.COLUMNS + " FROM payment " +
+                        "WHERE customer_id = ? AND payment_id > ? ORDER BY payment_id LIMIT ?",
+                PaymentRows.ROW_MAPPER, customerId, afterPaymentId, limit);
+    }
+
+    List<Payment> selectPaymentPage(long afterPaymentId, int limit) {
+        return jdbcTemplate.query("SELECT " + PaymentRows.COLUMNS + " FROM payment WHERE payment_id > ? ORDER BY payment_id LIMIT ?",
+                PaymentRows.ROW_MAPPER, afterPaymentId, limit);
+    }
+
+    List<PaymentTotals> totalsByCurrency() {
+        return jdbcTemplate.query("SELECT currency, SUM(amount), COUNT(*) FROM payment GROUP BY currency",
+                (rs, rowNum) -> new PaymentTotals(Currency.values()[rs.getInt(1)], rs.getBigDecimal(2), rs.getLong(3)));
+    }
+
+    private void insertNotifications(List<Payment> payments, Function<Payment, SmsNotification> notification) {
+        List<SmsNotification> notifications = payments.stream().map(notification).collect(Collectors.toList());
+        jdbcTemplate.batchUpdate(INSERT_NOTIFICATION, notifications, notifications.size(), (ps, row) -> {
+            ps.setLong(1, row.getPaymentId());
+            ps.setObject(2, row.getCustomerId());
+            ps.setString(3, row.getMessage());
+            ps.setString(4, row.getStatus().name());
+        });
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (dataSource instanceof AutoCloseable) {
+            ((AutoCloseable) dataSource).close();
+        }
+    }
+}
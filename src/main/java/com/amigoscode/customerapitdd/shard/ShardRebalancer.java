@@ -0,0 +1,59 @@
+package com.amigoscode.customerapitdd.shard;
+
+import com.amigoscode.customerapitdd.model.Payment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Moves payments left on a shard the router no longer maps their customer to, as happens after a
+ * shard is appended. Each page is copied to its new shard before it is deleted from the old one, and the
+ * copy skips payments already there, so an interrupted run is finished by running it again.
+ * Until it finishes a moved customer's history misses the payments still waiting on the old shard.
+ */
+public class ShardRebalancer {
+
+    private final ShardedPaymentStore paymentStore;
+    private final int pageSize;
+
+    public ShardRebalancer(ShardedPaymentStore paymentStore, int pageSize) {
+        this.paymentStore = paymentStore;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * @return the number of payments moved
+     */
+    public long rebalance() {
+        ShardRouter router = paymentStore.getRouter();
+        List<PaymentShard> shards = paymentStore.getShards();
+        long moved = 0;
+        for (PaymentShard source : shards) {
+            long cursor = 0;
+            List<Payment> page;
+            do {
+                page = source.selectPaymentPage(cursor, pageSize);
+                Map<Integer, List<Payment>> misplaced = new TreeMap<>();
+                for (Payment payment : page) {
+                    int target = router.shardFor(payment.getCustomerId());
+                    if (target != source.getIndex()) {
+                        misplaced.computeIfAbsent(target, shard -> new ArrayList<>()).add(payment);
+                    }
+                }
+                for (Map.Entry<Integer, List<Payment>> entry : misplaced.entrySet()) {
+                    List<Long> paymentIds = new ArrayList<>(entry.getValue().size());
+                    entry.getValue().forEach(payment -> paymentIds.add(payment.getPaymentId()));
+                    shards.get(entry.getKey()).insertMissing(entry.getValue());
+                    source.delete(paymentIds);
+                    moved += paymentIds.size();
+                }
+                if (!page.isEmpty()) {
+                    cursor = page.get(page.size() - 1).getPaymentId();
+                }
+            } while (page.size() == pageSize);
+        }
+        return moved;
+    }
+}
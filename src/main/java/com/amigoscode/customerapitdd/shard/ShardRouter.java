@@ -0,0 +1,39 @@
+package com.amigoscode.customerapitdd.shard;
+
+import java.util.UUID;
+
+/**
+ * Maps a customer to one of {@code shardCount} shards with jump consistent hashing (Lamping and Veach).
+ * Appending a shard moves only about 1/shardCount of the customers, and every moved customer lands on
+ * the new shard, so shards must only ever be added at the end of the list.
+ */
+public class ShardRouter {
+
+    private final int shardCount;
+
+    public ShardRouter(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException(String.format("shard count [%s] must be positive", shardCount));
+        }
+        this.shardCount = shardCount;
+    }
+
+    public int shardFor(UUID customerId) {
+        return jumpConsistentHash(customerId.getMostSignificantBits() ^ customerId.getLeastSignificantBits(), shardCount);
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    static int jumpConsistentHash(long key, int buckets) {
+        long bucket = -1;
+        long next = 0;
+        while (next < buckets) {
+            bucket = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+}
@@ -0,0 +1,199 @@
+package com.amigoscode.customerapitdd.shard;
+
+import com.amigoscode.customerapitdd.dto.PaymentTotals;
+import com.amigoscode.customerapitdd.interfaces.PaymentStore;
+import com.amigoscode.customerapitdd.interfaces.SmsOutbox;
+import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.model.MinorUnits;
+import com.amigoscode.customerapitdd.model.Payment;
+import com.amigoscode.customerapitdd.model.SmsNotification;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Spreads payments over several databases by customer. Saves and a customer's history touch only the
+ * customer's shard, lookups by idempotency key and cross-customer reads query every shard in parallel
+ * and merge the results.
+ * <p>
+ * Shard writes commit on their own, outside the caller's transaction, each payment together with its SMS
+ * notification in the outbox table of its shard. A batch spanning several shards deletes what it already
+ * wrote when a later shard fails, so the batch still fails as a whole.
+ * <p>
+ * Idempotency keys are unique within a shard only, and a shard holds whole customers, so a key is scoped
+ * to a customer. Nothing stops customers on different shards from sending the same key, a lookup then
+ * finds the payment of whichever shard answers first and the payment service refuses it as belonging to
+ * another customer, so clients should derive keys per customer.
+ */
+public class ShardedPaymentStore implements PaymentStore, AutoCloseable {
+
+    private static final Comparator<Payment> BY_PAYMENT_ID = Comparator.comparingLong(Payment::getPaymentId);
+
+    private final List<PaymentShard> shards;
+    private final ShardRouter router;
+    private final PaymentIdAllocator idAllocator;
+    private final ExecutorService scatterExecutor;
+
+    public ShardedPaymentStore(List<PaymentShard> shards, PaymentIdAllocator idAllocator) {
+        this.shards = List.copyOf(shards);
+        this.router = new ShardRouter(shards.size());
+        this.idAllocator = idAllocator;
+        this.scatterExecutor = Executors.newFixedThreadPool(shards.size());
+    }
+
+    @Override
+    public void save(Payment payment, Function<Payment, SmsNotification> notification) {
+        payment.setPaymentId(idAllocator.nextId());
+        shardFor(payment.getCustomerId()).insert(List.of(payment), notification);
+    }
+
+    @Override
+    public void saveAll(List<Payment> payments, Function<Payment, SmsNotification> notification) {
+        Map<Integer, List<Payment>> paymentsByShard = new TreeMap<>();
+        for (Payment payment : payments) {
+            payment.setPaymentId(idAllocator.nextId());
+            paymentsByShard.computeIfAbsent(router.shardFor(payment.getCustomerId()), shard -> new ArrayList<>())
+                    .add(payment);
+        }
+        List<Map.Entry<Integer, List<Payment>>> written = new ArrayList<>(paymentsByShard.size());
+        try {
+            for (Map.Entry<Integer, List<Payment>> entry : paymentsByShard.entrySet()) {
+                shards.get(entry.getKey()).insert(entry.getValue(), notification);
+                written.add(entry);
+            }
+        } catch (RuntimeException e) {
+            for (Map.Entry<Integer, List<Payment>> entry : written) {
+                try {
+                    shards.get(entry.getKey()).undoInsert(
+                            entry.getValue().stream().map(Payment::getPaymentId).collect(Collectors.toList()));
+                } catch (RuntimeException undoFailure) {
+                    e.addSuppressed(undoFailure);
+                }
+            }
+            throw e;
+        }
+    }
+
+    // a shard failing leaves the others written, repeating the call completes the rest
+    @Override
+    public List<Payment> insertMissing(List<Payment> payments, Function<Payment, SmsNotification> notification) {
+        Map<Integer, List<Payment>> paymentsByShard = new TreeMap<>();
+        for (Payment payment : payments) {
+            paymentsByShard.computeIfAbsent(router.shardFor(payment.getCustomerId()), shard -> new ArrayList<>())
+                    .add(payment);
+        }
+        List<Payment> inserted = new ArrayList<>(payments.size());
+        for (Map.Entry<Integer, List<Payment>> entry : paymentsByShard.entrySet()) {
+            inserted.addAll(shards.get(entry.getKey()).insertMissing(entry.getValue(), notification));
+        }
+        return inserted;
+    }
+
+    @Override
+    public Optional<Payment> findByIdempotencyKey(String idempotencyKey) {
+        for (Optional<Payment> found : scatter(shard -> shard.findByIdempotencyKey(idempotencyKey))) {
+            if (found.isPresent()) {
+                return found;
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public List<Payment> selectPaymentPage(UUID customerId, long afterPaymentId, Pageable pageable) {
+        return shardFor(customerId).selectPaymentPage(customerId, afterPaymentId, pageable.getPageSize());
+    }
+
+    /**
+     * Takes a full page from every shard, the first page size payments of the merged pages are the next
+     * page overall.
+     */
+    @Override
+    public List<Payment> selectPaymentPage(long afterPaymentId, Pageable pageable) {
+        int limit = pageable.getPageSize();
+        return scatter(shard -> shard.selectPaymentPage(afterPaymentId, limit)).stream()
+                .flatMap(List::stream)
+                .sorted(BY_PAYMENT_ID)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Sums every shard in the database, unlike the in-memory aggregates this reflects writes made by
+     * other instances.
+     */
+    public List<PaymentTotals> totalsByCurrency() {
+        long[] minorUnits = new long[Currency.values().length];
+        long[] counts = new long[Currency.values().length];
+        for (List<PaymentTotals> shardTotals : scatter(PaymentShard::totalsByCurrency)) {
+            for (PaymentTotals totals : shardTotals) {
+                minorUnits[totals.getCurrency().ordinal()] += MinorUnits.of(totals.getAmount());
+                counts[totals.getCurrency().ordinal()] += totals.getCount();
+            }
+        }
+        List<PaymentTotals> totals = new ArrayList<>(minorUnits.length);
+        for (Currency currency : Currency.values()) {
+            totals.add(new PaymentTotals(
+                    currency, MinorUnits.toBigDecimal(minorUnits[currency.ordinal()]), counts[currency.ordinal()]));
+        }
+        return totals;
+    }
+
+    public List<SmsOutbox> outboxes() {
+        return List.copyOf(shards);
+    }
+
+    List<PaymentShard> getShards() {
+        return shards;
+    }
+
+    ShardRouter getRouter() {
+        return router;
+    }
+
+    @Override
+    public void close() throws Exception {
+        scatterExecutor.shutdown();
+        for (PaymentShard shard : shards) {
+            shard.close();
+        }
+    }
+
+    private PaymentShard shardFor(UUID customerId) {
+        return shards.get(router.shardFor(customerId));
+    }
+
+    private <T> List<T> scatter(Function<PaymentShard, T> query) {
+        if (shards.size() == 1) {
+            return List.of(query.apply(shards.get(0)));
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.size());
+        for (PaymentShard shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> query.apply(shard), scatterExecutor));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return results;
+    }
+}
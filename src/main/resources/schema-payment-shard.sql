@@ -0,0 +1,26 @@
+-- idempotency keys are unique per shard, a shard holds whole customers so keys are scoped to a customer
+CREATE TABLE IF NOT EXISTS payment (
+    payment_id      BIGINT PRIMARY KEY,
+    customer_id     UUID,
+    amount          DECIMAL(19, 2),
+    currency        INTEGER,
+    source          VARCHAR(255),
+    description     VARCHAR(255),
+    idempotency_key VARCHAR(255) UNIQUE,
+    created_at      TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS payment_customer_id_payment_id_idx ON payment (customer_id, payment_id);
+
+CREATE TABLE IF NOT EXISTS sms_notification (
+    id            BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    payment_id    BIGINT NOT NULL,
+    customer_id   UUID NOT NULL,
+    message       VARCHAR(255) NOT NULL,
+    status        VARCHAR(255) NOT NULL,
+    attempts      INTEGER NOT NULL,
+    claim_token   UUID,
+    claimed_until TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS sms_notification_status_id_idx ON sms_notification (status, id);
@@ -0,0 +1,152 @@
+package com.amigoscode.customerapitdd.reactive;
+
+import com.amigoscode.customerapitdd.charger.FakeReactiveCardCharger;
+import com.amigoscode.customerapitdd.id.TimeOrderedUuidGenerator;
+import com.amigoscode.customerapitdd.interfaces.ReactiveCardCharger;
+import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.model.Customer;
+import com.amigoscode.customerapitdd.model.Payment;
+import com.amigoscode.customerapitdd.service.CardPaymentCharge;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.r2dbc.connectionfactory.init.ResourceDatabasePopulator;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReactivePaymentServiceTest {
+
+    private ReactiveCustomerRepository customerRepository;
+    private ReactivePaymentRepository paymentRepository;
+    private ReactiveCustomerService customerService;
+
+    @BeforeEach
+    void setUp() {
+        // a fresh named database per test, kept open until the jvm exits
+        ConnectionFactory connectionFactory =
+                ConnectionFactories.get("r2dbc:h2:mem:///" + UUID.randomUUID() + "?options=DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("schema-reactive.sql"))
+                .execute(connectionFactory)
+                .block();
+        DatabaseClient databaseClient = DatabaseClient.create(connectionFactory);
+        customerRepository = new ReactiveCustomerRepository(databaseClient);
+        paymentRepository = new ReactivePaymentRepository(databaseClient);
+        customerService = new ReactiveCustomerService(customerRepository, new TimeOrderedUuidGenerator());
+    }
+
+    @Test
+    void itShouldRegisterCustomerOnceAndRejectTakenPhoneNumber() {
+        // given
+        Customer customer = customerService.registerNewCustomer(new Customer(null, "Maria", "+447000000000")).block();
+
+        // when
+        Customer again = customerService.registerNewCustomer(new Customer(null, "Maria", "+44 7000 000000")).block();
+
+        // then
+        assertThat(customer.getId()).isNotNull();
+        assertThat(again.getId()).isEqualTo(customer.getId());
+        assertThatThrownBy(() -> customerService.registerNewCustomer(new Customer(null, "Ali", "+447000000000")).block())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("phone number [+447000000000] is taken");
+    }
+
+    @Test
+    void itShouldTranslateConstraintViolationIntoPhoneNumberTaken() {
+        // given the lookup misses a customer inserted concurrently
+        Customer holder = new Customer(UUID.randomUUID(), "Maria", "+447000000000");
+        customerRepository.insert(holder).block();
+        ReactiveCustomerRepository staleLookups = new ReactiveCustomerRepository(null) {
+            @Override
+            public Mono<Customer> findByNormalizedPhoneNumber(String normalizedPhoneNumber) {
+                return Mono.empty();
+            }
+
+            @Override
+            public Mono<Customer> insert(Customer customer) {
+                return customerRepository.insert(customer);
+            }
+        };
+        ReactiveCustomerService underTest = new ReactiveCustomerService(staleLookups, new TimeOrderedUuidGenerator());
+
+        // when
+        // then
+        assertThatThrownBy(() -> underTest.registerNewCustomer(new Customer(null, "Ali", "+447000000000")).block())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("phone number [+447000000000] is taken");
+    }
+
+    @Test
+    void itShouldChargeCardAndInsertPayment() {
+        // given
+        UUID customerId = customerService.registerNewCustomer(new Customer(null, "Maria", "+447000000000")).block().getId();
+        ReactivePaymentService underTest = paymentService(new FakeReactiveCardCharger(Duration.ofMillis(10)));
+
+        // when
+        Payment first = underTest.chargeCard(customerId, payment("10.50", Currency.USD)).block();
+        Payment second = underTest.chargeCard(customerId, payment("2.00", Currency.GBP)).block();
+
+        // then
+        assertThat(first.getPaymentId()).isLessThan(second.getPaymentId());
+        List<Payment> payments = underTest.getPayments(customerId).collectList().block();
+        assertThat(payments).containsExactly(first, second);
+        assertThat(payments.get(0).getMoney().toBigDecimal()).isEqualByComparingTo("10.50");
+        assertThat(payments.get(0).getCustomerId()).isEqualTo(customerId);
+        // the column keeps microseconds
+        assertThat(Duration.between(first.getCreatedAt(), payments.get(0).getCreatedAt()).abs())
+                .isLessThan(Duration.ofMillis(1));
+    }
+
+    @Test
+    void itShouldNotChargeCardWhenCustomerIsNotFoundOrCurrencyIsNotSupported() {
+        // given
+        UUID customerId = customerService.registerNewCustomer(new Customer(null, "Maria", "+447000000000")).block().getId();
+        UUID unknownCustomerId = UUID.randomUUID();
+        ReactivePaymentService underTest = paymentService((cardSource, amount, description) ->
+                Mono.error(new AssertionError("card should not be charged")));
+
+        // when
+        // then
+        assertThatThrownBy(() -> underTest.chargeCard(unknownCustomerId, payment("10.00", Currency.USD)).block())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage(String.format("customer with id [%s] not found", unknownCustomerId));
+        assertThatThrownBy(() -> underTest.chargeCard(customerId, payment("10.00", Currency.EUR)).block())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("currency [EUR] not supported");
+        assertThat(underTest.getPayments(customerId).collectList().block()).isEmpty();
+    }
+
+    @Test
+    void itShouldNotInsertPaymentWhenCardIsNotDebited() {
+        // given
+        UUID customerId = customerService.registerNewCustomer(new Customer(null, "Maria", "+447000000000")).block().getId();
+        ReactivePaymentService underTest = paymentService((cardSource, amount, description) ->
+                Mono.just(new CardPaymentCharge(false)));
+
+        // when
+        // then
+        assertThatThrownBy(() -> underTest.chargeCard(customerId, payment("10.00", Currency.USD)).block())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage(String.format("card not debited for customer [%s]", customerId));
+        assertThat(underTest.getPayments(customerId).collectList().block()).isEmpty();
+    }
+
+    private ReactivePaymentService paymentService(ReactiveCardCharger cardCharger) {
+        return new ReactivePaymentService(
+                customerRepository, paymentRepository, cardCharger, EnumSet.of(Currency.USD, Currency.GBP));
+    }
+
+    private static Payment payment(String amount, Currency currency) {
+        return new Payment(null, null, new BigDecimal(amount), currency, "card123", "Donation");
+    }
+}
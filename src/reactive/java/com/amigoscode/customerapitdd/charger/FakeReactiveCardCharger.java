@@ -0,0 +1,29 @@
+package com.amigoscode.customerapitdd.charger;
+
+import com.amigoscode.customerapitdd.interfaces.ReactiveCardCharger;
+import com.amigoscode.customerapitdd.model.Money;
+import com.amigoscode.customerapitdd.service.CardPaymentCharge;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Reactive counterpart of {@link FakeCardCharger}. The latency is a timer rather than a sleep,
+ * so a pending charge holds no thread.
+ */
+public class FakeReactiveCardCharger implements ReactiveCardCharger {
+
+    private final Duration latency;
+
+    public FakeReactiveCardCharger(Duration latency) {
+        this.latency = latency;
+    }
+
+    @Override
+    public Mono<CardPaymentCharge> chargeCard(String cardSource,
+                                              Money amount,
+                                              String description) {
+        Mono<CardPaymentCharge> charge = Mono.fromSupplier(() -> new CardPaymentCharge(true));
+        return latency.isZero() ? charge : Mono.delay(latency).then(charge);
+    }
+}
@@ -0,0 +1,14 @@
+package com.amigoscode.customerapitdd.interfaces;
+
+import com.amigoscode.customerapitdd.model.Money;
+import com.amigoscode.customerapitdd.service.CardPaymentCharge;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveCardCharger {
+
+    Mono<CardPaymentCharge> chargeCard(
+            String cardSource,
+            Money amount,
+            String description
+    );
+}
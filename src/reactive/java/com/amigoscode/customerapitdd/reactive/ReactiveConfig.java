@@ -0,0 +1,118 @@
+package com.amigoscode.customerapitdd.reactive;
+
+import com.amigoscode.customerapitdd.charger.FakeReactiveCardCharger;
+import com.amigoscode.customerapitdd.config.CborConfig;
+import com.amigoscode.customerapitdd.id.TimeOrderedUuidGenerator;
+import com.amigoscode.customerapitdd.interfaces.ReactiveCardCharger;
+import com.amigoscode.customerapitdd.model.Currency;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.r2dbc.connectionfactory.init.ConnectionFactoryInitializer;
+import org.springframework.data.r2dbc.connectionfactory.init.ResourceDatabasePopulator;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Wiring of the reactive variant, started through {@link ReactiveCustomerApiApplication}. Boot 2.2
+ * has no R2DBC auto-configuration, so the pool, the schema and the client are declared here. Built with
+ * the reactive Maven profile only, the servlet application then scans this package too and skips it,
+ * as it is not a reactive web application.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@EnableAutoConfiguration(exclude = {
+        DataSourceAutoConfiguration.class,
+        DataSourceTransactionManagerAutoConfiguration.class,
+        HibernateJpaAutoConfiguration.class
+})
+@Import({ReactiveCustomerController.class, ReactivePaymentController.class})
+public class ReactiveConfig {
+
+    // tomcat is on the classpath for the servlet application and would otherwise be picked first
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    // the same application/cbor format as the servlet application, see CborConfig
+    @Bean
+    public CodecCustomizer cborCodecCustomizer(Jackson2ObjectMapperBuilder builder) {
+        ObjectMapper objectMapper = CborConfig.cborObjectMapper(builder);
+        return configurer -> {
+            configurer.customCodecs().register(new Jackson2CborDecoder(objectMapper));
+            configurer.customCodecs().register(new Jackson2CborEncoder(objectMapper));
+        };
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionPool reactiveConnectionPool(
+            @Value("${reactive.r2dbc.url:r2dbc:h2:mem:///customers}") String url,
+            @Value("${reactive.r2dbc.pool.max-size:10}") int maxSize) {
+        return new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(url))
+                .initialSize(Math.min(maxSize, 2))
+                .maxSize(maxSize)
+                .build());
+    }
+
+    @Bean
+    public ConnectionFactoryInitializer reactiveSchemaInitializer(ConnectionPool reactiveConnectionPool) {
+        ConnectionFactoryInitializer initializer = new ConnectionFactoryInitializer();
+        initializer.setConnectionFactory(reactiveConnectionPool);
+        initializer.setDatabasePopulator(new ResourceDatabasePopulator(new ClassPathResource("schema-reactive.sql")));
+        return initializer;
+    }
+
+    @Bean
+    public DatabaseClient reactiveDatabaseClient(ConnectionPool reactiveConnectionPool) {
+        return DatabaseClient.create(reactiveConnectionPool);
+    }
+
+    @Bean
+    public ReactiveCardCharger reactiveCardCharger(@Value("${card-charger.fake.latency-ms:0}") long latencyMillis) {
+        return new FakeReactiveCardCharger(Duration.ofMillis(latencyMillis));
+    }
+
+    @Bean
+    public ReactiveCustomerRepository reactiveCustomerRepository(DatabaseClient reactiveDatabaseClient) {
+        return new ReactiveCustomerRepository(reactiveDatabaseClient);
+    }
+
+    @Bean
+    public ReactivePaymentRepository reactivePaymentRepository(DatabaseClient reactiveDatabaseClient) {
+        return new ReactivePaymentRepository(reactiveDatabaseClient);
+    }
+
+    @Bean
+    public ReactiveCustomerService reactiveCustomerService(ReactiveCustomerRepository reactiveCustomerRepository) {
+        return new ReactiveCustomerService(reactiveCustomerRepository, new TimeOrderedUuidGenerator());
+    }
+
+    @Bean
+    public ReactivePaymentService reactivePaymentService(
+            ReactiveCustomerRepository reactiveCustomerRepository,
+            ReactivePaymentRepository reactivePaymentRepository,
+            ReactiveCardCharger reactiveCardCharger,
+            @Value("${currency-policy.accepted:USD,GBP}") Set<Currency> acceptedCurrencies) {
+        return new ReactivePaymentService(
+                reactiveCustomerRepository, reactivePaymentRepository, reactiveCardCharger, acceptedCurrencies);
+    }
+}
@@ -0,0 +1,17 @@
+package com.amigoscode.customerapitdd.reactive;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+
+/**
+ * Starts the reactive variant of the API on Netty, against R2DBC instead of JPA.
+ */
+public class ReactiveCustomerApiApplication {
+
+	public static void main(String[] args) {
+		new SpringApplicationBuilder(ReactiveConfig.class)
+				.web(WebApplicationType.REACTIVE)
+				.run(args);
+	}
+
+}
@@ -0,0 +1,48 @@
+package com.amigoscode.customerapitdd.reactive;
+
+import com.amigoscode.customerapitdd.model.Customer;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * Customer queries of the reactive variant, the same table and columns the JPA mapping uses.
+ */
+public class ReactiveCustomerRepository {
+
+    private final DatabaseClient databaseClient;
+
+    public ReactiveCustomerRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Mono<Customer> findByNormalizedPhoneNumber(String normalizedPhoneNumber) {
+        return databaseClient.execute("SELECT id, name, phone_number FROM customer " +
+                        "WHERE normalized_phone_number = :normalizedPhoneNumber")
+                .bind("normalizedPhoneNumber", normalizedPhoneNumber)
+                .map((row, metadata) -> new Customer(
+                        row.get("id", UUID.class), row.get("name", String.class), row.get("phone_number", String.class)))
+                .one();
+    }
+
+    public Mono<Boolean> existsById(UUID id) {
+        return databaseClient.execute("SELECT 1 FROM customer WHERE id = :id")
+                .bind("id", id)
+                .map((row, metadata) -> Boolean.TRUE)
+                .first()
+                .hasElement();
+    }
+
+    public Mono<Customer> insert(Customer customer) {
+        return databaseClient.execute("INSERT INTO customer (id, name, phone_number, normalized_phone_number) " +
+                        "VALUES (:id, :name, :phoneNumber, :normalizedPhoneNumber)")
+                .bind("id", customer.getId())
+                .bind("name", customer.getName())
+                .bind("phoneNumber", customer.getPhoneNumber())
+                .bind("normalizedPhoneNumber", customer.getNormalizedPhoneNumber())
+                .fetch()
+                .rowsUpdated()
+                .thenReturn(customer);
+    }
+}
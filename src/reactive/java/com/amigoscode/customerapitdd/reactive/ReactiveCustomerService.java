@@ -0,0 +1,53 @@
+package com.amigoscode.customerapitdd.reactive;
+
+import com.amigoscode.customerapitdd.interfaces.IdGenerator;
+import com.amigoscode.customerapitdd.model.Customer;
+import com.amigoscode.customerapitdd.model.PhoneNumbers;
+import org.springframework.dao.DataIntegrityViolationException;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+
+/**
+ * Reactive counterpart of the customer registration: the same rules, without the cache and the
+ * coalescing of concurrent registrations, the unique index on the number settles those.
+ */
+public class ReactiveCustomerService {
+
+    private final ReactiveCustomerRepository customerRepository;
+    private final IdGenerator idGenerator;
+
+    public ReactiveCustomerService(ReactiveCustomerRepository customerRepository, IdGenerator idGenerator) {
+        this.customerRepository = customerRepository;
+        this.idGenerator = idGenerator;
+    }
+
+    // answers with the customer holding the number, so a repeated registration learns the id too
+    public Mono<Customer> registerNewCustomer(Customer customer) {
+        String normalizedPhoneNumber = PhoneNumbers.normalize(customer.getPhoneNumber());
+        return customerRepository.findByNormalizedPhoneNumber(normalizedPhoneNumber)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(holder -> {
+                    if (holder.isPresent()) {
+                        return checkSameCustomer(holder.get(), customer);
+                    }
+                    if (customer.getId() == null) {
+                        customer.setId(idGenerator.generateId());
+                    }
+                    return customerRepository.insert(customer)
+                            .onErrorMap(DataIntegrityViolationException.class, e -> phoneNumberTaken(customer, e));
+                });
+    }
+
+    private static Mono<Customer> checkSameCustomer(Customer holder, Customer customer) {
+        if (holder.getName().equals(customer.getName())) {
+            return Mono.just(holder);
+        }
+        return Mono.error(phoneNumberTaken(customer, null));
+    }
+
+    private static IllegalStateException phoneNumberTaken(Customer customer, Throwable cause) {
+        return new IllegalStateException(String.format("phone number [%s] is taken", customer.getPhoneNumber()), cause);
+    }
+}
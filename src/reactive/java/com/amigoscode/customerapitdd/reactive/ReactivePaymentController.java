@@ -0,0 +1,38 @@
+package com.amigoscode.customerapitdd.reactive;
+
+import com.amigoscode.customerapitdd.dto.PaymentRequest;
+import com.amigoscode.customerapitdd.model.Payment;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+@RestController
+@RequestMapping("api/v1")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactivePaymentController {
+
+    private final ReactivePaymentService paymentService;
+
+    public ReactivePaymentController(ReactivePaymentService paymentService) {
+        this.paymentService = paymentService;
+    }
+
+    @PostMapping("customers/{customerId}/payments")
+    public Mono<Payment> chargeCard(@PathVariable("customerId") UUID customerId,
+                                    @RequestBody PaymentRequest paymentRequest) {
+        return paymentService.chargeCard(customerId, paymentRequest.getPayment());
+    }
+
+    @GetMapping("customers/{customerId}/payments")
+    public Flux<Payment> getPayments(@PathVariable("customerId") UUID customerId) {
+        return paymentService.getPayments(customerId);
+    }
+}
@@ -0,0 +1,72 @@
+package com.amigoscode.customerapitdd.reactive;
+
+import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.model.MinorUnits;
+import com.amigoscode.customerapitdd.model.Money;
+import com.amigoscode.customerapitdd.model.Payment;
+import io.r2dbc.spi.Row;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+/**
+ * Payment queries of the reactive variant. Timestamps are stored as UTC local date times, the type
+ * every R2DBC driver can bind.
+ */
+public class ReactivePaymentRepository {
+
+    private static final String COLUMNS =
+            "payment_id, customer_id, amount, currency, source, description, idempotency_key, created_at";
+
+    private final DatabaseClient databaseClient;
+
+    public ReactivePaymentRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    // payments reaching here are new, inserting them assigns the id on the instance passed in
+    public Mono<Payment> insert(Payment payment) {
+        return databaseClient.execute("SELECT NEXT VALUE FOR payment_id_seq")
+                .map((row, metadata) -> row.get(0, Long.class))
+                .one()
+                .flatMap(paymentId -> {
+                    payment.setPaymentId(paymentId);
+                    DatabaseClient.GenericExecuteSpec insert = databaseClient.execute("INSERT INTO payment (" + COLUMNS + ") " +
+                            "VALUES (:paymentId, :customerId, :amount, :currency, :source, :description, :idempotencyKey, :createdAt)")
+                            .bind("paymentId", paymentId)
+                            .bind("customerId", payment.getCustomerId())
+                            .bind("amount", MinorUnits.toBigDecimal(payment.getAmount()))
+                            .bind("currency", payment.getCurrency().ordinal())
+                            .bind("source", payment.getSource())
+                            .bind("description", payment.getDescription())
+                            .bind("createdAt", LocalDateTime.ofInstant(payment.getCreatedAt(), ZoneOffset.UTC));
+                    insert = payment.getIdempotencyKey() != null
+                            ? insert.bind("idempotencyKey", payment.getIdempotencyKey())
+                            : insert.bindNull("idempotencyKey", String.class);
+                    return insert.fetch().rowsUpdated().thenReturn(payment);
+                });
+    }
+
+    public Flux<Payment> findByCustomerId(UUID customerId) {
+        return databaseClient.execute("SELECT " + COLUMNS + " FROM payment WHERE customer_id = :customerId ORDER BY payment_id")
+                .bind("customerId", customerId)
+                .map((row, metadata) -> mapPayment(row))
+                .all();
+    }
+
+    private static Payment mapPayment(Row row) {
+        Money amount = Money.ofMinorUnits(
+                MinorUnits.of(row.get("amount", BigDecimal.class)), Currency.values()[row.get("currency", Integer.class)]);
+        Payment payment = new Payment(row.get("payment_id", Long.class), row.get("customer_id", UUID.class),
+                amount, row.get("source", String.class), row.get("description", String.class));
+        payment.setIdempotencyKey(row.get("idempotency_key", String.class));
+        LocalDateTime createdAt = row.get("created_at", LocalDateTime.class);
+        payment.setCreatedAt(createdAt != null ? createdAt.toInstant(ZoneOffset.UTC) : null);
+        return payment;
+    }
+}
@@ -0,0 +1,70 @@
+package com.amigoscode.customerapitdd.reactive;
+
+import com.amigoscode.customerapitdd.interfaces.ReactiveCardCharger;
+import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.model.Payment;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Reactive counterpart of the card payment: customer and currency checks, the charge and the insert
+ * chained without blocking a thread. Idempotency keys, limits and the SMS outbox stay with the servlet
+ * variant.
+ */
+public class ReactivePaymentService {
+
+    private final ReactiveCustomerRepository customerRepository;
+    private final ReactivePaymentRepository paymentRepository;
+    private final ReactiveCardCharger cardCharger;
+    private final Set<Currency> acceptedCurrencies;
+
+    public ReactivePaymentService(ReactiveCustomerRepository customerRepository,
+                                  ReactivePaymentRepository paymentRepository,
+                                  ReactiveCardCharger cardCharger,
+                                  Set<Currency> acceptedCurrencies) {
+        this.customerRepository = customerRepository;
+        this.paymentRepository = paymentRepository;
+        this.cardCharger = cardCharger;
+        this.acceptedCurrencies = acceptedCurrencies.isEmpty()
+                ? EnumSet.noneOf(Currency.class)
+                : EnumSet.copyOf(acceptedCurrencies);
+    }
+
+    public Mono<Payment> chargeCard(UUID customerId, Payment payment) {
+        // 1. Does customer exists if not, throw
+        return customerRepository.existsById(customerId)
+                .flatMap(isCustomerFound -> {
+                    if (!isCustomerFound) {
+                        return Mono.error(new IllegalStateException(
+                                String.format("customer with id [%s] not found", customerId)));
+                    }
+                    // 2. do we support the currency if not throw
+                    if (!acceptedCurrencies.contains(payment.getCurrency())) {
+                        return Mono.error(new IllegalStateException(
+                                String.format("currency [%s] not supported", payment.getCurrency())));
+                    }
+                    // 3. charge card
+                    return cardCharger.chargeCard(payment.getSource(), payment.getMoney(), payment.getDescription());
+                })
+                .flatMap(cardPaymentCharge -> {
+                    // 4. if not debited, throw
+                    if (!cardPaymentCharge.isCardDebited()) {
+                        return Mono.error(new IllegalStateException(
+                                String.format("card not debited for customer [%s]", customerId)));
+                    }
+                    // 5. insert payment
+                    payment.setCustomerId(customerId);
+                    payment.setCreatedAt(Instant.now());
+                    return paymentRepository.insert(payment);
+                });
+    }
+
+    public Flux<Payment> getPayments(UUID customerId) {
+        return paymentRepository.findByCustomerId(customerId);
+    }
+}
@@ -0,0 +1,21 @@
+CREATE TABLE IF NOT EXISTS customer (
+    id                      UUID PRIMARY KEY,
+    name                    VARCHAR(255) NOT NULL,
+    phone_number            VARCHAR(255) NOT NULL UNIQUE,
+    normalized_phone_number VARCHAR(255) UNIQUE
+);
+
+CREATE SEQUENCE IF NOT EXISTS payment_id_seq START WITH 1 INCREMENT BY 1;
+
+CREATE TABLE IF NOT EXISTS payment (
+    payment_id      BIGINT PRIMARY KEY,
+    customer_id     UUID,
+    amount          DECIMAL(19, 2),
+    currency        INTEGER,
+    source          VARCHAR(255),
+    description     VARCHAR(255),
+    idempotency_key VARCHAR(255) UNIQUE,
+    created_at      TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS payment_customer_id_payment_id_idx ON payment (customer_id, payment_id);
@@ -0,0 +1,161 @@
+package com.amigoscode.customerapitdd.aggregate;
+
+import com.amigoscode.customerapitdd.dto.PaymentTotals;
+import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.model.Payment;
+import com.amigoscode.customerapitdd.repository.JpaPaymentStore;
+import com.amigoscode.customerapitdd.repository.PaymentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+
+class PaymentAggregatesTest {
+
+    private PaymentAggregates underTest;
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        underTest = new PaymentAggregates(new JpaPaymentStore(paymentRepository, null), 2, false, 2, 24);
+    }
+
+    @Test
+    void itShouldKeepTotalsPerCurrencyCustomerAndHour() {
+        // given
+        UUID maria = UUID.randomUUID();
+        UUID ali = UUID.randomUUID();
+        Instant hour = Instant.parse("2020-05-01T10:00:00Z");
+
+        // when
+        underTest.record(payment(1L, maria, "10.50", Currency.USD, hour.plusSeconds(60)));
+        underTest.record(payment(2L, maria, "4.25", Currency.GBP, hour.plusSeconds(120)));
+        underTest.record(payment(3L, ali, "0.5", Currency.USD, hour.plusSeconds(3600)));
+
+        // then
+        assertThat(underTest.totalFor(Currency.USD).getAmount()).isEqualTo(new BigDecimal("11.00"));
+        assertThat(underTest.totalFor(Currency.USD).getCount()).isEqualTo(2);
+        assertThat(underTest.totalFor(maria, Currency.USD).getAmount()).isEqualTo(new BigDecimal("10.50"));
+        assertThat(underTest.totalFor(maria, Currency.GBP).getCount()).isEqualTo(1);
+        assertThat(underTest.totalForHour(hour.plusSeconds(1800), Currency.USD).getAmount())
+                .isEqualTo(new BigDecimal("10.50"));
+        assertThat(underTest.totalForHour(hour.plusSeconds(3600), Currency.USD).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void itShouldReturnZeroTotalsForUnknownCustomer() {
+        // when
+        // then
+        assertThat(underTest.totalFor(UUID.randomUUID(), Currency.EUR).getAmount())
+                .isEqualTo(new BigDecimal("0.00"));
+        assertThat(underTest.totalFor(UUID.randomUUID(), Currency.EUR).getCount()).isZero();
+    }
+
+    @Test
+    void itShouldNotLoseUpdatesUnderConcurrentCharges() {
+        // given
+        UUID customerId = UUID.randomUUID();
+        Instant now = Instant.now();
+
+        // when
+        CompletableFuture.allOf(IntStream.range(0, 8)
+                .mapToObj(thread -> CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        underTest.record(payment(null, customerId, "0.01", Currency.GBP, now));
+                    }
+                }))
+                .toArray(CompletableFuture[]::new))
+                .join();
+
+        // then
+        assertThat(underTest.totalFor(customerId, Currency.GBP).getAmount()).isEqualTo(new BigDecimal("80.00"));
+        assertThat(underTest.totalFor(Currency.GBP).getCount()).isEqualTo(8000);
+    }
+
+    @Test
+    void itShouldRebuildFromThePaymentTable() {
+        // given
+        UUID customerId = UUID.randomUUID();
+        underTest.record(payment(99L, customerId, "1000.00", Currency.USD, Instant.now()));
+
+        given(paymentRepository.selectPaymentPage(0L, PageRequest.of(0, 2))).willReturn(List.of(
+                payment(1L, customerId, "1.00", Currency.USD, null),
+                payment(2L, customerId, "2.00", Currency.USD, null)));
+        given(paymentRepository.selectPaymentPage(2L, PageRequest.of(0, 2))).willReturn(List.of(
+                payment(3L, customerId, "3.00", Currency.USD, null)));
+
+        // when
+        long scanned = underTest.rebuild();
+
+        // then
+        assertThat(scanned).isEqualTo(3);
+        assertThat(underTest.totalFor(customerId, Currency.USD).getAmount()).isEqualTo(new BigDecimal("6.00"));
+        assertThat(underTest.totalFor(Currency.USD).getCount()).isEqualTo(3);
+    }
+
+    @Test
+    void itShouldSumCustomersBeyondTheLimitFromThePaymentTable() {
+        // given
+        UUID maria = UUID.randomUUID();
+        UUID ali = UUID.randomUUID();
+        UUID sam = UUID.randomUUID();
+        underTest.record(payment(1L, maria, "1.00", Currency.USD, null));
+        underTest.record(payment(2L, ali, "2.00", Currency.USD, null));
+        underTest.record(payment(3L, sam, "3.00", Currency.USD, null));
+        given(paymentRepository.selectPaymentPage(sam, 0L, PageRequest.of(0, 2))).willReturn(List.of(
+                payment(3L, sam, "3.00", Currency.USD, null),
+                payment(4L, sam, "9.00", Currency.GBP, null)));
+        given(paymentRepository.selectPaymentPage(sam, 4L, PageRequest.of(0, 2))).willReturn(List.of(
+                payment(5L, sam, "4.00", Currency.USD, null)));
+
+        // when
+        PaymentTotals samTotals = underTest.totalFor(sam, Currency.USD);
+
+        // then
+        assertThat(samTotals.getAmount()).isEqualTo(new BigDecimal("7.00"));
+        assertThat(samTotals.getCount()).isEqualTo(2);
+        assertThat(underTest.totalFor(ali, Currency.USD).getAmount()).isEqualTo(new BigDecimal("2.00"));
+        assertThat(underTest.totalFor(Currency.USD).getCount()).isEqualTo(3);
+    }
+
+    @Test
+    void itShouldOnlyKeepTheRetainedHours() {
+        // given
+        UUID customerId = UUID.randomUUID();
+        Instant hour = Instant.parse("2020-05-01T10:00:00Z");
+        underTest.record(payment(1L, customerId, "1.00", Currency.USD, hour));
+        underTest.record(payment(2L, customerId, "2.00", Currency.USD, hour.plus(Duration.ofHours(23))));
+
+        // when
+        underTest.record(payment(3L, customerId, "3.00", Currency.USD, hour.plus(Duration.ofHours(24))));
+        underTest.record(payment(4L, customerId, "4.00", Currency.USD, hour));
+
+        // then
+        assertThat(underTest.totalForHour(hour, Currency.USD).getCount()).isZero();
+        assertThat(underTest.totalForHour(hour.plus(Duration.ofHours(23)), Currency.USD).getCount()).isEqualTo(1);
+        assertThat(underTest.totalForHour(hour.plus(Duration.ofHours(24)), Currency.USD).getCount()).isEqualTo(1);
+        assertThat(underTest.totalFor(customerId, Currency.USD).getAmount()).isEqualTo(new BigDecimal("10.00"));
+    }
+
+    private static Payment payment(Long paymentId, UUID customerId, String amount, Currency currency,
+                                   Instant createdAt) {
+        Payment payment = new Payment(paymentId, customerId, new BigDecimal(amount), currency, "card123xx", "Donation");
+        payment.setCreatedAt(createdAt);
+        return payment;
+    }
+}
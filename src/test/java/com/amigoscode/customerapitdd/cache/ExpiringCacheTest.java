@@ -0,0 +1,90 @@
+package com.amigoscode.customerapitdd.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExpiringCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private ExpiringCache<String, Integer> underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ExpiringCache<>(2, 10, TimeUnit.NANOSECONDS, now::get);
+    }
+
+    @Test
+    void itShouldCountHitsAndMisses() {
+        // given
+        underTest.put("a", 1);
+
+        // when
+        underTest.get("a");
+        underTest.get("b");
+
+        // then
+        assertThat(underTest.hitCount()).isEqualTo(1);
+        assertThat(underTest.missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void itShouldExpireEntriesAfterTtl() {
+        // given
+        underTest.put("a", 1);
+
+        // when
+        now.addAndGet(10);
+
+        // then
+        assertThat(underTest.get("a")).isNotPresent();
+        assertThat(underTest.evictionCount()).isEqualTo(1);
+        assertThat(underTest.size()).isZero();
+    }
+
+    @Test
+    void itShouldEvictLeastRecentlyUsedWhenFull() {
+        // given
+        underTest.put("a", 1);
+        underTest.put("b", 2);
+        underTest.get("a");
+
+        // when
+        underTest.put("c", 3);
+
+        // then
+        assertThat(underTest.get("a")).contains(1);
+        assertThat(underTest.get("b")).isNotPresent();
+        assertThat(underTest.get("c")).contains(3);
+        assertThat(underTest.evictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void itShouldExposeCountersAsCacheMeters() {
+        // given
+        MeterRegistry registry = new SimpleMeterRegistry();
+        underTest.bindTo(registry, "test");
+        underTest.put("a", 1);
+        underTest.put("b", 2);
+        underTest.put("c", 3);
+
+        // when
+        underTest.get("c");
+        underTest.get("a");
+
+        // then
+        assertThat(registry.get("cache.gets").tags("cache", "test", "result", "hit").functionCounter().count())
+                .isEqualTo(1);
+        assertThat(registry.get("cache.gets").tags("cache", "test", "result", "miss").functionCounter().count())
+                .isEqualTo(1);
+        assertThat(registry.get("cache.evictions").tag("cache", "test").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("cache.size").tag("cache", "test").gauge().value()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,134 @@
+package com.amigoscode.customerapitdd.charger;
+
+import com.amigoscode.customerapitdd.interfaces.CardCharger;
+import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.model.Money;
+import com.amigoscode.customerapitdd.service.CardPaymentCharge;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BulkheadCardChargerTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void itShouldChargeCardOnExecutor() {
+        // given
+        BulkheadCardCharger underTest = new BulkheadCardCharger(
+                new FakeCardCharger(Duration.ZERO), executor, 1, Duration.ofSeconds(1));
+
+        // when
+        CardPaymentCharge charge = underTest.chargeCard("card123", Money.of(BigDecimal.TEN, Currency.USD), "Donation").join();
+
+        // then
+        assertThat(charge.isCardDebited()).isTrue();
+        assertThat(underTest.availableSlots()).isEqualTo(1);
+    }
+
+    @Test
+    void itShouldRejectChargesAboveInFlightLimit() {
+        // given
+        BulkheadCardCharger underTest = new BulkheadCardCharger(
+                blockingCharger(), executor, 1, Duration.ofSeconds(5));
+        underTest.chargeCard("card123", Money.of(BigDecimal.TEN, Currency.USD), "Donation");
+
+        // when
+        CompletableFuture<CardPaymentCharge> rejected =
+                underTest.chargeCard("card456", Money.of(BigDecimal.TEN, Currency.USD), "Donation");
+
+        // then
+        assertThat(rejected).hasFailedWithThrowableThat()
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("card charger is at capacity");
+    }
+
+    @Test
+    void itShouldTimeOutChargesStillWaitingForAThread() {
+        // given
+        ExecutorService busyExecutor = Executors.newSingleThreadExecutor();
+        busyExecutor.execute(() -> blockingCharger().chargeCard(null, null, null));
+        AtomicInteger calls = new AtomicInteger();
+        BulkheadCardCharger underTest = new BulkheadCardCharger((cardSource, amount, description) -> {
+            calls.incrementAndGet();
+            return new CardPaymentCharge(true);
+        }, busyExecutor, 1, Duration.ofMillis(50));
+
+        // when
+        CompletableFuture<CardPaymentCharge> charge =
+                underTest.chargeCard("card123", Money.of(BigDecimal.TEN, Currency.USD), "Donation");
+
+        // then
+        assertThatThrownBy(charge::join)
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(TimeoutException.class);
+        release.countDown();
+        busyExecutor.shutdown();
+        await(() -> underTest.availableSlots() == 1);
+        assertThat(calls).hasValue(0);
+    }
+
+    @Test
+    void itShouldNotAbandonAChargeThatHasStarted() throws InterruptedException {
+        // given
+        BulkheadCardCharger underTest = new BulkheadCardCharger(
+                blockingCharger(), executor, 1, Duration.ofMillis(50));
+
+        // when
+        CompletableFuture<CardPaymentCharge> charge =
+                underTest.chargeCard("card123", Money.of(BigDecimal.TEN, Currency.USD), "Donation");
+        Thread.sleep(200);
+
+        // then
+        assertThat(charge).isNotDone();
+        release.countDown();
+        assertThat(charge.join().isCardDebited()).isTrue();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+
+    private CardCharger blockingCharger() {
+        return (cardSource, amount, description) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new CardPaymentCharge(true);
+        };
+    }
+}
@@ -0,0 +1,70 @@
+package com.amigoscode.customerapitdd.charger;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private final AtomicLong nanoClock = new AtomicLong();
+    private final CircuitBreaker underTest = new CircuitBreaker(2, Duration.ofSeconds(10), nanoClock::get);
+
+    @Test
+    void itShouldIgnoreSuccessesOfCallsStartedBeforeTheCircuitOpened() {
+        // given
+        CircuitBreaker.Permission slowCall = underTest.tryAcquirePermission();
+        underTest.onFailure(underTest.tryAcquirePermission());
+        underTest.onFailure(underTest.tryAcquirePermission());
+
+        // when
+        underTest.onSuccess(slowCall);
+
+        // then
+        assertThat(slowCall).isEqualTo(CircuitBreaker.Permission.CALL);
+        assertThat(underTest.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(underTest.tryAcquirePermission()).isEqualTo(CircuitBreaker.Permission.DENIED);
+    }
+
+    @Test
+    void itShouldOnlyCloseOnTheResultOfTheProbe() {
+        // given
+        CircuitBreaker.Permission slowCall = underTest.tryAcquirePermission();
+        underTest.onFailure(underTest.tryAcquirePermission());
+        underTest.onFailure(underTest.tryAcquirePermission());
+        nanoClock.addAndGet(Duration.ofSeconds(10).toNanos());
+        CircuitBreaker.Permission probe = underTest.tryAcquirePermission();
+
+        // when
+        underTest.onSuccess(slowCall);
+
+        // then
+        assertThat(probe).isEqualTo(CircuitBreaker.Permission.PROBE);
+        assertThat(underTest.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(underTest.tryAcquirePermission()).isEqualTo(CircuitBreaker.Permission.DENIED);
+
+        // when
+        underTest.onSuccess(probe);
+
+        // then
+        assertThat(underTest.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(underTest.tryAcquirePermission()).isEqualTo(CircuitBreaker.Permission.CALL);
+    }
+
+    @Test
+    void itShouldLetAnotherProbeThroughWhenOneIsAbandoned() {
+        // given
+        underTest.onFailure(underTest.tryAcquirePermission());
+        underTest.onFailure(underTest.tryAcquirePermission());
+        nanoClock.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        // when
+        underTest.onAbandoned(underTest.tryAcquirePermission());
+
+        // then
+        assertThat(underTest.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(underTest.tryAcquirePermission()).isEqualTo(CircuitBreaker.Permission.PROBE);
+    }
+}
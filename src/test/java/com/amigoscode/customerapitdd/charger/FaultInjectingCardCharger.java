@@ -0,0 +1,47 @@
+package com.amigoscode.customerapitdd.charger;
+
+import com.amigoscode.customerapitdd.interfaces.CardCharger;
+import com.amigoscode.customerapitdd.model.Money;
+import com.amigoscode.customerapitdd.service.CardPaymentCharge;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Card network stand-in whose failures and latency can be switched while a test runs.
+ */
+class FaultInjectingCardCharger implements CardCharger {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private volatile boolean failing;
+    private volatile Duration latency = Duration.ZERO;
+
+    void failing(boolean failing) {
+        this.failing = failing;
+    }
+
+    void latency(Duration latency) {
+        this.latency = latency;
+    }
+
+    int calls() {
+        return calls.get();
+    }
+
+    @Override
+    public CardPaymentCharge chargeCard(String cardSource, Money amount, String description) {
+        calls.incrementAndGet();
+        if (!latency.isZero()) {
+            try {
+                Thread.sleep(latency.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failing) {
+            throw new IllegalStateException("card network unavailable");
+        }
+        return new CardPaymentCharge(true);
+    }
+}
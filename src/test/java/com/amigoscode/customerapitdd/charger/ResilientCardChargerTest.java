@@ -0,0 +1,169 @@
+package com.amigoscode.customerapitdd.charger;
+
+import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.model.Money;
+import com.amigoscode.customerapitdd.service.CardPaymentCharge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResilientCardChargerTest {
+
+    private static final Money AMOUNT = Money.ofMinorUnits(1000, Currency.USD);
+
+    private final AtomicLong nanoClock = new AtomicLong();
+    private final FaultInjectingCardCharger cardNetwork = new FaultInjectingCardCharger();
+
+    private ExecutorService executor;
+    private ResilientCardCharger underTest;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+        underTest = new ResilientCardCharger(
+                "cardNetwork",
+                cardNetwork,
+                new CircuitBreaker(3, Duration.ofSeconds(10), nanoClock::get),
+                new AimdLimiter(2, 1, 10, 0.5),
+                Duration.ofMillis(200));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void itShouldOpenAfterConsecutiveFailuresAndStopCallingTheCardNetwork() {
+        // given
+        cardNetwork.failing(true);
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(this::charge).hasMessage("card network unavailable");
+        }
+
+        // when
+        // then
+        assertThat(underTest.circuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThatThrownBy(this::charge)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("card charger circuit is open");
+        assertThat(cardNetwork.calls()).isEqualTo(3);
+    }
+
+    @Test
+    void itShouldCloseAfterASuccessfulHalfOpenProbe() {
+        // given
+        cardNetwork.failing(true);
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(this::charge).isInstanceOf(IllegalStateException.class);
+        }
+        cardNetwork.failing(false);
+
+        // when
+        nanoClock.addAndGet(Duration.ofSeconds(10).toNanos());
+        CardPaymentCharge probe = charge();
+
+        // then
+        assertThat(probe.isCardDebited()).isTrue();
+        assertThat(underTest.circuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void itShouldReopenWhenTheHalfOpenProbeFails() {
+        // given
+        cardNetwork.failing(true);
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(this::charge).isInstanceOf(IllegalStateException.class);
+        }
+        nanoClock.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        // when
+        assertThatThrownBy(this::charge).hasMessage("card network unavailable");
+
+        // then
+        assertThat(underTest.circuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThatThrownBy(this::charge).hasMessage("card charger circuit is open");
+    }
+
+    @Test
+    void itShouldShedChargesOverTheConcurrencyLimit() throws Exception {
+        // given
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        ResilientCardCharger blocking = new ResilientCardCharger(
+                "cardNetwork",
+                (cardSource, amount, description) -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new CardPaymentCharge(true);
+                },
+                new CircuitBreaker(3, Duration.ofSeconds(10)),
+                new AimdLimiter(2, 1, 10, 0.5),
+                Duration.ofSeconds(10));
+        executor.submit(() -> blocking.chargeCard("card1", AMOUNT, "Donation"));
+        executor.submit(() -> blocking.chargeCard("card2", AMOUNT, "Donation"));
+        started.await();
+
+        // when
+        // then
+        assertThatThrownBy(() -> blocking.chargeCard("card3", AMOUNT, "Donation"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("card charger is at capacity");
+        release.countDown();
+    }
+
+    @Test
+    void itShouldAdaptTheLimitToObservedLatency() {
+        // given
+        for (int i = 0; i < 20; i++) {
+            charge();
+        }
+        int grown = underTest.concurrencyLimit();
+
+        // when
+        cardNetwork.latency(Duration.ofMillis(250));
+        charge();
+
+        // then
+        assertThat(grown).isGreaterThan(2);
+        assertThat(underTest.concurrencyLimit()).isLessThan(grown);
+    }
+
+    @Test
+    void itShouldExposeStateAsMetrics() {
+        // given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        underTest.bindTo(registry);
+        cardNetwork.failing(true);
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(this::charge).isInstanceOf(IllegalStateException.class);
+        }
+
+        // when
+        assertThatThrownBy(this::charge).isInstanceOf(IllegalStateException.class);
+
+        // then
+        assertThat(registry.get("card.charger.circuit.state").tag("charger", "cardNetwork").gauge().value())
+                .isEqualTo(CircuitBreaker.State.OPEN.ordinal());
+        assertThat(registry.get("card.charger.rejected").tag("reason", "circuit_open").functionCounter().count())
+                .isEqualTo(1);
+    }
+
+    private CardPaymentCharge charge() {
+        return underTest.chargeCard("card123", AMOUNT, "Donation");
+    }
+}
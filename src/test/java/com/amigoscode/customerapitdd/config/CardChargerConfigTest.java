@@ -0,0 +1,68 @@
+package com.amigoscode.customerapitdd.config;
+
+import com.amigoscode.customerapitdd.charger.FakeCardCharger;
+import com.amigoscode.customerapitdd.charger.ResilientCardCharger;
+import com.amigoscode.customerapitdd.interfaces.CardCharger;
+import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.policy.CurrencyPolicies;
+import com.amigoscode.customerapitdd.policy.CurrencyPolicy;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "currency-policy.accepted=USD,GBP,EUR",
+        "currency-policy.route.EUR=euCardCharger"
+})
+class CardChargerConfigTest {
+
+    @TestConfiguration
+    static class EuCardChargerConfig {
+
+        @Bean
+        CardCharger euCardCharger() {
+            return new FakeCardCharger(Duration.ZERO);
+        }
+    }
+
+    @Autowired
+    private CurrencyPolicies currencyPolicies;
+    @Autowired
+    private ResilientCardCharger resilientCardCharger;
+    @Autowired
+    private CardCharger euCardCharger;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void itShouldGiveARoutedCardChargerABreakerAndLimiterOfItsOwn() {
+        // when
+        CurrencyPolicy policy = currencyPolicies.current();
+
+        // then
+        assertThat(policy.cardChargerFor(Currency.USD)).isSameAs(resilientCardCharger);
+        assertThat(policy.cardChargerFor(Currency.EUR))
+                .isInstanceOf(ResilientCardCharger.class)
+                .isNotSameAs(resilientCardCharger)
+                .isNotSameAs(euCardCharger);
+    }
+
+    @Test
+    void itShouldTagTheMetersOfEachCardChargerWithItsName() {
+        // when
+        // then
+        assertThat(meterRegistry.get("card.charger.in.flight").tag("charger", CardChargerConfig.CARD_NETWORK).gauge())
+                .isNotNull();
+        assertThat(meterRegistry.get("card.charger.in.flight").tag("charger", "euCardCharger").gauge())
+                .isNotNull();
+        assertThat(meterRegistry.get("card.charger.rejected").tag("charger", "euCardCharger").functionCounters())
+                .hasSize(2);
+    }
+}
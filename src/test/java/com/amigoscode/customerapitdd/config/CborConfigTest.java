@@ -0,0 +1,101 @@
+package com.amigoscode.customerapitdd.config;
+
+import com.amigoscode.customerapitdd.controller.CustomerController;
+import com.amigoscode.customerapitdd.dto.BatchPaymentRequest;
+import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.model.Customer;
+import com.amigoscode.customerapitdd.model.Payment;
+import com.amigoscode.customerapitdd.search.CustomerSearchIndex;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class CborConfigTest {
+
+    private final ObjectMapper jsonObjectMapper = new Jackson2ObjectMapperBuilder().build();
+    private final ObjectMapper cborObjectMapper = CborConfig.cborObjectMapper(new Jackson2ObjectMapperBuilder());
+
+    @Test
+    void itShouldWriteUuidsAsRawBytesAndAmountsAsMinorUnits() throws Exception {
+        // given
+        UUID customerId = UUID.randomUUID();
+        Payment payment = new Payment(null, customerId, new BigDecimal("10.50"), Currency.GBP, "card123", "Donation");
+        List<BatchPaymentRequest> requests = List.of(new BatchPaymentRequest(customerId, payment));
+
+        // when
+        byte[] cbor = cborObjectMapper.writeValueAsBytes(requests);
+        List<BatchPaymentRequest> decoded = cborObjectMapper.readValue(cbor, new TypeReference<>() {
+        });
+
+        // then
+        Map<String, JsonToken> tokens = new HashMap<>();
+        Map<String, Object> values = new HashMap<>();
+        try (JsonParser parser = cborObjectMapper.getFactory().createParser(cbor)) {
+            while (parser.nextToken() != null) {
+                if (parser.currentToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    tokens.put(field, parser.nextToken());
+                    values.put(field, parser.currentToken().isScalarValue() ? parser.getEmbeddedObject() : null);
+                }
+            }
+        }
+        assertThat(tokens.get("customerId")).isEqualTo(JsonToken.VALUE_EMBEDDED_OBJECT);
+        assertThat((byte[]) values.get("customerId")).hasSize(16);
+        assertThat(tokens.get("amount")).isEqualTo(JsonToken.VALUE_NUMBER_INT);
+        assertThat(cbor.length).isLessThan(jsonObjectMapper.writeValueAsBytes(requests).length);
+
+        assertThat(decoded).hasSize(1);
+        assertThat(decoded.get(0).getCustomerId()).isEqualTo(customerId);
+        assertThat(decoded.get(0).getPayment()).isEqualToComparingFieldByField(payment);
+    }
+
+    @Test
+    void itShouldAnswerInTheFormatTheClientAccepts() throws Exception {
+        // given
+        CustomerSearchIndex customerSearchIndex = new CustomerSearchIndex(null, 1000, false);
+        Customer customer = new Customer(UUID.randomUUID(), "Anna Smith", "+447700900123");
+        customerSearchIndex.add(customer);
+        MockMvc mockMvc = MockMvcBuilders
+                .standaloneSetup(new CustomerController(null, customerSearchIndex, jsonObjectMapper))
+                .setMessageConverters(
+                        new MappingJackson2HttpMessageConverter(jsonObjectMapper),
+                        new MappingJackson2CborHttpMessageConverter(cborObjectMapper))
+                .build();
+
+        // when
+        byte[] cbor = mockMvc.perform(get("/api/v1/customers/search").param("q", "ann")
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+        String json = mockMvc.perform(get("/api/v1/customers/search").param("q", "ann"))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsString();
+
+        // then
+        JsonNode result = cborObjectMapper.readTree(cbor).get(0);
+        assertThat(result.get("id").binaryValue()).hasSize(16);
+        assertThat(result.get("name").asText()).isEqualTo("Anna Smith");
+        assertThat(jsonObjectMapper.readTree(json).get(0).get("id").asText()).isEqualTo(customer.getId().toString());
+    }
+}
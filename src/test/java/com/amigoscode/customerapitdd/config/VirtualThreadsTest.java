@@ -0,0 +1,30 @@
+package com.amigoscode.customerapitdd.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VirtualThreadsTest {
+
+    @Test
+    void itShouldMatchRuntimeSupportForVirtualThreads() {
+        // given
+        boolean runtimeHasVirtualThreads = Runtime.version().feature() >= 21;
+
+        // when
+        // then
+        assertThat(VirtualThreads.isSupported()).isEqualTo(runtimeHasVirtualThreads);
+        if (runtimeHasVirtualThreads) {
+            ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+            assertThat(executor).isNotNull();
+            executor.shutdown();
+        } else {
+            assertThatThrownBy(VirtualThreads::newVirtualThreadPerTaskExecutor)
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("virtual threads need Java 21 or later");
+        }
+    }
+}
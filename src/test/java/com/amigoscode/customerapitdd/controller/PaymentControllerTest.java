@@ -0,0 +1,105 @@
+package com.amigoscode.customerapitdd.controller;
+
+import com.amigoscode.customerapitdd.interfaces.PaymentStore;
+import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.model.Payment;
+import com.amigoscode.customerapitdd.repository.PaymentRepository;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "payment.history.page-size=2")
+@AutoConfigureMockMvc
+class PaymentControllerTest {
+
+    private static final List<Integer> MANAGED_ENTITIES_PER_PAGE = new ArrayList<>();
+
+    @TestConfiguration
+    static class PersistenceContextProbeConfig {
+
+        /**
+         * Records how many entities the request thread's persistence context holds after each page is read.
+         */
+        @Bean
+        static BeanPostProcessor paymentStoreProbe(ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof PaymentStore)) {
+                        return bean;
+                    }
+                    return Proxy.newProxyInstance(PaymentStore.class.getClassLoader(),
+                            new Class<?>[]{PaymentStore.class},
+                            (proxy, method, args) -> {
+                                Object result;
+                                try {
+                                    result = method.invoke(bean, args);
+                                } catch (InvocationTargetException e) {
+                                    throw e.getCause();
+                                }
+                                if (method.getName().equals("selectPaymentPage") && args.length == 3) {
+                                    EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager
+                                            .getResource(entityManagerFactory.getObject());
+                                    MANAGED_ENTITIES_PER_PAGE.add(holder == null ? 0 : holder.getEntityManager()
+                                            .unwrap(Session.class).getStatistics().getEntityCount());
+                                }
+                                return result;
+                            });
+                }
+            };
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    private final List<Payment> saved = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        paymentRepository.deleteAll(saved);
+        MANAGED_ENTITIES_PER_PAGE.clear();
+    }
+
+    @Test
+    void itShouldNotKeepEarlierPagesManagedWhileStreamingPayments() throws Exception {
+        // given
+        UUID customerId = UUID.randomUUID();
+        for (int i = 0; i < 5; i++) {
+            saved.add(paymentRepository.save(new Payment(null, customerId, new BigDecimal("10.00"),
+                    Currency.USD, "card123", "Donation")));
+        }
+
+        // when
+        mockMvc.perform(get("/api/v1/customers/{customerId}/payments", customerId))
+                // then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(5));
+        assertThat(MANAGED_ENTITIES_PER_PAGE).hasSize(3).allSatisfy(count -> assertThat(count).isLessThanOrEqualTo(2));
+    }
+}
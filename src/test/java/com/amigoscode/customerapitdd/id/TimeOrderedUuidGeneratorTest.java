@@ -0,0 +1,60 @@
+package com.amigoscode.customerapitdd.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimeOrderedUuidGeneratorTest {
+
+    private final AtomicLong now = new AtomicLong(1_600_000_000_000L);
+
+    private final TimeOrderedUuidGenerator underTest = new TimeOrderedUuidGenerator(now::get);
+
+    @Test
+    void itShouldGenerateVersion7Ids() {
+        // when
+        UUID id = underTest.generateId();
+
+        // then
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+        assertThat(id.getMostSignificantBits() >>> 16).isEqualTo(now.get());
+    }
+
+    @Test
+    void itShouldGenerateIncreasingIdsWithinTheSameMillisecond() {
+        // when
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(underTest.generateId());
+        }
+
+        // then
+        assertThat(ids).isSortedAccordingTo(TimeOrderedUuidGeneratorTest::compareUnsigned);
+        assertThat(ids).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void itShouldGenerateIncreasingIdsAcrossMilliseconds() {
+        // given
+        UUID first = underTest.generateId();
+
+        // when
+        now.incrementAndGet();
+        UUID second = underTest.generateId();
+
+        // then
+        assertThat(compareUnsigned(first, second)).isNegative();
+    }
+
+    private static int compareUnsigned(UUID a, UUID b) {
+        int mostSigBits = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return mostSigBits != 0 ? mostSigBits
+                : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+}
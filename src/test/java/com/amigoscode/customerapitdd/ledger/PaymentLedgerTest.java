@@ -0,0 +1,285 @@
+package com.amigoscode.customerapitdd.ledger;
+
+import com.amigoscode.customerapitdd.cache.PaymentIdempotencyStore;
+import com.amigoscode.customerapitdd.interfaces.PaymentStore;
+import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.model.Payment;
+import com.amigoscode.customerapitdd.service.PaymentWriter;
+import com.amigoscode.customerapitdd.shard.PaymentIdAllocator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.jdbc.support.incrementer.H2SequenceMaxValueIncrementer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+
+class PaymentLedgerTest {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    @TempDir
+    Path ledgerDir;
+
+    private final Map<Long, Payment> paymentTable = new ConcurrentHashMap<>();
+    private final PaymentWriter paymentWriter = mock(PaymentWriter.class);
+    private final PaymentStore paymentStore = mock(PaymentStore.class);
+    private final PaymentIdempotencyStore idempotencyStore = new PaymentIdempotencyStore(paymentStore, 100, 60);
+    private final List<PaymentLedger> ledgers = new ArrayList<>();
+
+    private EmbeddedDatabase database;
+    private PaymentIdAllocator idAllocator;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        new JdbcTemplate(database).execute("CREATE SEQUENCE payment_id_seq START WITH 1 INCREMENT BY 50");
+        idAllocator = new PaymentIdAllocator(new H2SequenceMaxValueIncrementer(database, "payment_id_seq"), 50);
+        // the payment table, payments already in it are skipped like insertMissing does
+        given(paymentWriter.saveAcknowledged(anyList())).willAnswer(invocation -> {
+            List<Payment> payments = invocation.getArgument(0);
+            return payments.stream()
+                    .filter(payment -> paymentTable.putIfAbsent(payment.getPaymentId(), payment) == null)
+                    .collect(Collectors.toList());
+        });
+        given(paymentStore.findByIdempotencyKey(anyString())).willReturn(Optional.empty());
+    }
+
+    @AfterEach
+    void tearDown() {
+        ledgers.forEach(PaymentLedger::close);
+        database.shutdown();
+    }
+
+    @Test
+    void itShouldAcknowledgePaymentsBeforeWritingThemToThePaymentTable() {
+        // given
+        PaymentLedger underTest = openLedger(SEGMENT_SIZE);
+        Payment payment = payment("10.00");
+
+        // when
+        underTest.save(payment);
+
+        // then
+        assertThat(payment.getPaymentId()).isNotNull();
+        assertThat(payment.getCreatedAt()).isNotNull();
+        then(paymentWriter).should(never()).saveAcknowledged(anyList());
+
+        assertThat(underTest.flush()).isEqualTo(1);
+        assertThat(paymentTable.get(payment.getPaymentId()))
+                .isEqualToComparingFieldByField(payment);
+        assertThat(underTest.flush()).isZero();
+    }
+
+    @Test
+    void itShouldFlushOnItsOwnThreadOnceStarted() throws Exception {
+        // given
+        PaymentLedger underTest = openLedger(SEGMENT_SIZE);
+        Payment payment = payment("10.00");
+        List<String> flushThreads = new CopyOnWriteArrayList<>();
+        given(paymentWriter.saveAcknowledged(anyList())).willAnswer(invocation -> {
+            flushThreads.add(Thread.currentThread().getName());
+            List<Payment> payments = invocation.getArgument(0);
+            payments.forEach(written -> paymentTable.put(written.getPaymentId(), written));
+            return payments;
+        });
+
+        // when
+        underTest.startFlushing(Duration.ofMillis(10));
+        underTest.save(payment);
+
+        // then
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!paymentTable.containsKey(payment.getPaymentId()) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(paymentTable).containsKey(payment.getPaymentId());
+        assertThat(flushThreads).containsOnly("payment-ledger-flush");
+    }
+
+    @Test
+    void itShouldAcknowledgeConcurrentAppendsOnce() throws Exception {
+        // given
+        PaymentLedger underTest = openLedger(SEGMENT_SIZE);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Long>> paymentIds = new ArrayList<>();
+
+        // when
+        for (int i = 0; i < 400; i++) {
+            paymentIds.add(executor.submit(() -> {
+                Payment payment = payment("1.00");
+                underTest.save(payment);
+                return payment.getPaymentId();
+            }));
+        }
+        List<Long> acknowledged = new ArrayList<>();
+        for (Future<Long> paymentId : paymentIds) {
+            acknowledged.add(paymentId.get());
+        }
+        executor.shutdown();
+
+        // then
+        assertThat(acknowledged).doesNotHaveDuplicates();
+        assertThat(underTest.flush()).isEqualTo(400);
+        assertThat(paymentTable.keySet()).containsExactlyInAnyOrderElementsOf(acknowledged);
+    }
+
+    @Test
+    void itShouldReplayPaymentsNotWrittenBeforeACrash() {
+        // given
+        PaymentLedger crashed = openLedger(SEGMENT_SIZE);
+        List<Payment> written = List.of(payment("1.00"), payment("2.00"));
+        crashed.saveAll(written);
+        crashed.flush();
+        Payment unwritten = payment("3.00");
+        crashed.save(unwritten);
+
+        // when
+        PaymentLedger underTest = openLedger(SEGMENT_SIZE);
+
+        // then
+        assertThat(underTest.flush()).isEqualTo(1);
+        assertThat(paymentTable).hasSize(3);
+        assertThat(paymentTable.get(unwritten.getPaymentId())).isEqualToComparingFieldByField(unwritten);
+    }
+
+    @Test
+    void itShouldNotWritePaymentsTwiceWhenCrashingBeforeTheCheckpointMoves() {
+        // given
+        PaymentLedger crashed = openLedger(SEGMENT_SIZE);
+        List<Payment> payments = List.of(payment("1.00"), payment("2.00"));
+        crashed.saveAll(payments);
+        // committed to the payment table, the crash came before the checkpoint was written
+        payments.forEach(payment -> paymentTable.put(payment.getPaymentId(), payment));
+
+        // when
+        PaymentLedger underTest = openLedger(SEGMENT_SIZE);
+
+        // then
+        assertThat(underTest.flush()).isZero();
+        assertThat(paymentTable).hasSize(2);
+        assertThat(openLedger(SEGMENT_SIZE).flush()).isZero();
+    }
+
+    @Test
+    void itShouldDiscardARecordTornByACrash() throws IOException {
+        // given
+        PaymentLedger crashed = openLedger(SEGMENT_SIZE);
+        Payment payment = payment("1.00");
+        crashed.save(payment);
+        Path segment = onlySegment();
+        int end = LedgerSegment.HEADER_SIZE + PaymentLedger.encode(payment).length;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // a length and the start of a payload, the checksum never made it
+            ByteBuffer torn = ByteBuffer.allocate(12).putInt(40).putInt(0).putInt(7);
+            channel.write(torn.flip(), end);
+        }
+
+        // when
+        PaymentLedger underTest = openLedger(SEGMENT_SIZE);
+        Payment next = payment("2.00");
+        underTest.save(next);
+
+        // then
+        assertThat(underTest.flush()).isEqualTo(2);
+        assertThat(paymentTable.keySet()).containsExactlyInAnyOrder(payment.getPaymentId(), next.getPaymentId());
+    }
+
+    @Test
+    void itShouldDeleteSegmentsOnceTheirPaymentsAreWritten() throws IOException {
+        // given
+        int segmentSize = 512;
+        PaymentLedger underTest = openLedger(segmentSize);
+        for (int i = 0; i < 20; i++) {
+            underTest.save(payment("1.00"));
+        }
+        assertThat(segmentFiles()).hasSizeGreaterThan(1);
+
+        // when
+        int written = underTest.flush();
+
+        // then
+        assertThat(written).isEqualTo(20);
+        assertThat(segmentFiles()).hasSize(1);
+        assertThat(openLedger(segmentSize).flush()).isZero();
+    }
+
+    @Test
+    void itShouldAnswerReplaysFromMemoryUntilThePaymentIsWritten() {
+        // given
+        PaymentLedger underTest = openLedger(SEGMENT_SIZE);
+        Payment payment = payment("10.00");
+        payment.setIdempotencyKey("key-1");
+
+        // when
+        underTest.save(payment);
+
+        // then
+        assertThat(idempotencyStore.findCompleted("key-1")).containsSame(payment);
+        then(paymentStore).should(never()).findByIdempotencyKey("key-1");
+
+        underTest.flush();
+        assertThat(idempotencyStore.findCompleted("key-1")).isEmpty();
+        then(paymentStore).should().findByIdempotencyKey("key-1");
+    }
+
+    private PaymentLedger openLedger(int segmentSize) {
+        PaymentLedger ledger = new PaymentLedger(
+                ledgerDir, segmentSize, 50, paymentWriter, idempotencyStore, idAllocator);
+        ledger.open();
+        ledgers.add(ledger);
+        return ledger;
+    }
+
+    private Path onlySegment() throws IOException {
+        List<Path> files = segmentFiles();
+        assertThat(files).hasSize(1);
+        return files.get(0);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(ledgerDir)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".log"))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static Payment payment(String amount) {
+        return new Payment(null, UUID.randomUUID(), new BigDecimal(amount), Currency.USD, "card123", "Donation");
+    }
+}
@@ -0,0 +1,48 @@
+package com.amigoscode.customerapitdd.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MinorUnitsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void itShouldConvertBetweenDecimalAmountsAndMinorUnits() {
+        assertThat(MinorUnits.of(new BigDecimal("100.00"))).isEqualTo(10000);
+        assertThat(MinorUnits.of(new BigDecimal("0.5"))).isEqualTo(50);
+        assertThat(MinorUnits.toBigDecimal(1050)).isEqualTo(new BigDecimal("10.50"));
+        assertThatThrownBy(() -> MinorUnits.of(new BigDecimal("0.001")))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void itShouldReadAndWritePaymentAmountsAsDecimals() throws Exception {
+        // given
+        String json = "{\"amount\":10.5,\"currency\":\"GBP\",\"source\":\"card123xx\",\"description\":\"Donation\"}";
+
+        // when
+        Payment payment = objectMapper.readValue(json, Payment.class);
+
+        // then
+        assertThat(payment.getMoney()).isEqualTo(Money.ofMinorUnits(1050, Currency.GBP));
+        assertThat(objectMapper.writeValueAsString(payment)).contains("\"amount\":10.50");
+    }
+
+    @Test
+    void itShouldRejectAmountsFinerThanAMinorUnit() {
+        // given
+        String json = "{\"amount\":10.505,\"currency\":\"GBP\"}";
+
+        // when
+        // then
+        assertThatThrownBy(() -> objectMapper.readValue(json, Payment.class))
+                .isInstanceOf(InvalidFormatException.class);
+    }
+}
@@ -0,0 +1,44 @@
+package com.amigoscode.customerapitdd.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PhoneNumbersTest {
+
+    @AfterEach
+    void tearDown() {
+        PhoneNumbers.setDefaultCountryCode(PhoneNumbers.DEFAULT_COUNTRY_CODE);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "'+44 7700 900123', +447700900123",
+            "'07700 900123', +447700900123",
+            "'7700 900123', +447700900123",
+            "'+44 (0)7700 900123', +447700900123",
+            "'+44 (0) 7700 900123', +447700900123",
+            "'0044 (7700) 900-123', +447700900123",
+            "'+1 (555) 010-0000', +15550100000"
+    })
+    void itShouldNormalizePhoneNumbers(String phoneNumber, String expected) {
+        assertThat(PhoneNumbers.normalize(phoneNumber)).isEqualTo(expected);
+    }
+
+    @Test
+    void itShouldUseTheConfiguredDefaultCountryCode() {
+        // given
+        PhoneNumbers.setDefaultCountryCode("49");
+
+        // when / then
+        assertThat(PhoneNumbers.normalize("030 1234567")).isEqualTo("+49301234567");
+        assertThat(PhoneNumbers.normalize("30 1234567")).isEqualTo("+49301234567");
+        assertThat(PhoneNumbers.normalize("+44 7700 900123")).isEqualTo("+447700900123");
+        assertThatThrownBy(() -> PhoneNumbers.setDefaultCountryCode("+49"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
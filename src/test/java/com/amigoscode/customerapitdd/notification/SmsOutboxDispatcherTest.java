@@ -0,0 +1,165 @@
+package com.amigoscode.customerapitdd.notification;
+
+import com.amigoscode.customerapitdd.interfaces.SmsOutbox;
+import com.amigoscode.customerapitdd.interfaces.SmsSender;
+import com.amigoscode.customerapitdd.model.Customer;
+import com.amigoscode.customerapitdd.model.SmsNotification;
+import com.amigoscode.customerapitdd.repository.CustomerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+class SmsOutboxDispatcherTest {
+
+    private SmsOutboxDispatcher underTest;
+
+    @Mock
+    private SmsOutbox outbox;
+    @Mock
+    private SmsOutbox shardOutbox;
+    @Mock
+    private CustomerRepository customerRepository;
+    @Mock
+    private SmsSender smsSender;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        underTest = new SmsOutboxDispatcher(List.of(outbox, shardOutbox), customerRepository, smsSender,
+                Executors.newSingleThreadExecutor(), 10, 2, 1000, Duration.ofSeconds(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.shutdown();
+    }
+
+    @Test
+    void itShouldSendPendingNotificationsAndMarkThemSent() {
+        // given
+        Customer customer = new Customer(UUID.randomUUID(), "Maria", "+447000000000");
+        SmsNotification notification = new SmsNotification(1L, customer.getId(), "Payment received");
+        givenClaimed(outbox, notification);
+        given(customerRepository.findAllById(anyIterable())).willReturn(List.of(customer));
+
+        // when
+        int sent = underTest.dispatch().join();
+
+        // then
+        assertThat(sent).isEqualTo(1);
+        then(smsSender).should().send("+447000000000", "Payment received");
+        assertThat(notification.getStatus()).isEqualTo(SmsNotification.Status.SENT);
+        then(outbox).should().release(List.of(notification));
+        then(shardOutbox).should(never()).release(anyList());
+    }
+
+    @Test
+    void itShouldClaimFromEveryOutboxUpToTheBatchSize() {
+        // given
+        Customer customer = new Customer(UUID.randomUUID(), "Maria", "+447000000000");
+        SmsNotification primary = new SmsNotification(1L, customer.getId(), "Payment received");
+        SmsNotification sharded = new SmsNotification(2L, customer.getId(), "Payment received");
+        givenClaimed(outbox, primary);
+        givenClaimed(shardOutbox, sharded);
+        given(customerRepository.findAllById(anyIterable())).willReturn(List.of(customer));
+
+        // when
+        int sent = underTest.dispatch().join();
+
+        // then
+        assertThat(sent).isEqualTo(2);
+        then(outbox).should().claim(eq(10), any(), any());
+        then(shardOutbox).should().claim(eq(9), any(), any());
+        then(outbox).should().release(List.of(primary));
+        then(shardOutbox).should().release(List.of(sharded));
+    }
+
+    @Test
+    void itShouldRetryFailedSendsUntilMaxAttempts() {
+        // given
+        Customer customer = new Customer(UUID.randomUUID(), "Maria", "+447000000000");
+        SmsNotification notification = new SmsNotification(1L, customer.getId(), "Payment received");
+        givenClaimed(outbox, notification);
+        given(customerRepository.findAllById(anyIterable())).willReturn(List.of(customer));
+        willThrow(new IllegalStateException("provider down")).given(smsSender).send(anyString(), anyString());
+
+        // when
+        underTest.dispatch().join();
+
+        // then
+        assertThat(notification.getStatus()).isEqualTo(SmsNotification.Status.PENDING);
+        assertThat(notification.getAttempts()).isEqualTo(1);
+
+        // when
+        underTest.dispatch().join();
+
+        // then
+        assertThat(notification.getStatus()).isEqualTo(SmsNotification.Status.FAILED);
+        assertThat(notification.getAttempts()).isEqualTo(2);
+    }
+
+    @Test
+    void itShouldDoNothingWhenOutboxIsEmpty() {
+        // given
+        given(outbox.claim(anyInt(), any(), any())).willReturn(List.of());
+        given(shardOutbox.claim(anyInt(), any(), any())).willReturn(List.of());
+
+        // when
+        int sent = underTest.dispatch().join();
+
+        // then
+        assertThat(sent).isZero();
+        then(customerRepository).shouldHaveNoInteractions();
+        then(smsSender).shouldHaveNoInteractions();
+        then(outbox).should(never()).release(anyList());
+        then(shardOutbox).should(never()).release(anyList());
+    }
+
+    @Test
+    void itShouldNotClaimMoreWhileABatchIsStillSending() throws Exception {
+        // given
+        Customer customer = new Customer(UUID.randomUUID(), "Maria", "+447000000000");
+        givenClaimed(outbox, new SmsNotification(1L, customer.getId(), "Payment received"));
+        given(customerRepository.findAllById(anyIterable())).willReturn(List.of(customer));
+        CountDownLatch release = new CountDownLatch(1);
+        willAnswer(invocation -> release.await(5, TimeUnit.SECONDS)).given(smsSender).send(anyString(), anyString());
+
+        // when
+        CompletableFuture<Integer> first = underTest.dispatch();
+        CompletableFuture<Integer> second = underTest.dispatch();
+        release.countDown();
+
+        // then
+        assertThat(second.join()).isZero();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        then(outbox).should(times(1)).claim(anyInt(), any(), any());
+    }
+
+    private static void givenClaimed(SmsOutbox outbox, SmsNotification notification) {
+        given(outbox.claim(anyInt(), any(), any())).willReturn(List.of(notification));
+    }
+}
@@ -0,0 +1,145 @@
+package com.amigoscode.customerapitdd.policy;
+
+import com.amigoscode.customerapitdd.charger.FakeCardCharger;
+import com.amigoscode.customerapitdd.interfaces.CardCharger;
+import com.amigoscode.customerapitdd.model.Currency;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CurrencyPolicyLoaderTest {
+
+    private static final BiFunction<String, CardCharger, CardCharger> UNDECORATED = (beanName, cardCharger) -> cardCharger;
+
+    private final CardCharger defaultCardCharger = new FakeCardCharger(Duration.ZERO);
+    private final CardCharger euCardCharger = new FakeCardCharger(Duration.ZERO);
+    private final Map<String, CardCharger> cardChargers = Map.of(
+            "defaultCardCharger", defaultCardCharger,
+            "euCardCharger", euCardCharger);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void itShouldAcceptUsdAndGbpByDefault() {
+        // when
+        CurrencyPolicy policy = new CurrencyPolicyLoader(
+                new MockEnvironment(), cardChargers, defaultCardCharger, UNDECORATED, null).getCurrencyPolicies().current();
+
+        // then
+        assertThat(policy.accepts(Currency.USD)).isTrue();
+        assertThat(policy.accepts(Currency.GBP)).isTrue();
+        assertThat(policy.accepts(Currency.EUR)).isFalse();
+        assertThat(policy.isWithinLimits(Currency.USD, Long.MAX_VALUE)).isTrue();
+        assertThat(policy.cardChargerFor(Currency.EUR)).isSameAs(defaultCardCharger);
+    }
+
+    @Test
+    void itShouldBindLimitsAndRoutesFromProperties() {
+        // given
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("currency-policy.accepted", "USD,EUR")
+                .withProperty("currency-policy.min-amount.EUR", "0.50")
+                .withProperty("currency-policy.max-amount.EUR", "5000")
+                .withProperty("currency-policy.route.EUR", "euCardCharger");
+
+        // when
+        CurrencyPolicy policy = new CurrencyPolicyLoader(
+                environment, cardChargers, defaultCardCharger, UNDECORATED, null).getCurrencyPolicies().current();
+
+        // then
+        assertThat(policy.accepts(Currency.GBP)).isFalse();
+        assertThat(policy.accepts(Currency.EUR)).isTrue();
+        assertThat(policy.isWithinLimits(Currency.EUR, 49)).isFalse();
+        assertThat(policy.isWithinLimits(Currency.EUR, 50)).isTrue();
+        assertThat(policy.isWithinLimits(Currency.EUR, 500_000)).isTrue();
+        assertThat(policy.isWithinLimits(Currency.EUR, 500_001)).isFalse();
+        assertThat(policy.cardChargerFor(Currency.EUR)).isSameAs(euCardCharger);
+        assertThat(policy.cardChargerFor(Currency.USD)).isSameAs(defaultCardCharger);
+    }
+
+    @Test
+    void itShouldFailOnRouteToUnknownCardCharger() {
+        // given
+        MockEnvironment environment = new MockEnvironment().withProperty("currency-policy.route.EUR", "missing");
+
+        // when
+        // then
+        assertThatThrownBy(() -> new CurrencyPolicyLoader(
+                environment, cardChargers, defaultCardCharger, UNDECORATED, null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("card charger [missing] for currency [EUR] not found");
+    }
+
+    @Test
+    void itShouldReloadPolicyWhenFileChanges() throws IOException {
+        // given
+        Path file = tempDir.resolve("currency-policy.properties");
+        write(file, "currency-policy.accepted=USD,GBP\n", 1_000);
+        CurrencyPolicyLoader underTest = new CurrencyPolicyLoader(
+                new MockEnvironment(), cardChargers, defaultCardCharger, UNDECORATED, file);
+        CurrencyPolicies policies = underTest.getCurrencyPolicies();
+        assertThat(policies.current().accepts(Currency.EUR)).isFalse();
+
+        // when
+        write(file, "currency-policy.accepted=USD,GBP,EUR\ncurrency-policy.route.EUR=euCardCharger\n", 2_000);
+        underTest.reloadIfChanged();
+
+        // then
+        assertThat(policies.current().accepts(Currency.EUR)).isTrue();
+        assertThat(policies.current().cardChargerFor(Currency.EUR)).isSameAs(euCardCharger);
+    }
+
+    @Test
+    void itShouldDecorateEachRoutedCardChargerOnceAcrossReloads() throws IOException {
+        // given
+        Path file = tempDir.resolve("currency-policy.properties");
+        write(file, "currency-policy.accepted=USD,EUR\ncurrency-policy.route.EUR=euCardCharger\n", 1_000);
+        CurrencyPolicyLoader underTest = new CurrencyPolicyLoader(new MockEnvironment(), cardChargers,
+                defaultCardCharger, (beanName, cardCharger) -> new FakeCardCharger(Duration.ZERO), file);
+        CardCharger decorated = underTest.getCurrencyPolicies().current().cardChargerFor(Currency.EUR);
+
+        // when
+        write(file, "currency-policy.accepted=USD,GBP,EUR\ncurrency-policy.route.EUR=euCardCharger\n", 2_000);
+        underTest.reloadIfChanged();
+
+        // then
+        assertThat(decorated).isNotSameAs(euCardCharger);
+        assertThat(underTest.getCurrencyPolicies().current().cardChargerFor(Currency.EUR)).isSameAs(decorated);
+        assertThat(underTest.getCurrencyPolicies().current().cardChargerFor(Currency.USD)).isSameAs(defaultCardCharger);
+    }
+
+    @Test
+    void itShouldKeepPolicyWhenReloadedFileIsInvalid() throws IOException {
+        // given
+        Path file = tempDir.resolve("currency-policy.properties");
+        write(file, "currency-policy.accepted=USD,EUR\n", 1_000);
+        CurrencyPolicyLoader underTest = new CurrencyPolicyLoader(
+                new MockEnvironment(), cardChargers, defaultCardCharger, UNDECORATED, file);
+        CurrencyPolicy loaded = underTest.getCurrencyPolicies().current();
+
+        // when
+        write(file, "currency-policy.accepted=USD,EUR\ncurrency-policy.route.EUR=missing\n", 2_000);
+        underTest.reloadIfChanged();
+
+        // then
+        assertThat(underTest.getCurrencyPolicies().current()).isSameAs(loaded);
+    }
+
+    // explicit modification times, two writes within the file system's timestamp resolution look unchanged
+    private static void write(Path file, String content, long lastModifiedMillis) throws IOException {
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(lastModifiedMillis));
+    }
+}
@@ -0,0 +1,165 @@
+package com.amigoscode.customerapitdd.replica;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicaRoutingDataSourceTest {
+
+    private static final long MAX_LAG_MILLIS = 1_000;
+
+    private EmbeddedDatabase primary;
+    private List<EmbeddedDatabase> replicas;
+    private ReplicaLagMonitor lagMonitor;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnlyTransaction;
+    private TransactionTemplate readWriteTransaction;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replicas = List.of(database("replica-0"), database("replica-1"));
+        replicas.forEach(replica -> new JdbcTemplate(replica).execute(
+                "CREATE TABLE replica_heartbeat (id INT PRIMARY KEY, beat_millis BIGINT NOT NULL)"));
+
+        ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource(
+                primary, List.copyOf(replicas), MAX_LAG_MILLIS);
+        lagMonitor = new ReplicaLagMonitor(routingDataSource);
+        lagMonitor.createHeartbeat();
+
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        readWriteTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        primary.shutdown();
+        replicas.forEach(EmbeddedDatabase::shutdown);
+    }
+
+    @Test
+    void itShouldKeepReadsOnThePrimaryUntilReplicaLagIsKnown() {
+        // when
+        String database = readOnly();
+
+        // then
+        assertThat(database).isEqualTo("primary");
+    }
+
+    @Test
+    void itShouldSendOnlyReadOnlyTransactionsToReplicas() {
+        // given
+        replicateHeartbeat(0, 1);
+
+        // when
+        Set<String> readOnly = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            readOnly.add(readOnly());
+        }
+
+        // then
+        assertThat(readOnly).containsExactlyInAnyOrder("replica-0", "replica-1");
+        String readWrite = readWriteTransaction.execute(status -> databaseName());
+        assertThat(readWrite).isEqualTo("primary");
+        assertThat(databaseName()).isEqualTo("primary");
+    }
+
+    @Test
+    void itShouldKeepReadsOffReplicasBehindTheMaximumLag() {
+        // given
+        replicateHeartbeat(0, 1);
+        new JdbcTemplate(replicas.get(1)).update(
+                "UPDATE replica_heartbeat SET beat_millis = ?", System.currentTimeMillis() - 10 * MAX_LAG_MILLIS);
+        lagMonitor.check();
+
+        // when
+        Set<String> readOnly = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            readOnly.add(readOnly());
+        }
+
+        // then
+        assertThat(readOnly).containsExactly("replica-0");
+    }
+
+    @Test
+    void itShouldFallBackToThePrimaryWhenNoReplicaIsInSync() {
+        // given
+        replicateHeartbeat(0);
+        replicas.get(0).shutdown();
+        lagMonitor.check();
+
+        // when
+        String database = readOnly();
+
+        // then
+        assertThat(database).isEqualTo("primary");
+    }
+
+    @Test
+    void itShouldSendReadsOfPinnedCustomersToThePrimary() {
+        // given
+        replicateHeartbeat(0, 1);
+        ReadYourWritesPins pins = new ReadYourWritesPins(true, 100, MAX_LAG_MILLIS);
+        UUID registered = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+
+        // when
+        pins.pin(registered);
+
+        // then
+        assertThat(pins.readFor(registered, this::readOnly)).isEqualTo("primary");
+        assertThat(pins.readFor(List.of(other, registered), this::readOnly)).isEqualTo("primary");
+        assertThat(pins.readFor(other, this::readOnly)).startsWith("replica-");
+        assertThat(ReplicaRouting.onPrimary(this::readOnly)).isEqualTo("primary");
+    }
+
+    private String readOnly() {
+        return readOnlyTransaction.execute(status -> databaseName());
+    }
+
+    private String databaseName() {
+        return jdbcTemplate.queryForObject("SELECT name FROM database_name", String.class);
+    }
+
+    // stands in for replication: the replicas catch up with the heartbeat the monitor wrote on the primary
+    private void replicateHeartbeat(int... replicaIndexes) {
+        lagMonitor.check();
+        Long beat = new JdbcTemplate(primary).queryForObject(
+                "SELECT beat_millis FROM replica_heartbeat WHERE id = 1", Long.class);
+        for (int replica : replicaIndexes) {
+            new JdbcTemplate(replicas.get(replica)).update(
+                    "INSERT INTO replica_heartbeat (id, beat_millis) VALUES (1, ?)", beat);
+        }
+        lagMonitor.check();
+    }
+
+    private static EmbeddedDatabase database(String name) {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("CREATE TABLE database_name (name VARCHAR(20))");
+        jdbcTemplate.update("INSERT INTO database_name VALUES (?)", name);
+        return database;
+    }
+}
@@ -1,5 +1,6 @@
 package com.amigoscode.customerapitdd.repository;
 
+import com.amigoscode.customerapitdd.dto.CustomerSummary;
 import com.amigoscode.customerapitdd.model.Customer;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -19,34 +20,34 @@ class CustomerRepositoryTest {
     private CustomerRepository underTest;
 
     @Test
-    void itShouldSelectCustomerByPhoneNumber() {
+    void itNotShouldSelectCustomerSummaryWhenNumberDoesNotExists() {
         // Given
-        UUID id = UUID.randomUUID();
-        String phoneNumber = "0000";
-        Customer customer = new Customer(id, "Abel", phoneNumber);
+        String normalizedPhoneNumber = "+447700900123";
 
         // When
-        underTest.save(customer);
+        Optional<CustomerSummary> optional = underTest.findByNormalizedPhoneNumber(normalizedPhoneNumber);
 
         // Then
-        Optional<Customer> optional = underTest.selectCustomerByPhoneNumber(phoneNumber);
-        Assertions.assertThat(optional)
-                .isPresent()
-                .hasValueSatisfying(c -> {
-                    Assertions.assertThat(c).isEqualToComparingFieldByField(customer);
-                });
+        Assertions.assertThat(optional).isNotPresent();
     }
 
     @Test
-    void itNotShouldSelectCustomerByPhoneNumberWhenNumberDoesNotExists() {
+    void itShouldSelectCustomerSummaryByNormalizedPhoneNumber() {
         // Given
-        String phoneNumber = "0000";
+        UUID id = UUID.randomUUID();
+        underTest.save(new Customer(id, "Abel", "07700 900123"));
 
         // When
-        Optional<Customer> optional = underTest.selectCustomerByPhoneNumber(phoneNumber);
+        Optional<CustomerSummary> optional = underTest.findByNormalizedPhoneNumber("+447700900123");
 
         // Then
-        Assertions.assertThat(optional).isNotPresent();
+        Assertions.assertThat(optional)
+                .isPresent()
+                .hasValueSatisfying(c -> {
+                    Assertions.assertThat(c).isNotInstanceOf(Customer.class);
+                    Assertions.assertThat(c.getId()).isEqualTo(id);
+                    Assertions.assertThat(c.getName()).isEqualTo("Abel");
+                });
     }
 
     @Test
@@ -3,20 +3,33 @@ package com.amigoscode.customerapitdd.repository;
 import com.amigoscode.customerapitdd.model.Currency;
 import com.amigoscode.customerapitdd.model.Payment;
 import org.assertj.core.api.Assertions;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
-@DataJpaTest(properties = {"spring.jpa.properties.javax.persistence.validation.mode=none"})
+@DataJpaTest(properties = {
+        "spring.jpa.properties.javax.persistence.validation.mode=none",
+        "spring.jpa.properties.hibernate.generate_statistics=true"      // counts the JDBC statements prepared per flush
+})
 class PaymentRepositoryTest {
 
     @Autowired
     private PaymentRepository underTest;
 
+    @Autowired
+    private TestEntityManager entityManager;
+
     @Test
     void itShouldInsertPayment() {
         // given
@@ -40,4 +53,91 @@ class PaymentRepositoryTest {
                     Assertions.assertThat(p).isEqualToComparingFieldByField(payment);
                 });
     }
-}
\ No newline at end of file
+
+    @Test
+    void itShouldSelectPaymentByIdempotencyKey() {
+        // given
+        Payment payment = new Payment(null,
+                UUID.randomUUID(),
+                new BigDecimal("10.00"),
+                Currency.USD,
+                "card123",
+                "Donation");
+        payment.setIdempotencyKey("key-1");
+
+        // when
+        underTest.save(payment);
+
+        // then
+        Assertions.assertThat(underTest.findByIdempotencyKey("key-1"))
+                .isPresent()
+                .hasValueSatisfying(p -> Assertions.assertThat(p.getIdempotencyKey()).isEqualTo("key-1"));
+        Assertions.assertThat(underTest.findByIdempotencyKey("key-2")).isNotPresent();
+    }
+
+    @Test
+    void itShouldInsertPaymentsInJdbcBatches() {
+        // given
+        int payments = 500;
+        int batchSize = 50;
+        List<Payment> toInsert = new ArrayList<>();
+        for (int i = 0; i < payments; i++) {
+            toInsert.add(new Payment(null, UUID.randomUUID(), new BigDecimal("10.00"), Currency.USD, "card123", "Donation"));
+        }
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+        statistics.clear();
+
+        // when
+        underTest.saveAll(toInsert);
+        entityManager.flush();
+
+        // then
+        // ... one sequence call per allocated block of ids plus one insert statement per JDBC batch
+        Assertions.assertThat(statistics.getPrepareStatementCount())
+                .isLessThanOrEqualTo(2L * (payments / batchSize) + 2);
+        Assertions.assertThat(toInsert).extracting(Payment::getPaymentId).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void itShouldSelectCustomerPaymentsAfterCursorInPaymentIdOrder() {
+        // given
+        UUID customerId = UUID.randomUUID();
+        List<Payment> payments = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            payments.add(new Payment(null, customerId, new BigDecimal("10.00"), Currency.USD, "card123", "Donation"));
+        }
+        underTest.save(new Payment(null, UUID.randomUUID(), new BigDecimal("10.00"), Currency.USD, "card123", "Donation"));
+        underTest.saveAll(payments);
+
+        // when
+        List<Payment> firstPage = underTest.selectPaymentPage(customerId, 0L, PageRequest.of(0, 3));
+        List<Payment> secondPage = underTest.selectPaymentPage(
+                customerId, firstPage.get(firstPage.size() - 1).getPaymentId(), PageRequest.of(0, 3));
+
+        // then
+        Assertions.assertThat(firstPage).containsExactlyElementsOf(payments.subList(0, 3));
+        Assertions.assertThat(secondPage).containsExactlyElementsOf(payments.subList(3, 5));
+    }
+
+    @Test
+    void itShouldInsertOnlyPaymentsNotStoredYet() {
+        // given
+        UUID customerId = UUID.randomUUID();
+        Payment stored = new Payment(1_000L, customerId, new BigDecimal("10.00"), Currency.USD, "card123", "Donation");
+        stored.setCreatedAt(Instant.now());
+        Payment missing = new Payment(1_001L, customerId, new BigDecimal("20.00"), Currency.GBP, "card123", "Donation");
+        missing.setCreatedAt(Instant.now());
+        underTest.insertMissing(List.of(stored));
+
+        // when
+        List<Payment> inserted = underTest.insertMissing(List.of(stored, missing));
+
+        // then
+        Assertions.assertThat(inserted).containsExactly(missing);
+        Assertions.assertThat(underTest.selectPaymentPage(customerId, 0L, PageRequest.of(0, 10)))
+                .extracting(Payment::getPaymentId)
+                .containsExactly(1_000L, 1_001L);
+    }
+}
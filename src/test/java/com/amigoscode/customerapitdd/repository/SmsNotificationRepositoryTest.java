@@ -0,0 +1,71 @@
+package com.amigoscode.customerapitdd.repository;
+
+import com.amigoscode.customerapitdd.model.SmsNotification;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+class SmsNotificationRepositoryTest {
+
+    private static final SmsNotification.Status PENDING = SmsNotification.Status.PENDING;
+    private static final SmsNotification.Status SENDING = SmsNotification.Status.SENDING;
+
+    @Autowired
+    private SmsNotificationRepository underTest;
+
+    @Test
+    void itShouldLetOnlyOneDispatcherClaimANotification() {
+        // given
+        Instant now = Instant.now();
+        underTest.save(new SmsNotification(1L, UUID.randomUUID(), "Payment received"));
+        underTest.save(new SmsNotification(2L, UUID.randomUUID(), "Payment received"));
+        SmsNotification sent = new SmsNotification(3L, UUID.randomUUID(), "Payment received");
+        sent.setStatus(SmsNotification.Status.SENT);
+        underTest.save(sent);
+        List<Long> ids = underTest.selectClaimableIds(PENDING, SENDING, now, PageRequest.of(0, 10));
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        // when
+        int claimedFirst = underTest.claim(ids, first, now.plus(Duration.ofMinutes(1)), PENDING, SENDING, now);
+        int claimedSecond = underTest.claim(ids, second, now.plus(Duration.ofMinutes(1)), PENDING, SENDING, now);
+
+        // then
+        assertThat(ids).hasSize(2);
+        assertThat(claimedFirst).isEqualTo(2);
+        assertThat(claimedSecond).isZero();
+        assertThat(underTest.findByClaimTokenOrderByIdAsc(first))
+                .extracting(SmsNotification::getStatus)
+                .containsExactly(SENDING, SENDING);
+        assertThat(underTest.selectClaimableIds(PENDING, SENDING, now, PageRequest.of(0, 10))).isEmpty();
+    }
+
+    @Test
+    void itShouldReclaimNotificationsWhoseClaimExpired() {
+        // given
+        Instant now = Instant.now();
+        underTest.save(new SmsNotification(1L, UUID.randomUUID(), "Payment received"));
+        List<Long> ids = underTest.selectClaimableIds(PENDING, SENDING, now, PageRequest.of(0, 10));
+        underTest.claim(ids, UUID.randomUUID(), now.plus(Duration.ofMinutes(1)), PENDING, SENDING, now);
+        Instant later = now.plus(Duration.ofMinutes(2));
+        UUID second = UUID.randomUUID();
+
+        // when
+        List<Long> expired = underTest.selectClaimableIds(PENDING, SENDING, later, PageRequest.of(0, 10));
+        int claimed = underTest.claim(expired, second, later.plus(Duration.ofMinutes(1)), PENDING, SENDING, later);
+
+        // then
+        assertThat(expired).isEqualTo(ids);
+        assertThat(claimed).isEqualTo(1);
+        assertThat(underTest.findByClaimTokenOrderByIdAsc(second)).hasSize(1);
+    }
+}
@@ -0,0 +1,171 @@
+package com.amigoscode.customerapitdd.search;
+
+import com.amigoscode.customerapitdd.dto.CustomerSearchResult;
+import com.amigoscode.customerapitdd.model.Customer;
+import com.amigoscode.customerapitdd.repository.CustomerRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+
+class CustomerSearchIndexTest {
+
+    private final CustomerRepository customerRepository = mock(CustomerRepository.class);
+    private final CustomerSearchIndex underTest = new CustomerSearchIndex(customerRepository, 2, false);
+
+    @Test
+    void itShouldListWordPrefixMatchesBeforeOtherMatches() {
+        // given
+        underTest.add(customer("Joanna Lee", "+447700900001"));
+        underTest.add(customer("Anna Smith", "+447700900002"));
+        underTest.add(customer("Hannah Brown", "+447700900003"));
+        underTest.add(customer("Annabel Ray", "+447700900004"));
+        underTest.add(customer("Bob Stone", "+447700900005"));
+
+        // when
+        List<CustomerSearchResult> results = underTest.search("ANN", 10);
+
+        // then
+        assertThat(results).extracting(CustomerSearchResult::getName)
+                .containsExactly("Anna Smith", "Annabel Ray", "Joanna Lee", "Hannah Brown");
+    }
+
+    @Test
+    void itShouldMatchEveryQueryWordInAnyOrder() {
+        // given
+        underTest.add(customer("Anna Smith", "+447700900002"));
+        underTest.add(customer("Anna Lee", "+447700900003"));
+        underTest.add(customer("O'Brien, Mary-Ann", "+447700900004"));
+
+        // when / then
+        assertThat(underTest.search("smi a", 10)).extracting(CustomerSearchResult::getName)
+                .containsExactly("Anna Smith");
+        assertThat(underTest.search("mary obr", 10)).isEmpty();
+        assertThat(underTest.search("ann brien", 10)).extracting(CustomerSearchResult::getName)
+                .containsExactly("O'Brien, Mary-Ann");
+        assertThat(underTest.search("mith", 10)).extracting(CustomerSearchResult::getName)
+                .containsExactly("Anna Smith");
+    }
+
+    @Test
+    void itShouldFindCustomersByAFragmentOfTheirPhoneNumber() {
+        // given
+        Customer maria = customer("Maria", "07700 900123");
+        underTest.add(maria);
+        underTest.add(customer("Ali", "+1 555 0100"));
+
+        // when / then
+        assertThat(underTest.search("900 123", 10)).extracting(CustomerSearchResult::getId)
+                .containsExactly(maria.getId());
+        assertThat(underTest.search("0044 7700", 10)).extracting(CustomerSearchResult::getId)
+                .containsExactly(maria.getId());
+        assertThat(underTest.search("07700900123", 10)).extracting(CustomerSearchResult::getPhoneNumber)
+                .containsExactly("07700 900123");
+        assertThat(underTest.search("1239", 10)).isEmpty();
+    }
+
+    @Test
+    void itShouldStopAtTheLimit() {
+        // given
+        for (int i = 0; i < 10; i++) {
+            underTest.add(customer("Sam " + i, "+44770090010" + i));
+        }
+
+        // when
+        List<CustomerSearchResult> results = underTest.search("sam", 3);
+
+        // then
+        assertThat(results).extracting(CustomerSearchResult::getName)
+                .containsExactly("Sam 0", "Sam 1", "Sam 2");
+        assertThat(underTest.search("s", 1000)).hasSize(10);
+        assertThat(underTest.search(" - ", 10)).isEmpty();
+    }
+
+    @Test
+    void itShouldRebuildFromTheCustomerTablePageByPage() {
+        // given
+        Customer first = customer("Ada Lovelace", "+447700900001");
+        Customer second = customer("Alan Turing", "+447700900002");
+        Customer third = customer("Grace Hopper", "+447700900003");
+        given(customerRepository.selectCustomerPage(PageRequest.of(0, 2))).willReturn(List.of(first, second));
+        given(customerRepository.selectCustomerPage(second.getId(), PageRequest.of(0, 2))).willReturn(List.of(third));
+        underTest.add(customer("Gone Away", "+447700900004"));
+
+        // when
+        int indexed = underTest.rebuild();
+        underTest.add(third);
+
+        // then
+        assertThat(indexed).isEqualTo(3);
+        assertThat(underTest.search("gone", 10)).isEmpty();
+        assertThat(underTest.search("hop", 10)).extracting(CustomerSearchResult::getId)
+                .containsExactly(third.getId());
+        assertThat(underTest.search("a", 10)).hasSize(2);
+    }
+
+    @Test
+    void itShouldFollowCustomersWhoseIdChanged() {
+        // given
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            Customer customer = customer("Sam " + i, String.format("+4477009%05d", i));
+            customers.add(customer);
+            underTest.add(customer);
+        }
+
+        // when
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < customers.size(); i++) {
+            UUID id = customers.get(i).getId();
+            if (i % 2 == 0) {
+                UUID newId = UUID.randomUUID();
+                underTest.changeId(id, newId);
+                id = newId;
+            }
+            ids.add(id);
+        }
+        // indexing a customer under its current id again is a no-op only if the id is still found
+        for (int i = 0; i < customers.size(); i++) {
+            Customer customer = customers.get(i);
+            underTest.add(new Customer(ids.get(i), customer.getName(), customer.getPhoneNumber()));
+        }
+
+        // then
+        for (int i = 0; i < customers.size(); i++) {
+            assertThat(underTest.search(customers.get(i).getPhoneNumber(), 10))
+                    .extracting(CustomerSearchResult::getId)
+                    .containsExactly(ids.get(i));
+        }
+    }
+
+    @Test
+    void itShouldRebuildOnStartupOnlyForItsOwnContext() {
+        // given
+        CustomerSearchIndex rebuildingOnStartup = new CustomerSearchIndex(customerRepository, 2, true);
+        ApplicationContext applicationContext = mock(ApplicationContext.class);
+        ApplicationContext childContext = mock(ApplicationContext.class);
+        rebuildingOnStartup.setApplicationContext(applicationContext);
+        given(customerRepository.selectCustomerPage(PageRequest.of(0, 2))).willReturn(List.of());
+
+        // when
+        rebuildingOnStartup.rebuildOnStartup(new ContextRefreshedEvent(applicationContext));
+        rebuildingOnStartup.rebuildOnStartup(new ContextRefreshedEvent(childContext));
+
+        // then
+        then(customerRepository).should(times(1)).selectCustomerPage(PageRequest.of(0, 2));
+    }
+
+    private static Customer customer(String name, String phoneNumber) {
+        return new Customer(UUID.randomUUID(), name, phoneNumber);
+    }
+}
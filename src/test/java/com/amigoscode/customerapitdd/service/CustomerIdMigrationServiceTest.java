@@ -0,0 +1,72 @@
+package com.amigoscode.customerapitdd.service;
+
+import com.amigoscode.customerapitdd.cache.CustomerCache;
+import com.amigoscode.customerapitdd.config.IdGeneratorConfig;
+import com.amigoscode.customerapitdd.dto.CustomerSearchResult;
+import com.amigoscode.customerapitdd.id.TimeOrderedUuidGenerator;
+import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.model.Customer;
+import com.amigoscode.customerapitdd.model.Payment;
+import com.amigoscode.customerapitdd.repository.CustomerRepository;
+import com.amigoscode.customerapitdd.repository.PaymentRepository;
+import com.amigoscode.customerapitdd.search.CustomerSearchIndex;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {"spring.jpa.properties.javax.persistence.validation.mode=none"})
+@Import({CustomerIdMigrationService.class, CustomerCache.class, IdGeneratorConfig.class, CustomerSearchIndex.class})
+class CustomerIdMigrationServiceTest {
+
+    @Autowired
+    private CustomerIdMigrationService underTest;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private PaymentRepository paymentRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private CustomerSearchIndex customerSearchIndex;
+    @Autowired
+    private CustomerCache customerCache;
+
+    @Test
+    void itShouldMoveCustomersAndTheirPaymentsToTimeOrderedIds() {
+        // given
+        UUID randomId = UUID.randomUUID();
+        UUID timeOrderedId = new TimeOrderedUuidGenerator().generateId();
+        Customer abel = customerRepository.save(new Customer(randomId, "Abel", "0000"));
+        customerRepository.save(new Customer(timeOrderedId, "Alex", "0001"));
+        customerCache.put(abel);
+        customerSearchIndex.add(abel);
+        paymentRepository.save(new Payment(null, randomId, new BigDecimal("10.00"), Currency.USD, "card123", "Donation"));
+        entityManager.flush();
+
+        // when
+        int migrated = underTest.migrateToTimeOrderedIds();
+        entityManager.clear();
+
+        // then
+        assertThat(migrated).isEqualTo(1);
+        List<UUID> ids = customerRepository.selectAllIds();
+        assertThat(ids).hasSize(2).contains(timeOrderedId).doesNotContain(randomId);
+        assertThat(ids).allMatch(TimeOrderedUuidGenerator::isTimeOrdered);
+
+        UUID migratedId = ids.stream().filter(id -> !id.equals(timeOrderedId)).findFirst().orElseThrow();
+        assertThat(paymentRepository.findAll()).allMatch(p -> p.getCustomerId().equals(migratedId));
+        assertThat(customerCache.isKnownCustomer(randomId)).isFalse();
+        assertThat(customerCache.getByPhoneNumber(abel.getNormalizedPhoneNumber())).isEmpty();
+        assertThat(customerSearchIndex.search("Abel", 10))
+                .extracting(CustomerSearchResult::getId)
+                .containsExactly(migratedId);
+    }
+}
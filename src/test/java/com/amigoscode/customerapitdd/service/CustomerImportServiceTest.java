@@ -0,0 +1,106 @@
+package com.amigoscode.customerapitdd.service;
+
+import com.amigoscode.customerapitdd.cache.CustomerCache;
+import com.amigoscode.customerapitdd.config.IdGeneratorConfig;
+import com.amigoscode.customerapitdd.dto.CustomerImportResult;
+import com.amigoscode.customerapitdd.dto.CustomerImportResult.Status;
+import com.amigoscode.customerapitdd.dto.CustomerSearchResult;
+import com.amigoscode.customerapitdd.metrics.RegistrationMetrics;
+import com.amigoscode.customerapitdd.model.Customer;
+import com.amigoscode.customerapitdd.repository.CustomerRepository;
+import com.amigoscode.customerapitdd.search.CustomerSearchIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@DataJpaTest(properties = {"customer.import.chunk-size=3"})
+@Import({CustomerImportService.class, CustomerCache.class, IdGeneratorConfig.class,
+        RegistrationMetrics.class, SimpleMeterRegistry.class, CustomerSearchIndex.class})
+class CustomerImportServiceTest {
+
+    @Autowired
+    private CustomerImportService underTest;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private CustomerCache customerCache;
+    @Autowired
+    private CustomerSearchIndex customerSearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        // each test rolls back its customers, the cache would still remember them
+        customerCache.invalidateAll();
+    }
+
+    @Test
+    void itShouldReportAnOutcomePerLine() {
+        // given
+        UUID existingId = UUID.randomUUID();
+        customerRepository.save(new Customer(existingId, "Maria", "+447700900123"));
+        String csv = "name,phoneNumber\n" +
+                "Maria,07700 900123\n" +
+                "Ali,0044 7700 900123\n" +
+                "\"Doe, John\",07700 900124\n" +
+                "John,+447700900124\n" +
+                "\n" +
+                "Zoe\n" +
+                "Zoe,+1 555 0100\n";
+        List<CustomerImportResult> results = new ArrayList<>();
+
+        // when
+        long imported = underTest.importCustomers(CustomerImportReader.csv(new StringReader(csv)), results::add);
+
+        // then
+        assertThat(imported).isEqualTo(6);
+        assertThat(results)
+                .extracting(CustomerImportResult::getLineNumber, CustomerImportResult::getStatus)
+                .containsExactly(
+                        tuple(2L, Status.ALREADY_REGISTERED),
+                        tuple(3L, Status.PHONE_NUMBER_TAKEN),
+                        tuple(4L, Status.REGISTERED),
+                        tuple(5L, Status.PHONE_NUMBER_TAKEN),
+                        tuple(7L, Status.INVALID),
+                        tuple(8L, Status.REGISTERED));
+        assertThat(results.get(0).getCustomerId()).isEqualTo(existingId);
+        assertThat(customerRepository.findByNormalizedPhoneNumber("+447700900124"))
+                .hasValueSatisfying(customer -> assertThat(customer.getName()).isEqualTo("Doe, John"));
+        assertThat(customerRepository.count()).isEqualTo(3);
+        assertThat(customerSearchIndex.search("doe jo", 10))
+                .extracting(CustomerSearchResult::getId)
+                .containsExactly(results.get(2).getCustomerId());
+    }
+
+    @Test
+    void itShouldSeeCustomersImportedByEarlierChunks() {
+        // given
+        String ndjson = "{\"name\":\"Maria\",\"phoneNumber\":\"+447700900123\"}\n" +
+                "not json\n" +
+                "{\"name\":\"Ali\",\"phoneNumber\":\"+447700900124\"}\n" +
+                "{\"name\":\"Maria\",\"phoneNumber\":\"07700900123\"}\n";
+        List<CustomerImportResult> results = new ArrayList<>();
+
+        // when
+        underTest.importCustomers(
+                CustomerImportReader.ndjson(new StringReader(ndjson), new ObjectMapper()),
+                results::add);
+
+        // then
+        assertThat(results)
+                .extracting(CustomerImportResult::getStatus)
+                .containsExactly(Status.REGISTERED, Status.INVALID, Status.REGISTERED, Status.ALREADY_REGISTERED);
+        assertThat(results.get(3).getCustomerId()).isEqualTo(results.get(0).getCustomerId());
+    }
+}
@@ -1,23 +1,37 @@
 package com.amigoscode.customerapitdd.service;
 
+import com.amigoscode.customerapitdd.cache.CustomerCache;
 import com.amigoscode.customerapitdd.dto.CustomerRequest;
+import com.amigoscode.customerapitdd.dto.CustomerSummary;
+import com.amigoscode.customerapitdd.id.TimeOrderedUuidGenerator;
+import com.amigoscode.customerapitdd.metrics.RegistrationMetrics;
 import com.amigoscode.customerapitdd.model.Customer;
+import com.amigoscode.customerapitdd.model.PhoneNumbers;
+import com.amigoscode.customerapitdd.replica.ReadYourWritesPins;
 import com.amigoscode.customerapitdd.repository.CustomerRepository;
+import com.amigoscode.customerapitdd.search.CustomerSearchIndex;
 import org.assertj.core.api.Assertions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 
 class CustomerServiceTest {
 
@@ -26,13 +40,20 @@ class CustomerServiceTest {
     @Mock
     private CustomerRepository customerRepository;
 
+    private CustomerCache customerCache;
+    private RegistrationMetrics registrationMetrics;
+
     @Captor
     private ArgumentCaptor<Customer> customerArgumentCaptor;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.initMocks(this);
-        underTest = new CustomerService(customerRepository);
+        customerCache = new CustomerCache(100, 60);
+        registrationMetrics = new RegistrationMetrics(new SimpleMeterRegistry());
+        underTest = new CustomerService(
+                customerRepository, customerCache, new TimeOrderedUuidGenerator(), registrationMetrics,
+                new ReadYourWritesPins(false, 100, 1000), new CustomerSearchIndex(customerRepository, 1000, false));
     }
 
     @Test
@@ -45,7 +66,7 @@ class CustomerServiceTest {
         CustomerRequest request = new CustomerRequest(customer);
 
         // ... no customer with phone number passed
-        given(customerRepository.selectCustomerByPhoneNumber(phoneNumber)).willReturn(Optional.empty());
+        given(customerRepository.findByNormalizedPhoneNumber(PhoneNumbers.normalize(phoneNumber))).willReturn(Optional.empty());
 
         // when
         underTest.registerNewCustomer(request);
@@ -66,7 +87,7 @@ class CustomerServiceTest {
         CustomerRequest request = new CustomerRequest(customer);
 
         // ... no customer with phone number passed
-        given(customerRepository.selectCustomerByPhoneNumber(phoneNumber)).willReturn(Optional.empty());
+        given(customerRepository.findByNormalizedPhoneNumber(PhoneNumbers.normalize(phoneNumber))).willReturn(Optional.empty());
 
         // when
         underTest.registerNewCustomer(request);
@@ -74,8 +95,9 @@ class CustomerServiceTest {
         // then
         then(customerRepository).should().save(customerArgumentCaptor.capture());
         Customer argumentCaptorValue = customerArgumentCaptor.getValue();
-        Assertions.assertThat(argumentCaptorValue).isEqualToIgnoringGivenFields(customer, "id");    // UUID.random will set a new id, so this field must be ignored
+        Assertions.assertThat(argumentCaptorValue).isEqualToIgnoringGivenFields(customer, "id");    // the id generator will set a new id, so this field must be ignored
         Assertions.assertThat(argumentCaptorValue.getId()).isNotNull();                                                   // if id is captured, customer was saved
+        Assertions.assertThat(TimeOrderedUuidGenerator.isTimeOrdered(argumentCaptorValue.getId())).isTrue();
     }
 
     @Test
@@ -88,14 +110,14 @@ class CustomerServiceTest {
         CustomerRequest request = new CustomerRequest(customer);
 
         // ... an existing customer is returned
-        given(customerRepository.selectCustomerByPhoneNumber(phoneNumber)).willReturn(Optional.of(customer));
+        given(customerRepository.findByNormalizedPhoneNumber(PhoneNumbers.normalize(phoneNumber))).willReturn(Optional.of(summaryOf(customer)));
 
         // when
         underTest.registerNewCustomer(request);
 
         // then
         then(customerRepository).should(never()).save(any());
-        // then(customerRepository).should().selectCustomerByPhoneNumber(phoneNumber);
+        // then(customerRepository).should().findByNormalizedPhoneNumber(PhoneNumbers.normalize(phoneNumber));
         // then(customerRepository).shouldHaveNoMoreInteractions();
         // then(customerRepository).shouldHaveNoInteractions();  // when repository has no interaction int the method
     }
@@ -110,7 +132,7 @@ class CustomerServiceTest {
         CustomerRequest request = new CustomerRequest(customer);
 
         // ... no customer with phone number passed
-        given(customerRepository.selectCustomerByPhoneNumber(phoneNumber)).willReturn(Optional.of(differentCustomer));
+        given(customerRepository.findByNormalizedPhoneNumber(PhoneNumbers.normalize(phoneNumber))).willReturn(Optional.of(summaryOf(differentCustomer)));
 
         // when
         // then
@@ -119,5 +141,162 @@ class CustomerServiceTest {
                 .hasMessageContaining(String.format("phone number [%s] is taken", phoneNumber));
 
         then(customerRepository).should(never()).save(any(Customer.class));
+        Assertions.assertThat(registrationMetrics.phoneNumberTakenCount()).isEqualTo(1);
+    }
+
+    @Test
+    void itShouldServeRepeatedRegistrationFromCache() {
+        // given phone number and a customer
+        String phoneNumber = "000099";
+        Customer customer = new Customer(UUID.randomUUID(), "Joseph", phoneNumber);
+        CustomerRequest request = new CustomerRequest(customer);
+
+        given(customerRepository.findByNormalizedPhoneNumber(PhoneNumbers.normalize(phoneNumber))).willReturn(Optional.empty());
+
+        // when
+        underTest.registerNewCustomer(request);
+        underTest.registerNewCustomer(new CustomerRequest(new Customer(null, "Joseph", phoneNumber)));
+
+        // then
+        then(customerRepository).should().findByNormalizedPhoneNumber(PhoneNumbers.normalize(phoneNumber));
+        then(customerRepository).should().save(customer);
+        then(customerRepository).shouldHaveNoMoreInteractions();
+        Assertions.assertThat(customerCache.isKnownCustomer(customer.getId())).isTrue();
+    }
+
+    @Test
+    void itShouldInvalidateCacheWhenSaveFails() {
+        // given
+        String phoneNumber = "000099";
+        Customer customer = new Customer(UUID.randomUUID(), "Joseph", phoneNumber);
+
+        given(customerRepository.findByNormalizedPhoneNumber(PhoneNumbers.normalize(phoneNumber))).willReturn(Optional.empty());
+        given(customerRepository.save(customer)).willThrow(new IllegalStateException("db down"));
+
+        // when
+        Assertions.assertThatThrownBy(() -> underTest.registerNewCustomer(new CustomerRequest(customer)))
+                .isInstanceOf(IllegalStateException.class);
+
+        // then
+        Assertions.assertThat(customerCache.getByPhoneNumber(PhoneNumbers.normalize(phoneNumber))).isNotPresent();
+        Assertions.assertThat(customerCache.isKnownCustomer(customer.getId())).isFalse();
+    }
+
+    @Test
+    void itShouldThrowWhenPhoneIsTakenInAnotherFormat() {
+        // given a customer registered with a national number
+        Customer existing = new Customer(UUID.randomUUID(), "Shirley", "07700 900123");
+        Customer customer = new Customer(null, "Joseph", "+44 7700 900123");
+
+        given(customerRepository.findByNormalizedPhoneNumber("+447700900123")).willReturn(Optional.of(summaryOf(existing)));
+
+        // when
+        // then
+        Assertions.assertThatThrownBy(() -> underTest.registerNewCustomer(new CustomerRequest(customer)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("phone number [+44 7700 900123] is taken");
+
+        then(customerRepository).should(never()).save(any(Customer.class));
+    }
+
+    @Test
+    void itShouldCoalesceConcurrentRegistrationsOfSamePhoneNumber() throws Exception {
+        // given a lookup that blocks until every duplicate has arrived
+        String phoneNumber = "000099";
+        CountDownLatch lookupStarted = new CountDownLatch(1);
+        CountDownLatch releaseLookup = new CountDownLatch(1);
+        given(customerRepository.findByNormalizedPhoneNumber(PhoneNumbers.normalize(phoneNumber))).willAnswer(invocation -> {
+            lookupStarted.countDown();
+            releaseLookup.await();
+            return Optional.empty();
+        });
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+        Thread first = registration(new Customer(null, "Joseph", phoneNumber), failures);
+        first.start();
+        lookupStarted.await();
+
+        // when
+        Thread doubleSubmit = registration(new Customer(null, "Joseph", phoneNumber), failures);
+        Thread otherCustomer = registration(new Customer(null, "Shirley", phoneNumber), failures);
+        doubleSubmit.start();
+        otherCustomer.start();
+        awaitWaiting(doubleSubmit);
+        awaitWaiting(otherCustomer);
+        releaseLookup.countDown();
+        for (Thread thread : List.of(first, doubleSubmit, otherCustomer)) {
+            thread.join();
+        }
+
+        // then
+        then(customerRepository).should().findByNormalizedPhoneNumber(PhoneNumbers.normalize(phoneNumber));
+        then(customerRepository).should().save(any(Customer.class));
+        then(customerRepository).shouldHaveNoMoreInteractions();
+        Assertions.assertThat(failures).hasSize(1);
+        Assertions.assertThat(failures.get(0))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage(String.format("phone number [%s] is taken", phoneNumber));
+    }
+
+    @Test
+    void itShouldTranslateConstraintViolationIntoPhoneNumberTaken() {
+        // given a customer inserted by another instance after the lookup
+        String phoneNumber = "000099";
+        Customer customer = new Customer(UUID.randomUUID(), "Joseph", phoneNumber);
+
+        given(customerRepository.findByNormalizedPhoneNumber(PhoneNumbers.normalize(phoneNumber))).willReturn(Optional.empty());
+        given(customerRepository.save(customer)).willThrow(new DataIntegrityViolationException("unique index"));
+
+        // when
+        // then
+        Assertions.assertThatThrownBy(() -> underTest.registerNewCustomer(new CustomerRequest(customer)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage(String.format("phone number [%s] is taken", phoneNumber));
+
+        // ... the lookup, then the primary deciding who holds the number
+        then(customerRepository).should(times(2)).findByNormalizedPhoneNumber(PhoneNumbers.normalize(phoneNumber));
+        then(customerRepository).should().save(customer);
+        then(customerRepository).shouldHaveNoMoreInteractions();
+        Assertions.assertThat(registrationMetrics.phoneNumberTakenCount()).isEqualTo(1);
+    }
+
+    @Test
+    void itShouldTreatConstraintViolationOfSameCustomerAsAlreadyRegistered() {
+        // given a lookup on a replica that has not seen the customer registered through another instance
+        String phoneNumber = "000099";
+        Customer customer = new Customer(UUID.randomUUID(), "Joseph", phoneNumber);
+        CustomerSummary registered = summaryOf(new Customer(UUID.randomUUID(), "Joseph", phoneNumber));
+
+        given(customerRepository.findByNormalizedPhoneNumber(PhoneNumbers.normalize(phoneNumber)))
+                .willReturn(Optional.empty(), Optional.of(registered));
+        given(customerRepository.save(customer)).willThrow(new DataIntegrityViolationException("unique index"));
+
+        // when
+        underTest.registerNewCustomer(new CustomerRequest(customer));
+
+        // then
+        then(customerRepository).should(times(2)).findByNormalizedPhoneNumber(PhoneNumbers.normalize(phoneNumber));
+        Assertions.assertThat(registrationMetrics.phoneNumberTakenCount()).isEqualTo(0);
+        Assertions.assertThat(customerCache.getByPhoneNumber(PhoneNumbers.normalize(phoneNumber)))
+                .hasValueSatisfying(holder -> Assertions.assertThat(holder.getId()).isEqualTo(registered.getId()));
+    }
+
+    private Thread registration(Customer customer, List<Throwable> failures) {
+        return new Thread(() -> {
+            try {
+                underTest.registerNewCustomer(new CustomerRequest(customer));
+            } catch (RuntimeException e) {
+                failures.add(e);
+            }
+        });
+    }
+
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        while (thread.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static CustomerSummary summaryOf(Customer customer) {
+        return new SpelAwareProxyProjectionFactory().createProjection(CustomerSummary.class, customer);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,78 @@
+package com.amigoscode.customerapitdd.service;
+
+import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.model.Payment;
+import com.amigoscode.customerapitdd.repository.JpaPaymentStore;
+import com.amigoscode.customerapitdd.repository.PaymentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.times;
+
+class PaymentHistoryServiceTest {
+
+    private PaymentHistoryService underTest;
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    private final UUID customerId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        underTest = new PaymentHistoryService(new JpaPaymentStore(paymentRepository, null), 2);
+    }
+
+    @Test
+    void itShouldWalkPagesUsingLastPaymentIdAsCursor() {
+        // given
+        given(paymentRepository.selectPaymentPage(customerId, 0L, PageRequest.of(0, 2)))
+                .willReturn(List.of(payment(1L), payment(2L)));
+        given(paymentRepository.selectPaymentPage(customerId, 2L, PageRequest.of(0, 2)))
+                .willReturn(List.of(payment(5L)));
+
+        // when
+        List<Long> visited = new ArrayList<>();
+        long count = underTest.forEachPayment(customerId, 0L, -1, p -> visited.add(p.getPaymentId()));
+
+        // then
+        assertThat(count).isEqualTo(3);
+        assertThat(visited).containsExactly(1L, 2L, 5L);
+        then(paymentRepository).should(times(2)).selectPaymentPage(any(), anyLong(), any());
+    }
+
+    @Test
+    void itShouldStopAtLimit() {
+        // given
+        given(paymentRepository.selectPaymentPage(customerId, 10L, PageRequest.of(0, 2)))
+                .willReturn(List.of(payment(11L), payment(12L)));
+        given(paymentRepository.selectPaymentPage(customerId, 12L, PageRequest.of(0, 1)))
+                .willReturn(List.of(payment(13L)));
+
+        // when
+        List<Long> visited = new ArrayList<>();
+        long count = underTest.forEachPayment(customerId, 10L, 3, p -> visited.add(p.getPaymentId()));
+
+        // then
+        assertThat(count).isEqualTo(3);
+        assertThat(visited).containsExactly(11L, 12L, 13L);
+    }
+
+    private Payment payment(long paymentId) {
+        return new Payment(paymentId, customerId, new BigDecimal("10.00"), Currency.USD, "card123", "Donation");
+    }
+}
@@ -1,12 +1,28 @@
 package com.amigoscode.customerapitdd.service;
 
+import com.amigoscode.customerapitdd.aggregate.PaymentAggregates;
+import com.amigoscode.customerapitdd.cache.CustomerCache;
+import com.amigoscode.customerapitdd.cache.PaymentIdempotencyStore;
+import com.amigoscode.customerapitdd.dto.BatchPaymentRequest;
+import com.amigoscode.customerapitdd.dto.BatchPaymentResult;
 import com.amigoscode.customerapitdd.dto.PaymentRequest;
+import com.amigoscode.customerapitdd.interfaces.AsyncCardCharger;
 import com.amigoscode.customerapitdd.interfaces.CardCharger;
+import com.amigoscode.customerapitdd.metrics.PaymentMetrics;
 import com.amigoscode.customerapitdd.model.Currency;
 import com.amigoscode.customerapitdd.model.Customer;
+import com.amigoscode.customerapitdd.model.Money;
 import com.amigoscode.customerapitdd.model.Payment;
+import com.amigoscode.customerapitdd.model.SmsNotification;
+import com.amigoscode.customerapitdd.policy.CurrencyPolicies;
+import com.amigoscode.customerapitdd.policy.CurrencyPolicy;
+import com.amigoscode.customerapitdd.replica.ReadYourWritesPins;
 import com.amigoscode.customerapitdd.repository.CustomerRepository;
+import com.amigoscode.customerapitdd.repository.JpaPaymentStore;
 import com.amigoscode.customerapitdd.repository.PaymentRepository;
+import com.amigoscode.customerapitdd.repository.SmsNotificationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -15,15 +31,26 @@ import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 
 class PaymentServiceTest {
@@ -35,12 +62,39 @@ class PaymentServiceTest {
     @Mock
     private PaymentRepository paymentRepository;
     @Mock
+    private SmsNotificationRepository smsNotificationRepository;
+    @Mock
     private CardCharger cardCharger;
+    @Mock
+    private AsyncCardCharger asyncCardCharger;
+
+    private CustomerCache customerCache;
+    private PaymentIdempotencyStore idempotencyStore;
+    private PaymentMetrics paymentMetrics;
+    private PaymentAggregates paymentAggregates;
+    private CurrencyPolicies currencyPolicies;
+    private final ExecutorService batchCardChargerExecutor = Executors.newFixedThreadPool(4);
 
     @BeforeEach
     void setup() {
         MockitoAnnotations.initMocks(this);
-        underTest = new PaymentService(customerRepository, paymentRepository, cardCharger);
+        customerCache = new CustomerCache(100, 60);
+        idempotencyStore = new PaymentIdempotencyStore(new JpaPaymentStore(paymentRepository, smsNotificationRepository), 100, 60);
+        paymentMetrics = new PaymentMetrics(new SimpleMeterRegistry());
+        paymentAggregates = new PaymentAggregates(new JpaPaymentStore(paymentRepository, smsNotificationRepository), 100, false, 1000, 24);
+        currencyPolicies = new CurrencyPolicies(
+                CurrencyPolicy.accepting(EnumSet.of(Currency.USD, Currency.GBP), cardCharger));
+        underTest = new PaymentService(customerRepository,
+                new PaymentWriter(new JpaPaymentStore(paymentRepository, smsNotificationRepository)),
+                currencyPolicies,
+                asyncCardCharger,
+                customerCache, new ReadYourWritesPins(false, 100, 1000),
+                idempotencyStore, paymentMetrics, paymentAggregates, batchCardChargerExecutor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchCardChargerExecutor.shutdown();
     }
 
     @Test
@@ -49,7 +103,7 @@ class PaymentServiceTest {
         UUID customerId = UUID.randomUUID();
 
         // ... customer exists
-        given(customerRepository.findById(customerId)).willReturn(Optional.of(Mockito.mock(Customer.class)));
+        given(customerRepository.existsById(customerId)).willReturn(true);
 
         // ... payment request
         Currency currency = Currency.USD;
@@ -67,8 +121,7 @@ class PaymentServiceTest {
         // ... card is charged successfully
         given(cardCharger.chargeCard(
                 request.getPayment().getSource(),
-                request.getPayment().getAmount(),
-                request.getPayment().getCurrency(),
+                request.getPayment().getMoney(),
                 request.getPayment().getDescription()
         )).willReturn(new CardPaymentCharge(true));
 
@@ -85,6 +138,13 @@ class PaymentServiceTest {
                 request.getPayment(),"customerId");
 
         assertThat(capturedValue.getCustomerId()).isEqualTo(customerId);
+
+        ArgumentCaptor<SmsNotification> notificationCaptor = ArgumentCaptor.forClass(SmsNotification.class);
+        then(smsNotificationRepository).should().save(notificationCaptor.capture());
+        assertThat(notificationCaptor.getValue().getCustomerId()).isEqualTo(customerId);
+        assertThat(notificationCaptor.getValue().getStatus()).isEqualTo(SmsNotification.Status.PENDING);
+
+        assertThat(paymentAggregates.totalFor(customerId, currency).getAmount()).isEqualByComparingTo("100.00");
     }
 
     @Test
@@ -93,7 +153,7 @@ class PaymentServiceTest {
         UUID customerId = UUID.randomUUID();
 
         // ... customer exists
-        given(customerRepository.findById(customerId)).willReturn(Optional.of(Mockito.mock(Customer.class)));
+        given(customerRepository.existsById(customerId)).willReturn(true);
 
         // ... payment request
         Currency currency = Currency.USD;
@@ -111,8 +171,7 @@ class PaymentServiceTest {
         // ... card is not charged
         given(cardCharger.chargeCard(
                 request.getPayment().getSource(),
-                request.getPayment().getAmount(),
-                request.getPayment().getCurrency(),
+                request.getPayment().getMoney(),
                 request.getPayment().getDescription()
         )).willReturn(new CardPaymentCharge(false));
 
@@ -131,7 +190,7 @@ class PaymentServiceTest {
         UUID customerId = UUID.randomUUID();
 
         // ... customer exists
-        given(customerRepository.findById(customerId)).willReturn(Optional.of(Mockito.mock(Customer.class)));
+        given(customerRepository.existsById(customerId)).willReturn(true);
 
         // ... payment request
         Currency currency = Currency.EUR;
@@ -157,12 +216,43 @@ class PaymentServiceTest {
         then(paymentRepository).shouldHaveNoInteractions();
     }
 
+    @Test
+    void itShouldChargeThroughRoutedCardChargerWithinLimitsOfReloadedPolicy() {
+        // given
+        UUID customerId = UUID.randomUUID();
+        given(customerRepository.existsById(customerId)).willReturn(true);
+
+        // ... EUR enabled at runtime, limited to 100.00 and routed to its own card charger
+        CardCharger euCardCharger = mock(CardCharger.class);
+        given(euCardCharger.chargeCard(any(), any(), any())).willReturn(new CardPaymentCharge(true));
+        currencyPolicies.update(new CurrencyPolicy(
+                EnumSet.of(Currency.USD, Currency.GBP, Currency.EUR),
+                Map.of(),
+                Map.of(Currency.EUR, Money.of(new BigDecimal("100.00"), Currency.EUR)),
+                Map.of(Currency.EUR, euCardCharger),
+                cardCharger));
+
+        // when
+        underTest.chargeCard(customerId, new PaymentRequest(
+                new Payment(null, null, new BigDecimal("100.00"), Currency.EUR, "card123", "Donation")));
+
+        // then
+        then(euCardCharger).should().chargeCard(eq("card123"), eq(Money.of(new BigDecimal("100.00"), Currency.EUR)), eq("Donation"));
+        then(cardCharger).shouldHaveNoInteractions();
+        assertThatThrownBy(() -> underTest.chargeCard(customerId, new PaymentRequest(
+                new Payment(null, null, new BigDecimal("100.01"), Currency.EUR, "card123", "Donation"))))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("amount [100.01] not allowed for currency [EUR]");
+        assertThat(paymentMetrics.count(Currency.EUR, PaymentMetrics.Outcome.AMOUNT_NOT_ALLOWED)).isEqualTo(1);
+        then(euCardCharger).shouldHaveNoMoreInteractions();
+    }
+
     @Test
     void itShouldNotChargeAndThrownWhenCustomerNotFound() {
         // given
         UUID customerId = UUID.randomUUID();
 
-        given(customerRepository.findById(customerId)).willReturn(Optional.empty());
+        given(customerRepository.existsById(customerId)).willReturn(false);
 
         // when
         // then
@@ -173,4 +263,286 @@ class PaymentServiceTest {
         then(cardCharger).shouldHaveNoInteractions();
         then(paymentRepository).shouldHaveNoInteractions();
     }
-}
\ No newline at end of file
+
+    @Test
+    void itShouldChargeCardAsynchronously() {
+        // given
+        UUID customerId = UUID.randomUUID();
+        given(customerRepository.existsById(customerId)).willReturn(true);
+
+        Payment payment = new Payment(null, null, new BigDecimal("100.00"), Currency.USD, "card123xx", "Donation");
+        CompletableFuture<CardPaymentCharge> charge = new CompletableFuture<>();
+        given(asyncCardCharger.chargeCard("card123xx", payment.getMoney(), "Donation"))
+                .willReturn(charge);
+
+        // when
+        CompletableFuture<Payment> result = underTest.chargeCardAsync(customerId, new PaymentRequest(payment));
+
+        // then
+        assertThat(result).isNotDone();
+        then(paymentRepository).shouldHaveNoInteractions();
+
+        charge.complete(new CardPaymentCharge(true));
+
+        assertThat(result).isCompleted();
+        then(paymentRepository).should().save(payment);
+        assertThat(payment.getCustomerId()).isEqualTo(customerId);
+        then(cardCharger).shouldHaveNoInteractions();
+    }
+
+    @Test
+    void itShouldFailAsyncChargeWithoutChargingWhenCustomerNotFound() {
+        // given
+        UUID customerId = UUID.randomUUID();
+        given(customerRepository.existsById(customerId)).willReturn(false);
+
+        // when
+        CompletableFuture<Payment> result = underTest.chargeCardAsync(customerId, new PaymentRequest(new Payment()));
+
+        // then
+        assertThat(result).hasFailedWithThrowableThat()
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(String.format("customer with id [%s] not found", customerId));
+        then(asyncCardCharger).shouldHaveNoInteractions();
+    }
+
+    @Test
+    void itShouldCountPaymentOutcomesByCurrency() {
+        // given
+        UUID customerId = UUID.randomUUID();
+        given(customerRepository.existsById(customerId)).willReturn(true);
+        given(cardCharger.chargeCard(any(), any(), any()))
+                .willReturn(new CardPaymentCharge(true), new CardPaymentCharge(false));
+
+        // when
+        underTest.chargeCard(customerId, new PaymentRequest(
+                new Payment(null, null, new BigDecimal("100.00"), Currency.USD, "card123xx", "Donation")));
+        assertThatThrownBy(() -> underTest.chargeCard(customerId, new PaymentRequest(
+                new Payment(null, null, new BigDecimal("100.00"), Currency.USD, "card123xx", "Donation"))))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> underTest.chargeCard(customerId, new PaymentRequest(
+                new Payment(null, null, new BigDecimal("100.00"), Currency.EUR, "card123xx", "Donation"))))
+                .isInstanceOf(IllegalStateException.class);
+
+        // then
+        assertThat(paymentMetrics.count(Currency.USD, PaymentMetrics.Outcome.CHARGED)).isEqualTo(1);
+        assertThat(paymentMetrics.count(Currency.USD, PaymentMetrics.Outcome.CARD_NOT_DEBITED)).isEqualTo(1);
+        assertThat(paymentMetrics.count(Currency.EUR, PaymentMetrics.Outcome.CURRENCY_NOT_SUPPORTED)).isEqualTo(1);
+    }
+
+    @Test
+    void itShouldNotHitRepositoryWhenCustomerIsCached() {
+        // given
+        UUID customerId = UUID.randomUUID();
+        given(customerRepository.existsById(customerId)).willReturn(true);
+        PaymentRequest request = new PaymentRequest(
+                new Payment(null, null, new BigDecimal("100.00"), Currency.USD, "card123xx", "Donation"));
+        given(cardCharger.chargeCard(any(), any(), any())).willReturn(new CardPaymentCharge(true));
+
+        // when
+        underTest.chargeCard(customerId, request);
+        underTest.chargeCard(customerId, request);
+
+        // then
+        then(customerRepository).should(Mockito.times(1)).existsById(customerId);
+        assertThat(customerCache.customerIds().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void itShouldReplayStoredPaymentWithoutChargingAgain() {
+        // given
+        UUID customerId = UUID.randomUUID();
+        given(customerRepository.existsById(customerId)).willReturn(true);
+        given(paymentRepository.findByIdempotencyKey("key-1")).willReturn(Optional.empty());
+        given(cardCharger.chargeCard(any(), any(), any())).willReturn(new CardPaymentCharge(true));
+
+        Payment payment = new Payment(null, null, new BigDecimal("100.00"), Currency.USD, "card123xx", "Donation");
+        payment.setIdempotencyKey("key-1");
+        Payment retry = new Payment(null, null, new BigDecimal("100.00"), Currency.USD, "card123xx", "Donation");
+        retry.setIdempotencyKey("key-1");
+
+        // when
+        Payment charged = underTest.chargeCard(customerId, new PaymentRequest(payment));
+        Payment replayed = underTest.chargeCard(customerId, new PaymentRequest(retry));
+
+        // then
+        assertThat(replayed).isSameAs(charged);
+        then(cardCharger).should(Mockito.times(1)).chargeCard(any(), any(), any());
+        then(paymentRepository).should(Mockito.times(1)).save(any(Payment.class));
+    }
+
+    @Test
+    void itShouldReplayPaymentFoundInDatabase() {
+        // given
+        UUID customerId = UUID.randomUUID();
+        Payment stored = new Payment(1L, customerId, new BigDecimal("100.00"), Currency.USD, "card123xx", "Donation");
+        given(paymentRepository.findByIdempotencyKey("key-1")).willReturn(Optional.of(stored));
+
+        Payment retry = new Payment(null, null, new BigDecimal("100.00"), Currency.USD, "card123xx", "Donation");
+        retry.setIdempotencyKey("key-1");
+
+        // when
+        Payment replayed = underTest.chargeCard(customerId, new PaymentRequest(retry));
+
+        // then
+        assertThat(replayed).isSameAs(stored);
+        then(cardCharger).shouldHaveNoInteractions();
+        then(paymentRepository).should(never()).save(any(Payment.class));
+    }
+
+    @Test
+    void itShouldRejectIdempotencyKeyWhilePaymentIsInProgress() {
+        // given
+        UUID customerId = UUID.randomUUID();
+        given(paymentRepository.findByIdempotencyKey("key-1")).willReturn(Optional.empty());
+        idempotencyStore.begin("key-1");
+
+        Payment payment = new Payment(null, null, new BigDecimal("100.00"), Currency.USD, "card123xx", "Donation");
+        payment.setIdempotencyKey("key-1");
+
+        // when
+        // then
+        assertThatThrownBy(() -> underTest.chargeCard(customerId, new PaymentRequest(payment)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("payment with idempotency key [key-1] is in progress");
+        then(cardCharger).shouldHaveNoInteractions();
+    }
+
+    @Test
+    void itShouldReleaseIdempotencyKeyWhenCardIsNotCharged() {
+        // given
+        UUID customerId = UUID.randomUUID();
+        given(customerRepository.existsById(customerId)).willReturn(true);
+        given(paymentRepository.findByIdempotencyKey("key-1")).willReturn(Optional.empty());
+        given(cardCharger.chargeCard(any(), any(), any())).willReturn(new CardPaymentCharge(false));
+
+        Payment payment = new Payment(null, null, new BigDecimal("100.00"), Currency.USD, "card123xx", "Donation");
+        payment.setIdempotencyKey("key-1");
+
+        // when
+        assertThatThrownBy(() -> underTest.chargeCard(customerId, new PaymentRequest(payment)))
+                .isInstanceOf(IllegalStateException.class);
+
+        // then
+        assertThat(idempotencyStore.begin("key-1")).isTrue();
+    }
+
+    @Test
+    void itShouldChargeCardsInBatchAndReportFailuresPerItem() {
+        // given
+        UUID customerId = UUID.randomUUID();
+        UUID unknownCustomerId = UUID.randomUUID();
+        Customer customer = new Customer(customerId, "Abel", "0000");
+
+        // ... only one customer exists
+        given(customerRepository.findAllById(anyIterable())).willReturn(List.of(customer));
+
+        // ... batch with a good payment, a declined card, an unknown customer and an unsupported currency
+        Payment debited = new Payment(null, null, new BigDecimal("10.00"), Currency.USD, "card-ok", "Donation");
+        Payment declined = new Payment(null, null, new BigDecimal("20.00"), Currency.GBP, "card-ko", "Donation");
+        Payment unknown = new Payment(null, null, new BigDecimal("30.00"), Currency.USD, "card-ok", "Donation");
+        Payment euros = new Payment(null, null, new BigDecimal("40.00"), Currency.EUR, "card-ok", "Donation");
+        List<BatchPaymentRequest> requests = List.of(
+                new BatchPaymentRequest(customerId, debited),
+                new BatchPaymentRequest(customerId, declined),
+                new BatchPaymentRequest(unknownCustomerId, unknown),
+                new BatchPaymentRequest(customerId, euros)
+        );
+
+        given(cardCharger.chargeCard("card-ok", debited.getMoney(), "Donation"))
+                .willReturn(new CardPaymentCharge(true));
+        given(cardCharger.chargeCard("card-ko", declined.getMoney(), "Donation"))
+                .willReturn(new CardPaymentCharge(false));
+
+        // when
+        List<BatchPaymentResult> results = underTest.chargeCards(requests);
+
+        // then
+        assertThat(results).extracting(BatchPaymentResult::isCharged)
+                .containsExactly(true, false, false, false);
+        assertThat(results.get(1).getError())
+                .isEqualTo(String.format("card not debited for customer [%s]", customerId));
+        assertThat(results.get(2).getError())
+                .isEqualTo(String.format("customer with id [%s] not found", unknownCustomerId));
+        assertThat(results.get(3).getError())
+                .isEqualTo(String.format("currency [%s] not supported", Currency.EUR));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Payment>> argumentCaptor = ArgumentCaptor.forClass(List.class);
+        then(customerRepository).should().findAllById(anyIterable());
+        then(customerRepository).shouldHaveNoMoreInteractions();
+        then(paymentRepository).should().saveAll(argumentCaptor.capture());
+        assertThat(argumentCaptor.getValue()).containsExactly(debited);
+        assertThat(debited.getCustomerId()).isEqualTo(customerId);
+    }
+
+    @Test
+    void itShouldNotAbortBatchWhenCardChargerThrows() {
+        // given
+        UUID customerId = UUID.randomUUID();
+        given(customerRepository.findAllById(anyIterable()))
+                .willReturn(List.of(new Customer(customerId, "Abel", "0000")));
+
+        Payment payment = new Payment(null, null, new BigDecimal("10.00"), Currency.USD, "card123", "Donation");
+        given(cardCharger.chargeCard(any(), any(), any())).willThrow(new IllegalStateException("network down"));
+
+        // when
+        List<BatchPaymentResult> results = underTest.chargeCards(List.of(new BatchPaymentRequest(customerId, payment)));
+
+        // then
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).isCharged()).isFalse();
+        assertThat(results.get(0).getError()).isEqualTo("network down");
+        then(paymentRepository).shouldHaveNoInteractions();
+    }
+
+    @Test
+    void itShouldReportItemsWithoutPaymentAsFailed() {
+        // given
+        UUID customerId = UUID.randomUUID();
+        given(customerRepository.findAllById(anyIterable()))
+                .willReturn(List.of(new Customer(customerId, "Abel", "0000")));
+        Payment payment = new Payment(null, null, new BigDecimal("10.00"), Currency.USD, "card123", "Donation");
+        given(cardCharger.chargeCard(any(), any(), any())).willReturn(new CardPaymentCharge(true));
+
+        // when
+        List<BatchPaymentResult> results = underTest.chargeCards(Arrays.asList(
+                new BatchPaymentRequest(customerId, null),
+                null,
+                new BatchPaymentRequest(customerId, payment)));
+
+        // then
+        assertThat(results).extracting(BatchPaymentResult::isCharged).containsExactly(false, false, true);
+        assertThat(results.get(0).getError()).isEqualTo("payment is required");
+        assertThat(results.get(0).getCustomerId()).isEqualTo(customerId);
+        assertThat(results.get(1).getError()).isEqualTo("payment is required");
+        then(paymentRepository).should().saveAll(List.of(payment));
+    }
+
+    @Test
+    void itShouldReportChargedPaymentsThatCouldNotBeRecorded() {
+        // given
+        UUID customerId = UUID.randomUUID();
+        given(customerRepository.findAllById(anyIterable()))
+                .willReturn(List.of(new Customer(customerId, "Abel", "0000")));
+        Payment recorded = new Payment(null, null, new BigDecimal("10.00"), Currency.USD, "card-1", "Donation");
+        Payment unrecorded = new Payment(null, null, new BigDecimal("20.00"), Currency.USD, "card-2", "Donation");
+        unrecorded.setIdempotencyKey("key-2");
+        given(cardCharger.chargeCard(any(), any(), any())).willReturn(new CardPaymentCharge(true));
+        given(paymentRepository.saveAll(anyIterable())).willThrow(new IllegalStateException("batch insert failed"));
+        given(paymentRepository.save(same(unrecorded))).willThrow(new IllegalStateException("duplicate key"));
+
+        // when
+        List<BatchPaymentResult> results = underTest.chargeCards(List.of(
+                new BatchPaymentRequest(customerId, recorded),
+                new BatchPaymentRequest(customerId, unrecorded)));
+
+        // then
+        assertThat(results).extracting(BatchPaymentResult::isCharged).containsExactly(true, true);
+        assertThat(results.get(0).getError()).isNull();
+        assertThat(results.get(1).getError())
+                .isEqualTo("card charged but payment not recorded: duplicate key");
+        then(paymentRepository).should().save(same(recorded));
+        assertThat(idempotencyStore.begin("key-2")).isFalse();
+    }
+}
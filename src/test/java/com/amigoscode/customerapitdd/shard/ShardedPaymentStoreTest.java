@@ -0,0 +1,244 @@
+package com.amigoscode.customerapitdd.shard;
+
+import com.amigoscode.customerapitdd.dto.PaymentTotals;
+import com.amigoscode.customerapitdd.model.Currency;
+import com.amigoscode.customerapitdd.model.Payment;
+import com.amigoscode.customerapitdd.model.SmsNotification;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.jdbc.support.incrementer.H2SequenceMaxValueIncrementer;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShardedPaymentStoreTest {
+
+    private static final Function<Payment, SmsNotification> NOTIFICATION =
+            payment -> new SmsNotification(payment.getPaymentId(), payment.getCustomerId(), "Payment received");
+
+    private final List<EmbeddedDatabase> databases = new ArrayList<>();
+
+    private PaymentIdAllocator idAllocator;
+
+    @BeforeEach
+    void setUp() {
+        EmbeddedDatabase primary = embeddedDatabase();
+        new JdbcTemplate(primary).execute("CREATE SEQUENCE payment_id_seq START WITH 1 INCREMENT BY 50");
+        idAllocator = new PaymentIdAllocator(new H2SequenceMaxValueIncrementer(primary, "payment_id_seq"), 50);
+    }
+
+    @AfterEach
+    void tearDown() {
+        databases.forEach(EmbeddedDatabase::shutdown);
+    }
+
+    @Test
+    void itShouldKeepEveryCustomersPaymentsOnItsShard() {
+        // given
+        ShardedPaymentStore underTest = storeOver(shards(3));
+        List<UUID> customers = customers(30);
+
+        // when
+        for (UUID customerId : customers) {
+            underTest.save(payment(customerId, "10.00", Currency.USD, null), NOTIFICATION);
+        }
+        underTest.saveAll(customers.stream()
+                .map(customerId -> payment(customerId, "2.50", Currency.GBP, null))
+                .collect(Collectors.toList()), NOTIFICATION);
+
+        // then
+        for (UUID customerId : customers) {
+            int shard = underTest.getRouter().shardFor(customerId);
+            assertThat(underTest.getShards().get(shard).selectPaymentPage(customerId, 0, 10)).hasSize(2);
+            assertThat(underTest.selectPaymentPage(customerId, 0, PageRequest.of(0, 10)))
+                    .extracting(Payment::getCurrency)
+                    .containsExactly(Currency.USD, Currency.GBP);
+        }
+        assertThat(underTest.getShards())
+                .allSatisfy(shard -> assertThat(shard.selectPaymentPage(0, 100)).isNotEmpty());
+    }
+
+    @Test
+    void itShouldMergeShardPagesInPaymentIdOrder() {
+        // given
+        ShardedPaymentStore underTest = storeOver(shards(3));
+        customers(25).forEach(customerId -> underTest.save(payment(customerId, "1.00", Currency.USD, null), NOTIFICATION));
+
+        // when
+        List<Long> paymentIds = new ArrayList<>();
+        long cursor = 0;
+        List<Payment> page;
+        do {
+            page = underTest.selectPaymentPage(cursor, PageRequest.of(0, 10));
+            page.forEach(payment -> paymentIds.add(payment.getPaymentId()));
+            if (!page.isEmpty()) {
+                cursor = page.get(page.size() - 1).getPaymentId();
+            }
+        } while (page.size() == 10);
+
+        // then
+        assertThat(paymentIds).hasSize(25).isSorted().doesNotHaveDuplicates();
+    }
+
+    @Test
+    void itShouldGatherTotalsAndIdempotencyKeysFromEveryShard() {
+        // given
+        ShardedPaymentStore underTest = storeOver(shards(3));
+        customers(20).forEach(customerId -> underTest.save(payment(customerId, "0.25", Currency.EUR, null), NOTIFICATION));
+        Instant createdAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        Payment keyed = payment(UUID.randomUUID(), "99.99", Currency.USD, "key-1");
+        keyed.setCreatedAt(createdAt);
+        underTest.save(keyed, NOTIFICATION);
+
+        // when
+        List<PaymentTotals> totals = underTest.totalsByCurrency();
+
+        // then
+        assertThat(totalsFor(totals, Currency.EUR).getAmount()).isEqualTo(new BigDecimal("5.00"));
+        assertThat(totalsFor(totals, Currency.EUR).getCount()).isEqualTo(20);
+        assertThat(underTest.findByIdempotencyKey("key-1")).hasValueSatisfying(payment -> {
+            assertThat(payment.getPaymentId()).isEqualTo(keyed.getPaymentId());
+            assertThat(payment.getAmount()).isEqualTo(9999);
+            assertThat(payment.getCreatedAt()).isEqualTo(createdAt);
+        });
+        assertThat(underTest.findByIdempotencyKey("key-2")).isEmpty();
+    }
+
+    @Test
+    void itShouldQueueNotificationsInTheOutboxOfThePaymentsShard() {
+        // given
+        ShardedPaymentStore underTest = storeOver(shards(2));
+        UUID first = customerOnShard(underTest.getRouter(), 0);
+        UUID second = customerOnShard(underTest.getRouter(), 1);
+        underTest.saveAll(List.of(
+                payment(first, "1.00", Currency.USD, null),
+                payment(second, "1.00", Currency.USD, null)), NOTIFICATION);
+        Instant now = Instant.now();
+        Instant claimedUntil = now.plusSeconds(60);
+
+        // when
+        List<SmsNotification> claimed = underTest.getShards().get(0).claim(10, now, claimedUntil);
+
+        // then
+        assertThat(claimed).extracting(SmsNotification::getCustomerId).containsExactly(first);
+        assertThat(claimed.get(0).getStatus()).isEqualTo(SmsNotification.Status.SENDING);
+        assertThat(underTest.getShards().get(0).claim(10, now, claimedUntil)).isEmpty();
+        assertThat(underTest.getShards().get(1).claim(10, now, claimedUntil))
+                .extracting(SmsNotification::getCustomerId).containsExactly(second);
+
+        // when
+        claimed.get(0).setStatus(SmsNotification.Status.SENT);
+        underTest.getShards().get(0).release(claimed);
+
+        // then
+        assertThat(underTest.getShards().get(0).claim(10, claimedUntil.plusSeconds(1), claimedUntil)).isEmpty();
+        assertThat(underTest.getShards().get(1).claim(10, claimedUntil.plusSeconds(1), claimedUntil))
+                .extracting(SmsNotification::getCustomerId).containsExactly(second);
+    }
+
+    @Test
+    void itShouldUndoShardsAlreadyWrittenWhenBatchFails() {
+        // given
+        ShardedPaymentStore underTest = storeOver(shards(2));
+        UUID first = customerOnShard(underTest.getRouter(), 0);
+        UUID second = customerOnShard(underTest.getRouter(), 1);
+        underTest.save(payment(second, "1.00", Currency.USD, "taken"), NOTIFICATION);
+
+        // when
+        // then
+        assertThatThrownBy(() -> underTest.saveAll(List.of(
+                payment(first, "1.00", Currency.USD, "fresh"),
+                payment(second, "1.00", Currency.USD, "taken")), NOTIFICATION))
+                .isInstanceOf(RuntimeException.class);
+        assertThat(underTest.selectPaymentPage(first, 0, PageRequest.of(0, 10))).isEmpty();
+        assertThat(underTest.getShards().get(0).claim(10, Instant.now(), Instant.now().plusSeconds(60))).isEmpty();
+    }
+
+    @Test
+    void itShouldMovePaymentsToAppendedShard() {
+        // given
+        List<PaymentShard> shards = shards(3);
+        ShardedPaymentStore twoShards = storeOver(shards.subList(0, 2));
+        List<UUID> customers = customers(60);
+        twoShards.saveAll(customers.stream()
+                .map(customerId -> payment(customerId, "3.00", Currency.USD, null))
+                .collect(Collectors.toList()), NOTIFICATION);
+        ShardedPaymentStore underTest = storeOver(shards);
+
+        // when
+        long moved = new ShardRebalancer(underTest, 7).rebalance();
+
+        // then
+        Set<UUID> onNewShard = shards.get(2).selectPaymentPage(0, 100).stream()
+                .map(Payment::getCustomerId)
+                .collect(Collectors.toSet());
+        assertThat(moved).isPositive().isEqualTo(onNewShard.size());
+        for (UUID customerId : customers) {
+            assertThat(underTest.selectPaymentPage(customerId, 0, PageRequest.of(0, 10))).hasSize(1);
+        }
+        assertThat(totalsFor(underTest.totalsByCurrency(), Currency.USD).getCount()).isEqualTo(60);
+        assertThat(new ShardRebalancer(underTest, 7).rebalance()).isZero();
+    }
+
+    private ShardedPaymentStore storeOver(List<PaymentShard> shards) {
+        return new ShardedPaymentStore(shards, idAllocator);
+    }
+
+    private List<PaymentShard> shards(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(index -> {
+                    PaymentShard shard = new PaymentShard(index, embeddedDatabase());
+                    shard.createSchema();
+                    return shard;
+                })
+                .collect(Collectors.toList());
+    }
+
+    private EmbeddedDatabase embeddedDatabase() {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        databases.add(database);
+        return database;
+    }
+
+    private static List<UUID> customers(int count) {
+        return IntStream.range(0, count).mapToObj(i -> UUID.randomUUID()).collect(Collectors.toList());
+    }
+
+    private static UUID customerOnShard(ShardRouter router, int shard) {
+        UUID customerId;
+        do {
+            customerId = UUID.randomUUID();
+        } while (router.shardFor(customerId) != shard);
+        return customerId;
+    }
+
+    private static PaymentTotals totalsFor(List<PaymentTotals> totals, Currency currency) {
+        return totals.stream().filter(t -> t.getCurrency() == currency).findFirst().orElseThrow();
+    }
+
+    private static Payment payment(UUID customerId, String amount, Currency currency, String idempotencyKey) {
+        Payment payment = new Payment(null, customerId, new BigDecimal(amount), currency, "card123", "Donation");
+        payment.setIdempotencyKey(idempotencyKey);
+        return payment;
+    }
+}